@@ -0,0 +1,42 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main program for the benchmarks.
+ *
+ * With no arguments all the benchmarks in this package are run, each in
+ * the mode and time unit it declares, and reported together with the
+ * allocation rate measured by the GC profiler (gc.alloc.rate and
+ * gc.alloc.rate.norm, the bytes allocated per operation). Most are
+ * throughput benchmarks; LoadBenchmark times single loads and
+ * TermBenchmark the average time of a call. With arguments, the arguments are passed to the standard JMH
+ * command line, for example
+ *
+ *   java -jar benchmarks/target/benchmarks.jar VocabularyBenchmark -prof gc
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options opt = new OptionsBuilder()
+                .include("cs345\\.bench\\..*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import cs345.GameMain;
+import cs345.game.Game;
+import cs345.game.GameBuilder;
+import cs345.game.GameObject;
+import cs345.game.Word;
+import cs345.message.BaseMessageFormatter;
+import cs345.message.MessageFormatter;
+import cs345.message.NullMessageFormatter;
+import cs345.reader.GameDescription;
+import cs345.reader.GeneratedGame;
+
+/**
+ * Games and other objects shared by the benchmarks.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return a PrintStream that discards everything written to it
+     */
+    static PrintStream nullStream() {
+        return new PrintStream(new OutputStream() {
+            @Override public void write(int b) {
+            }
+
+            @Override public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    /**
+     * @return a formatter that wraps its output like the real game, then
+     *         discards it
+     */
+    static MessageFormatter formatter() {
+        return new BaseMessageFormatter(nullStream(), 72);
+    }
+
+    /**
+     * Build one of the game descriptions in the reader package.
+     *
+     * @param gameDescName the name of the GameDescription class
+     * @return the built game, to be used as a template for sessions
+     */
+    static Game template(String gameDescName) {
+        GameDescription desc = GameMain.getGameDescription(gameDescName, new GameBuilder());
+        if (desc == null)
+            throw new IllegalArgumentException("No game description " + gameDescName);
+        return desc.build(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+
+    /**
+     * Start a new session of a game with output that is formatted and
+     * then discarded.
+     *
+     * @param template the game
+     * @return the started session
+     */
+    static Game session(Game template) {
+        Game session = template.newSession(new ByteArrayInputStream(new byte[0]), formatter());
+        session.parser.start();
+        return session;
+    }
+
+    /**
+     * Build a GeneratedGame.
+     *
+     * @param rooms the number of rooms
+     * @param objectsPerRoom the number of objects in each room
+     * @param words the number of words in the vocabulary
+     * @param actions the number of extra verbs
+     * @param handlers the number of extra event handlers
+     * @return the built game, to be used as a template for sessions
+     */
+    static Game generated(int rooms, int objectsPerRoom, int words, int actions, int handlers) {
+        return new GeneratedGame(new GameBuilder(), rooms, objectsPerRoom, words, actions,
+                handlers, GeneratedGame.DEF_SEED)
+                .build(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+
+    /**
+     * Return a word that names an object.
+     *
+     * @param game the game
+     * @param obj the object
+     * @return the first word in the vocabulary that matches the object
+     */
+    static String wordFor(Game game, GameObject obj) {
+        for (Word w : game.allWords) {
+            if (obj.match(w))
+                return w.getWord();
+        }
+        throw new IllegalArgumentException("No word for " + obj);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.message.MessageFormatter;
+
+/**
+ * Cost of word wrapping in BaseMessageFormatter.
+ *
+ * A room description is output the way a command produces it: a few
+ * fragments, a complete line and then the prompt for the next command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    private static final String DESCRIPTION =
+            "You have entered the ballroom. The room has a high ceiling with two "
+            + "magnificent crystal chandeliers which illuminate the room. "
+            + "The floor is a polished wooden parquet with flowers inlaid around the edge. "
+            + "The north wall is lined with mirrors while the south wall has large "
+            + "windows which look out on a beautiful garden. ";
+
+    private MessageFormatter out;
+
+    @Setup
+    public void setUp() {
+        out = Fixtures.formatter();
+    }
+
+    @Benchmark
+    public void wrapParagraph() {
+        out.print(DESCRIPTION);
+        out.print("There is a door in the west wall. It is closed.");
+        out.println(" There is a piece of paper here.");
+        out.startLine();
+        out.prompt("? ");
+    }
+
+    @Benchmark
+    public void wrapMultiLine() {
+        out.println("The message has been carelessly trampled, making it difficult to read. "
+                + "You can just distinguish the words...\n\nYOU HAVE LOST !!!");
+        out.startLine();
+        out.prompt("? ");
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Game;
+import cs345.game.GameBuilder;
+import cs345.message.NullMessageFormatter;
+import cs345.reader.FileGame;
+import cs345.reader.WorldImage;
+
+/**
+ * Cost of loading a game file with FileGame: a grid of rooms like
+ * GeneratedGame, with two objects in each room and the usual commands. The
+ * file is made in memory by setUp, so the time is the parse and the build,
+ * not the disk. The size of the file is printed by setUp.
+ *
+ * loadImage loads the same game from a WorldImage compiled by setUp.
+ *
+ * Nearly everything a load allocates is the world, which stays live, so
+ * the collector copies the world each time it grows the heap or finds the
+ * worlds of earlier loads still in it. The fork fixes the size of the heap
+ * so the time is the load; run with -gc true to collect the earlier worlds
+ * between iterations too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rooms;
+
+    private String text;
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder(rooms * 600);
+        sb.append("prompt \"? \"\n")
+            .append("term quit quit\n")
+            .append("term move go move walk\n")
+            .append("term direction north south east west\n")
+            .append("term north north\nterm south south\nterm east east\nterm west west\n")
+            .append("term look look\nterm get get take\nterm drop drop\nterm examine examine\n");
+        for (int i = 0; i < rooms; ++i) {
+            sb.append("room r").append(i).append(" \"You are in room ").append(i)
+                .append(" of a very large maze of ").append(rooms)
+                .append(" rooms, all different. \" \"You are in room ").append(i).append(".\"\n");
+        }
+        int width = (int) Math.ceil(Math.sqrt(rooms));
+        for (int i = 0; i < rooms; ++i) {
+            if (i % width != width - 1 && i + 1 < rooms) {
+                sb.append("path east r").append(i).append(" r").append(i + 1).append('\n');
+                sb.append("path west r").append(i + 1).append(" r").append(i).append('\n');
+            }
+            if (i + width < rooms) {
+                sb.append("path south r").append(i).append(" r").append(i + width).append('\n');
+                sb.append("path north r").append(i + width).append(" r").append(i).append('\n');
+            }
+        }
+        for (int i = 0; i < rooms; ++i) {
+            for (int j = 0; j < 2; ++j) {
+                String obj = "o" + i + "x" + j;
+                sb.append("term ").append(obj).append(' ').append(obj).append('\n');
+                sb.append("term objects ").append(obj).append('\n');
+                sb.append("object ").append(obj).append(' ').append(obj)
+                    .append(" \"a ").append(obj).append("\" \"There is a ").append(obj)
+                    .append(" here. \" \"It's an ordinary ").append(obj).append(" from room ")
+                    .append(i).append(".\" r").append(i).append('\n');
+            }
+        }
+        sb.append("player you r0 \"Welcome.\"\n")
+            .append("action quit - 0 do quit\n")
+            .append("action look - 0 do look\n")
+            .append("action move direction 0 do move \"You can't go %2.\"\n")
+            .append("action get objects 0 do say \"I can't find %2 here.\"\n")
+            .append("action get objects 10 if here $2 do take $2 ; say \"You are now carrying %3.\"\n")
+            .append("action drop objects 10 if carrying $2 do drop $2 ; say \"You have dropped %3.\"\n")
+            .append("action examine objects 10 if here $2 do examine $2\n");
+        text = sb.toString();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WorldImage.compile(new StringReader(text), "bench", out);
+        image = out.toByteArray();
+        System.out.println(rooms + " rooms: " + text.length() + " characters, image "
+                + image.length + " bytes");
+    }
+
+    @Benchmark
+    public Game load() throws IOException {
+        return new FileGame(new GameBuilder(), null).build(new StringReader(text), "bench",
+                new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+
+    @Benchmark
+    public Game loadImage() {
+        return new WorldImage(new GameBuilder(), null).build(ByteBuffer.wrap(image), "bench",
+                new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+}
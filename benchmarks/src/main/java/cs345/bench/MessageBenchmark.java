@@ -0,0 +1,106 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.GameBuilder;
+import cs345.game.GameObject;
+import cs345.game.MatchType;
+import cs345.game.Term;
+import cs345.message.Message;
+import cs345.message.MessageFormatter;
+import cs345.message.NullMessageFormatter;
+
+/**
+ * Cost of rendering messages.
+ *
+ * The MultiMsg is shaped like the messages the hard coded games used to
+ * make from "%1"-style strings, the TemplateMsg is the same message
+ * compiled from its template. The BoundSelect is the here-is description of a
+ * GameObject, a SelectMsg bound to the object's state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    private Message multi;
+    private Message template;
+    private Message boundSelect;
+    private MessageFormatter out;
+
+    @Setup
+    public void setUp() {
+        GameBuilder gb = new GameBuilder();
+        gb.startBuild(null, new NullMessageFormatter());
+        multi = gb.makeMessage(
+                gb.makeMessage("Are you so unhappy with the "),
+                gb.makeArgMessage(1),
+                gb.makeMessage(" that you want me to "),
+                gb.makeArgMessage(0),
+                gb.makeMessage(" it?"));
+        template = gb.makeTemplateMessage(
+                "Are you so unhappy with the %2 that you want me to %1 it?");
+        Term vDoor = gb.makeTerm("door");
+        vDoor.addWord(gb.makeWord("door", MatchType.PREFIX));
+        GameObject door = gb.makeGameObject("door", vDoor,
+                gb.makeMessage("a door"),
+                gb.makeSelectMessage(
+                        gb.makeMessage("There is a door in the east wall. It is closed."),
+                        gb.makeMessage("There is an open door in the east wall.")),
+                gb.makeMessage("It is a door."));
+        boundSelect = door.getHereIsDesc();
+        out = Fixtures.formatter();
+    }
+
+    @Benchmark
+    public String multiMsgGetString() {
+        return multi.getString("kill", "wall");
+    }
+
+    @Benchmark
+    public void multiMsgPrintln() {
+        multi.println(out, "kill", "wall");
+    }
+
+    @Benchmark
+    public String templateGetString() {
+        return template.getString("kill", "wall");
+    }
+
+    @Benchmark
+    public void templatePrintln() {
+        template.println(out, "kill", "wall");
+    }
+
+    @Benchmark
+    public String boundSelectGetString() {
+        return boundSelect.getString();
+    }
+
+    @Benchmark
+    public void boundSelectPrintln() {
+        boundSelect.println(out);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Game;
+
+/**
+ * End to end cost of a command: BaseCommandParser.ProcessLine followed by
+ * handling the events it queued, with the output formatted and discarded.
+ *
+ * Each game plays a loop of commands that never ends the game and returns
+ * the player to the starting room.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String[] HARD_CODED_COMMANDS = {
+        "look", "go east", "get coin", "inventory", "go south", "go north",
+        "drop coin", "examine coin", "get coin", "go west", "kill gold",
+        "frobnicate", "the", "look around"
+    };
+
+    private static final String[] CLOAK_COMMANDS = {
+        "look", "go west", "inventory", "examine hook", "go east", "go south",
+        "look", "go north", "verbose yes", "go west", "go east", "verbose no",
+        "frobnicate", "the"
+    };
+
+    @Param({"HardCodedGame", "CloakHardCoded"})
+    public String game;
+
+    private Game session;
+    private String[] commands;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        session = Fixtures.session(Fixtures.template(game));
+        commands = game.equals("CloakHardCoded") ? CLOAK_COMMANDS : HARD_CODED_COMMANDS;
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean processLine() {
+        String command = commands[next];
+        next = (next + 1) % commands.length;
+        return session.parser.step(command);
+    }
+}
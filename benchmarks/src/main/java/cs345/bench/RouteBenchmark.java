@@ -0,0 +1,85 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Game;
+import cs345.game.Room;
+import cs345.game.RoomGraph;
+import cs345.game.Term;
+
+/**
+ * Cost of finding routes on the RoomGraph of a GeneratedGame.
+ *
+ * cachedRoute asks for routes from a few starting rooms, so the searches
+ * are kept, as they would be for NPCs heading for the player. freshRoute
+ * uses a graph that keeps no searches, so every route is a breadth first
+ * search of the whole map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RouteBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int rooms;
+
+    private RoomGraph graph;
+    private RoomGraph uncached;
+    private Room[] from;
+    private Room[] to;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Game template = Fixtures.generated(rooms, 0, 0, 0, 0);
+        graph = template.map;
+        uncached = new RoomGraph(template.allContainers, 0);
+        Random rnd = new Random(345);
+        from = new Room[PAIRS];
+        to = new Room[PAIRS];
+        for (int i = 0; i < PAIRS; ++i) {
+            from[i] = graph.getRoom(rnd.nextInt(8));
+            to[i] = graph.getRoom(rnd.nextInt(graph.size()));
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public List<Term> cachedRoute() {
+        int i = next++ & (PAIRS - 1);
+        return graph.route(from[i], to[i]);
+    }
+
+    @Benchmark
+    public List<Term> freshRoute() {
+        int i = next++ & (PAIRS - 1);
+        return uncached.route(from[i], to[i]);
+    }
+}
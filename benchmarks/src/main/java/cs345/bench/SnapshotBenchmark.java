@@ -0,0 +1,77 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Game;
+import cs345.game.GameSnapshot;
+
+/**
+ * Cost of saving and restoring a GameSnapshot of a game that has been
+ * played for a few commands. The size of the snapshot is printed by setUp.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final String[] HARD_CODED_COMMANDS = {
+        "go east", "get coin", "go south", "examine door", "go north", "go west"
+    };
+
+    private static final String[] CLOAK_COMMANDS = {
+        "go west", "examine hook", "go east", "verbose yes", "go south"
+    };
+
+    @Param({"HardCodedGame", "CloakHardCoded"})
+    public String game;
+
+    private Game template;
+    private Game session;
+    private byte[] snapshot;
+
+    @Setup
+    public void setUp() {
+        template = Fixtures.template(game);
+        session = Fixtures.session(template);
+        for (String command : game.equals("CloakHardCoded") ? CLOAK_COMMANDS : HARD_CODED_COMMANDS) {
+            session.parser.step(command);
+        }
+        snapshot = GameSnapshot.save(session);
+        System.out.println(game + " snapshot: " + snapshot.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return GameSnapshot.save(session);
+    }
+
+    @Benchmark
+    public Game restore() {
+        Game restored = template.newSession(null, Fixtures.formatter());
+        GameSnapshot.restore(restored, snapshot);
+        return restored;
+    }
+}
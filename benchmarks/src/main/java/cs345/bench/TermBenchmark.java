@@ -0,0 +1,90 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.GameBuilder;
+import cs345.game.MatchType;
+import cs345.game.Term;
+import cs345.game.Terms;
+import cs345.game.Word;
+import cs345.message.NullMessageFormatter;
+
+/**
+ * Cost of Term.contains for a Term of size words, half the words of the
+ * game, as for a Term naming all the objects. compiled uses a Term of a
+ * complete game, listed a Term made outside the Builder, which keeps its
+ * words in a list. The words asked about are half in the Term and half
+ * not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"4", "64", "4096"})
+    public int size;
+
+    private Term compiled;
+    private Term listed;
+    private Word[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        GameBuilder gb = new GameBuilder();
+        gb.startBuild(null, new NullMessageFormatter());
+        compiled = gb.makeTerm("term");
+        listed = new Terms();
+        Word[] words = new Word[2 * size];
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = gb.makeWord("word" + i, MatchType.PREFIX);
+            if (i % 2 == 0) {
+                compiled.addWord(words[i]);
+                listed.addWord(words[i]);
+            }
+        }
+        gb.buildComplete();
+        Random rnd = new Random(345);
+        probes = new Word[PROBES];
+        for (int i = 0; i < PROBES; ++i) {
+            probes[i] = words[rnd.nextInt(words.length)];
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.contains(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean listed() {
+        return listed.contains(probes[next++ & (PROBES - 1)]);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Action;
+import cs345.game.Game;
+import cs345.game.Word;
+import cs345.interpret.BaseCommandParser;
+import cs345.interpret.Tokenizer;
+
+/**
+ * Cost of turning a command line into Words and an Action, the part of
+ * ProcessLine before the action runs. Run with the GC profiler,
+ * gc.alloc.rate.norm should be close to zero bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final String[] LINES = {
+        "look", "  go   east ", "get coin", "inventory", "\tdrop\tcoin",
+        "examine door", "g s", "wave wand", "kill gold"
+    };
+
+    private BaseCommandParser parser;
+    private Tokenizer tokenizer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Game game = Fixtures.template("HardCodedGame");
+        parser = (BaseCommandParser) game.parser;
+        tokenizer = new Tokenizer();
+        next = 0;
+    }
+
+    @Benchmark
+    public int tokenize() {
+        String line = LINES[next];
+        next = (next + 1) % LINES.length;
+        return tokenizer.tokenize(line);
+    }
+
+    @Benchmark
+    public Action resolve() {
+        String line = LINES[next];
+        next = (next + 1) % LINES.length;
+        int count = tokenizer.tokenize(line);
+        Word w1 = parser.findWord(line, tokenizer.start(0), tokenizer.end(0));
+        Word w2 = (count > 1) ? parser.findWord(line, tokenizer.start(1), tokenizer.end(1)) : null;
+        return parser.findAction(w1, w2);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Action;
+import cs345.game.Game;
+import cs345.game.Word;
+import cs345.interpret.BaseCommandParser;
+
+/**
+ * Cost of BaseCommandParser.findWord and findAction as the vocabulary grows.
+ * The vocabulary is a GeneratedGame with a small world, padded to the
+ * number of words, with one extra verb for every 100 words.
+ *
+ * The inputs for findWord are a mix of full words and prefixes of words,
+ * so the ambiguous and unknown cases are exercised as well as the normal
+ * case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VocabularyBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private BaseCommandParser parser;
+    private String[] tokens;
+    private Word[] firstWords;
+    private Word[] secondWords;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Game game = Fixtures.generated(100, 1, size, size / 100, 0);
+        parser = (BaseCommandParser) game.parser;
+        List<Word> words = new ArrayList<Word>(game.allWords);
+        Random rnd = new Random(17L);
+        tokens = new String[INPUTS];
+        firstWords = new Word[INPUTS];
+        secondWords = new Word[INPUTS];
+        for (int i = 0; i < INPUTS; ++i) {
+            String s = words.get(rnd.nextInt(words.size())).getWord();
+            tokens[i] = (i % 2 == 0) ? s : s.substring(0, (s.length() + 1) / 2);
+            firstWords[i] = words.get(rnd.nextInt(words.size()));
+            secondWords[i] = (i % 4 == 0) ? null : words.get(rnd.nextInt(words.size()));
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public Word findWord() {
+        next = (next + 1) & (INPUTS - 1);
+        return parser.findWord(tokens[next]);
+    }
+
+    @Benchmark
+    public Action findAction() {
+        next = (next + 1) & (INPUTS - 1);
+        return parser.findAction(firstWords[next], secondWords[next]);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs345.game.Game;
+import cs345.game.GameObject;
+import cs345.game.GameState;
+
+/**
+ * Cost of commands as the world grows, played on a GeneratedGame with two
+ * objects per room, one word per room, 20 extra verbs and 100 extra event
+ * handlers.
+ *
+ * move walks round a square of four rooms, which exercises the paths of
+ * the rooms and the player.moved handlers. examine looks at an object in
+ * the starting room, which has to be found among all the objects in the
+ * world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WorldBenchmark {
+
+    private static final String[] MOVES = {
+        "go east", "go south", "go west", "go north"
+    };
+
+    @Param({"1000", "10000", "100000"})
+    public int rooms;
+
+    private Game session;
+    private String[] examine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Game template = Fixtures.generated(rooms, 2, rooms, 20, 100);
+        session = Fixtures.session(template);
+        GameState previous = session.state.bind();
+        try {
+            Iterator<GameObject> here = session.thePlayer.getLocation().getContents().iterator();
+            examine = new String[] {
+                "examine " + Fixtures.wordFor(template, here.next()),
+                "examine " + Fixtures.wordFor(template, here.next())
+            };
+        } finally {
+            GameState.unbind(previous);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean move() {
+        String command = MOVES[next & 3];
+        next += 1;
+        return session.parser.step(command);
+    }
+
+    @Benchmark
+    public boolean examine() {
+        String command = examine[next & 1];
+        next += 1;
+        return session.parser.step(command);
+    }
+}
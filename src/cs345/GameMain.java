@@ -31,10 +31,10 @@ public class GameMain {
     /**
      * Main program for Game.
      * 
-     * Usage: This program takes zero or one command line argument. The program
-     * can be invoked as follows:
+     * Usage: This program takes zero, one or two command line arguments. The
+     * program can be invoked as follows:
      * 
-     *   java -cp CLASSPATH GameMain GAMEDESCRIPTIONCLASS
+     *   java -cp CLASSPATH GameMain GAMEDESCRIPTIONCLASS [ARGUMENT]
      *   java -cp CLASSPATH GameMain
      *   java -cp CLASSPATH GameMain --help
      * 
@@ -44,6 +44,9 @@ public class GameMain {
      *     that will be used to provide the game description. If this argument
      *     is omitted, HardCodedGame will be used as a default.
      *     
+     *     ARGUMENT is passed to the game description's constructor, for
+     *     example the game file for FileGame.
+     *     
      *     --help causes a usage message to be produced.
      * 
      * @param args
@@ -55,27 +58,31 @@ public class GameMain {
     public static void main(String[] args) throws IOException {
         boolean usage = false;
         String gamedesc = null;
+        String argument = null;
         if (args.length == 0) {
             gamedesc = DEF_GAME_DESCRIPTION;
-        } else if (args.length >= 2) {
+        } else if (args.length > 2) {
             usage = true;
         } else {
             if (args[0].equals("--help")) {
                 usage = true;
             } else {
                 gamedesc = args[0];
+                argument = (args.length > 1) ? args[1] : null;
             }
         }
         if (usage) {
-            System.err.printf("Usage: java ... GameDescription%n"
+            System.err.printf("Usage: java ... GameDescription [Argument]%n"
                             + "  Run game with given description.%n%n"
                             + "  GameDescription  the name of the class describing the game%n"
                             + "  which must be in the reader subpackage of the package that"
-                            + "contains this class.%n");
+                            + "contains this class.%n"
+                            + "  Argument  passed to the game description, such as the file%n"
+                            + "  for FileGame.%n");
             return;
         }
 
-        new GameMain().run(gamedesc);
+        new GameMain().run(gamedesc, argument);
     }
 
     /**
@@ -86,10 +93,12 @@ public class GameMain {
      * 
      * @param gameDescName
      *            name of the gamedescription class
+     * @param argument
+     *            the argument for the gamedescription or null
      */
-    private void run(String gameDescName) throws IOException {
+    private void run(String gameDescName, String argument) throws IOException {
         Builder gb = new GameBuilder();
-        GameDescription desc = getGameDescription(gameDescName, gb);
+        GameDescription desc = getGameDescription(gameDescName, gb, argument);
         if (desc != null) {
             Game game = desc.build(System.in, new BaseMessageFormatter(System.out, 72));
             game.parser.run();
@@ -109,18 +118,42 @@ public class GameMain {
      *         constructing the game description object, an error message is
      *         output and the method returns null.
      */
-    private GameDescription getGameDescription(String gameDescription,
+    public static GameDescription getGameDescription(String gameDescription,
             Builder gb) {
+        return getGameDescription(gameDescription, gb, null);
+    }
 
-        String thisClassName = getClass().getCanonicalName();
+    /**
+     * Get a GameDescription object, passing an argument to its constructor.
+     * 
+     * @param gameDescription
+     *            The name of the game description class, as for
+     *            getGameDescription(String, Builder).
+     * @param gb This is the game builder object for the constructor for the
+     *           gameDescription class.
+     * @param argument If not null, the class is constructed with a
+     *           constructor of the form Class(Builder b, String argument).
+     * @return The constructed game description object or null if there was
+     *         a problem, as for getGameDescription(String, Builder).
+     */
+    public static GameDescription getGameDescription(String gameDescription,
+            Builder gb, String argument) {
+
+        String thisClassName = GameMain.class.getCanonicalName();
         String thisPackageName = thisClassName.substring(0,
                 thisClassName.lastIndexOf('.'));
         String gameDescClassName = thisPackageName + ".reader."
                 + gameDescription;
         try {
             Class<?> descClass = Class.forName(gameDescClassName);
-            Constructor<?> con = descClass.getConstructor(Builder.class);
-            Object descObj = con.newInstance(gb);
+            Object descObj;
+            if (argument == null) {
+                Constructor<?> con = descClass.getConstructor(Builder.class);
+                descObj = con.newInstance(gb);
+            } else {
+                Constructor<?> con = descClass.getConstructor(Builder.class, String.class);
+                descObj = con.newInstance(gb, argument);
+            }
             return GameDescription.class.cast(descObj);
         } catch (ClassNotFoundException exc) {
             System.err.printf("Class %s not found %n", gameDescClassName);
@@ -0,0 +1,394 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cs345.game.Game;
+import cs345.game.GameBuilder;
+import cs345.interpret.ParserMetrics;
+import cs345.interpret.ParserStats;
+import cs345.interpret.ScriptProfiler;
+import cs345.message.BaseMessageFormatter;
+import cs345.message.NullMessageFormatter;
+import cs345.reader.GameDescription;
+
+/**
+ * This class runs recorded transcripts of a game without a terminal and
+ * checks that the game still produces the same output.
+ *
+ * A transcript is a text file holding what a player saw on the screen:
+ * the game's output with each command typed after the "? " prompt, like
+ * the sample session in the README. The commands are taken from the lines
+ * that start with the prompt. The runner plays them through the command
+ * parser, writing the output, with the commands echoed, to memory, and
+ * compares the result with the transcript. A trailing prompt and trailing
+ * white space are ignored.
+ *
+ * Transcripts are run in parallel by a number of worker threads. Each
+ * worker builds its own Game and plays every transcript in a new session
+ * of it, so the workers share nothing. With -repeat the transcripts are
+ * run many times, which makes the runner a throughput benchmark as well
+ * as a regression test.
+ *
+ * Usage:
+ *
+ *   java -cp CLASSPATH cs345.TranscriptRunner [-threads N] [-repeat N]
+ *           [-metrics] [-profile] GAMEDESCRIPTIONCLASS PATH...
+ *
+ *     -threads N   the number of worker threads, default the number of cores
+ *     -repeat N    the number of times each transcript is run, default 1
+ *     -metrics     measure the parts of each command, see ParserStats, and
+ *                  print a table of the times at the end
+ *     -profile     time every action, validator and event handler of the
+ *                  game, see ScriptProfiler, and print the slowest at the end
+ *     PATH         a transcript file or a directory of *.txt transcripts
+ *
+ * The exit status is 1 if any transcript doesn't match or can't be played,
+ * including when the game can't be built, and whenever fewer commands were
+ * run than the transcripts hold.
+ */
+public class TranscriptRunner {
+
+    private static final String PROMPT = "? ";
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    /**
+     * A transcript read from a file.
+     */
+    public static class Transcript {
+        final String name;
+        final String expected;
+        final String[] commands;
+
+        Transcript(String name, String text) {
+            this.name = name;
+            this.expected = normalize(text);
+            List<String> cmds = new ArrayList<String>();
+            for (String line : expected.split("\n")) {
+                if (line.startsWith(PROMPT))
+                    cmds.add(line.substring(PROMPT.length()));
+            }
+            this.commands = cmds.toArray(new String[cmds.size()]);
+        }
+    }
+
+    private final String gameDescName;
+    private final List<Transcript> transcripts;
+    private final int repeat;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong commands = new AtomicLong();
+    private final List<String> failures = new ArrayList<String>();
+    private ParserMetrics metrics;
+    private ScriptProfiler profiler;
+
+    /**
+     * Create a runner.
+     *
+     * @param gameDescName the name of the GameDescription class
+     * @param transcripts the transcripts to run
+     * @param repeat the number of times to run each transcript
+     */
+    public TranscriptRunner(String gameDescName, List<Transcript> transcripts, int repeat) {
+        this.gameDescName = gameDescName;
+        this.transcripts = transcripts;
+        this.repeat = repeat;
+    }
+
+    /**
+     * Set the metrics given to the command parsers of the games played.
+     *
+     * @param metrics the metrics or null for none
+     */
+    public void setMetrics(ParserMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the profiler installed in the games played.
+     *
+     * @param profiler the profiler or null for none
+     */
+    public void setProfiler(ScriptProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Play a transcript on a new session of a game.
+     *
+     * @param template the game
+     * @param t the transcript
+     * @return the output, with the commands echoed, normalized for comparison
+     */
+    static String play(Game template, Transcript t) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        PrintStream out;
+        try {
+            out = new PrintStream(bytes, false, "UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            throw new AssertionError(exc);
+        }
+        Game game = template.newSession(new ByteArrayInputStream(new byte[0]),
+                new BaseMessageFormatter(out, 72));
+        game.parser.start();
+        for (String cmd : t.commands) {
+            game.parser.prompt();
+            out.print(cmd);
+            out.print(NEWLINE);
+            if (!game.parser.step(cmd)) {
+                game.messageOut.println();
+                break;
+            }
+        }
+        game.messageOut.flush();
+        try {
+            return normalize(bytes.toString("UTF-8"));
+        } catch (UnsupportedEncodingException exc) {
+            throw new AssertionError(exc);
+        }
+    }
+
+    /* Use \n for line ends and drop a trailing prompt and white space. */
+    static String normalize(String s) {
+        String n = s.replace("\r\n", "\n");
+        int end = n.length();
+        while (end > 0 && n.charAt(end - 1) <= ' ')
+            end -= 1;
+        if (end > 0 && n.charAt(end - 1) == '?' && (end == 1 || n.charAt(end - 2) == '\n'))
+            end -= 1;
+        while (end > 0 && n.charAt(end - 1) <= ' ')
+            end -= 1;
+        return n.substring(0, end);
+    }
+
+    /* Describe where two outputs first differ. */
+    static String diff(String expected, String actual) {
+        String[] e = expected.split("\n", -1);
+        String[] a = actual.split("\n", -1);
+        int i = 0;
+        while (i < e.length && i < a.length && e[i].equals(a[i]))
+            i += 1;
+        StringBuilder sb = new StringBuilder();
+        sb.append("  first difference at line ").append(i + 1).append(NEWLINE);
+        for (int k = Math.max(0, i - 2); k < i; ++k) {
+            sb.append("    ").append(e[k]).append(NEWLINE);
+        }
+        sb.append("  - ").append(i < e.length ? e[i] : "<end of transcript>").append(NEWLINE);
+        sb.append("  + ").append(i < a.length ? a[i] : "<end of output>").append(NEWLINE);
+        return sb.toString();
+    }
+
+    /*
+     * The work of one worker thread: take the next run and play it, until
+     * there are none left.
+     */
+    private void work() {
+        int runs = transcripts.size() * repeat;
+        int r;
+        Game template;
+        try {
+            GameDescription desc = GameMain.getGameDescription(gameDescName, new GameBuilder());
+            if (desc == null)
+                throw new IllegalStateException("no GameDescription " + gameDescName);
+            template = desc.build(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+            template.parser.setMetrics(metrics);
+            if (profiler != null)
+                profiler.install(template);
+        } catch (RuntimeException exc) {
+            // Nothing can be played, every run left fails.
+            String why = "  the game could not be built" + NEWLINE + describe(exc);
+            while ((r = next.getAndIncrement()) < runs) {
+                fail(transcripts.get(r % transcripts.size()), why);
+            }
+            return;
+        }
+        while ((r = next.getAndIncrement()) < runs) {
+            Transcript t = transcripts.get(r % transcripts.size());
+            String actual;
+            try {
+                actual = play(template, t);
+            } catch (RuntimeException exc) {
+                fail(t, describe(exc));
+                continue;
+            }
+            commands.addAndGet(t.commands.length);
+            if (!actual.equals(t.expected))
+                fail(t, diff(t.expected, actual));
+        }
+    }
+
+    private void fail(Transcript t, String why) {
+        synchronized (failures) {
+            failures.add(t.name + NEWLINE + why);
+        }
+    }
+
+    /* An exception and where it was thrown, for a failure. */
+    private static String describe(RuntimeException exc) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("  threw ").append(exc).append(NEWLINE);
+        StackTraceElement[] trace = exc.getStackTrace();
+        for (int i = 0; i < trace.length && i < 5; ++i) {
+            sb.append("    at ").append(trace[i]).append(NEWLINE);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Run the transcripts.
+     *
+     * @param nThreads the number of worker threads
+     * @return the failures, one description for each run that didn't match
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public List<String> run(int nThreads) throws InterruptedException {
+        Thread[] workers = new Thread[nThreads];
+        for (int i = 0; i < nThreads; ++i) {
+            workers[i] = new Thread(new Runnable() {
+                @Override public void run() {
+                    work();
+                }
+            }, "transcript-" + i);
+            workers[i].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        return failures;
+    }
+
+    /**
+     * @return the number of commands run so far
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * @return the number of commands in all the runs, which getCommandCount
+     *         reaches when every run has been played to the end
+     */
+    public long getExpectedCommandCount() {
+        long n = 0;
+        for (Transcript t : transcripts) {
+            n += t.commands.length;
+        }
+        return n * repeat;
+    }
+
+    /**
+     * Read the transcripts from files and directories.
+     *
+     * @param paths transcript files or directories of *.txt files
+     * @return the transcripts
+     * @throws IOException if a file can't be read
+     */
+    public static List<Transcript> load(List<File> paths) throws IOException {
+        List<Transcript> result = new ArrayList<Transcript>();
+        for (File path : paths) {
+            File[] files;
+            if (path.isDirectory()) {
+                files = path.listFiles();
+                if (files == null)
+                    throw new IOException("Can't read directory " + path);
+                Arrays.sort(files);
+            } else {
+                files = new File[] { path };
+            }
+            for (File f : files) {
+                if (f.isFile() && (f == path || f.getName().endsWith(".txt"))) {
+                    String text = new String(Files.readAllBytes(f.toPath()), "UTF-8");
+                    result.add(new Transcript(f.getPath(), text));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Main program for the runner.
+     *
+     * @param args command line arguments, see the class description
+     * @throws Exception if the transcripts can't be read or run
+     */
+    public static void main(String[] args) throws Exception {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        int repeat = 1;
+        String gameDesc = null;
+        List<File> paths = new ArrayList<File>();
+        ParserStats stats = null;
+        ScriptProfiler profiler = null;
+        boolean usage = false;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i].equals("-threads"))
+                    nThreads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-repeat"))
+                    repeat = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-metrics"))
+                    stats = new ParserStats();
+                else if (args[i].equals("-profile"))
+                    profiler = new ScriptProfiler();
+                else if (args[i].startsWith("-"))
+                    usage = true;
+                else if (gameDesc == null && paths.isEmpty())
+                    gameDesc = args[i];
+                else
+                    paths.add(new File(args[i]));
+            }
+        } catch (RuntimeException exc) {
+            usage = true;
+        }
+        if (usage || gameDesc == null || paths.isEmpty() || nThreads < 1 || repeat < 1) {
+            System.err.printf("Usage: java ... cs345.TranscriptRunner [-threads N] [-repeat N] [-metrics] [-profile] GameDescription PATH...%n"
+                    + "  Replay the transcripts in PATH and check the output.%n");
+            System.exit(2);
+        }
+        if (GameMain.getGameDescription(gameDesc, new GameBuilder()) == null)
+            System.exit(2);
+
+        List<Transcript> transcripts = load(paths);
+        TranscriptRunner runner = new TranscriptRunner(gameDesc, transcripts, repeat);
+        runner.setMetrics(stats);
+        runner.setProfiler(profiler);
+        long start = System.nanoTime();
+        List<String> failures = runner.run(nThreads);
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        for (String f : failures) {
+            System.out.print("FAILED " + f);
+        }
+        System.out.printf("%d transcripts, %d runs, %d failed%n",
+                transcripts.size(), transcripts.size() * repeat, failures.size());
+        System.out.printf("%d commands in %.3f s on %d threads, %.0f commands/s%n",
+                runner.getCommandCount(), secs, nThreads, runner.getCommandCount() / secs);
+        if (stats != null)
+            stats.report(System.out);
+        if (profiler != null)
+            profiler.report(System.out, 20);
+        if (runner.getCommandCount() < runner.getExpectedCommandCount()) {
+            System.out.printf("only %d of %d commands were run%n",
+                    runner.getCommandCount(), runner.getExpectedCommandCount());
+            System.exit(1);
+        }
+        if (!failures.isEmpty())
+            System.exit(1);
+    }
+}
@@ -15,6 +15,12 @@ public class Action {
 		action.doAction(game, w1, w2);
 		
 	}
+	/**
+	 * @return the action method
+	 */
+	public ActionMethod getAction() {
+		return action;
+	}
 	/**
 	 * @param action the action to set
 	 */
@@ -0,0 +1,152 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cs345.interpret.ParserMetrics;
+
+/**
+ * This class is the dispatch table used to find the Action for a command.
+ *
+ * The table maps the first Word of a command to the Actions whose first
+ * Term contains it, sorted by descending priority. Actions with the same
+ * priority are kept in the order they were made. The second Word is
+ * checked against the second Term of each candidate when a command is
+ * looked up, which for compiled Terms is the test of one bit (see Terms).
+ * So the table doesn't need an entry for each pair of words, which for a
+ * Term naming every object of a large world made the table huge.
+ *
+ * Words are canonical objects, so the table is an identity map.
+ *
+ * The table is built once, when the game is complete.
+ */
+public class ActionTable {
+
+    private static final Action[] NO_ACTIONS = new Action[0];
+
+    private static final Comparator<Action> BY_PRIORITY = new Comparator<Action>() {
+        @Override public int compare(Action a, Action b) {
+            return Integer.compare(b.getPriority(), a.getPriority());
+        }
+    };
+
+    private final Map<Word, Action[]> table = new IdentityHashMap<Word, Action[]>();
+
+    /**
+     * Build the table for the given actions.
+     *
+     * @param actions the Actions of the game, in the order they were made
+     */
+    public ActionTable(Collection<Action> actions) {
+        Map<Word, List<Action>> lists = new IdentityHashMap<Word, List<Action>>();
+        for (Action act : actions) {
+            for (Word w1 : act.getTerm1().getWords()) {
+                List<Action> candidates = lists.get(w1);
+                if (candidates == null) {
+                    candidates = new ArrayList<Action>(2);
+                    lists.put(w1, candidates);
+                }
+                // A word added to a Term twice is seen twice in a row.
+                if (candidates.isEmpty() || candidates.get(candidates.size() - 1) != act)
+                    candidates.add(act);
+            }
+        }
+
+        for (Map.Entry<Word, List<Action>> e : lists.entrySet()) {
+            List<Action> candidates = e.getValue();
+            // Collections.sort is stable, so equal priorities keep their order.
+            Collections.sort(candidates, BY_PRIORITY);
+            table.put(e.getKey(), candidates.toArray(new Action[candidates.size()]));
+        }
+    }
+
+    /* True if the second word of a command fits the second Term of an Action. */
+    private static boolean accepts(Action act, Word w2) {
+        Term t2 = act.getTerm2();
+        return (t2 == null) ? w2 == null : w2 != null && t2.contains(w2);
+    }
+
+    /**
+     * Return the Actions for a command, sorted by descending priority.
+     *
+     * @param w1 the first word of the command
+     * @param w2 the second word of the command or null if this a one word command
+     * @return the candidate actions, an empty array if there are none
+     */
+    public Action[] candidates(Word w1, Word w2) {
+        Action[] all = table.get(w1);
+        if (all == null)
+            return NO_ACTIONS;
+        List<Action> result = new ArrayList<Action>();
+        for (Action act : all) {
+            if (accepts(act, w2))
+                result.add(act);
+        }
+        return result.toArray(new Action[result.size()]);
+    }
+
+    /**
+     * Find the Action to be performed for a command.
+     *
+     * The candidates are checked in order of descending priority and the
+     * first one whose ValidMethod passes is returned.
+     *
+     * @param game the game for the command
+     * @param w1 the first word of the command
+     * @param w2 the second word of the command or null if this a one word command
+     * @return the Action or null if no valid Action was found
+     */
+    public Action find(Game game, Word w1, Word w2) {
+        Action[] all = table.get(w1);
+        if (all == null)
+            return null;
+        for (Action act : all) {
+            if (accepts(act, w2) && act.checkValid(game, w1, w2))
+                return act;
+        }
+        return null;
+    }
+
+    /**
+     * Find the Action to be performed for a command, as find does, and
+     * record the number of ValidMethods called.
+     *
+     * @param game the game for the command
+     * @param w1 the first word of the command
+     * @param w2 the second word of the command or null if this a one word command
+     * @param metrics where the number of calls is recorded
+     * @return the Action or null if no valid Action was found
+     */
+    public Action find(Game game, Word w1, Word w2, ParserMetrics metrics) {
+        Action[] all = table.get(w1);
+        int calls = 0;
+        Action found = null;
+        if (all != null) {
+            for (Action act : all) {
+                if (!accepts(act, w2))
+                    continue;
+                if (act.getValid() != null)
+                    calls += 1;
+                if (act.checkValid(game, w1, w2)) {
+                    found = act;
+                    break;
+                }
+            }
+        }
+        metrics.validCalls(calls);
+        return found;
+    }
+}
@@ -11,6 +11,7 @@ import java.util.*;
 import java.io.*;
 
 import cs345.interpret.CommandParser;
+import cs345.message.CycleMsg;
 import cs345.message.Message;
 import cs345.message.MessageFormatter;
 
@@ -25,7 +26,14 @@ public class Game extends myAbstractProperties{
 	/**
 	 * A set containing all the Word objects.
 	 */
-	public Set<Word> allWords = new HashSet<Word>();
+	public Set<Word> allWords = new OrderedSet<Word>();
+
+	/**
+	 * An index over allWords used by the command parser to find the Word
+	 * for user input. This is built by the Builder when the game is
+	 * complete.
+	 */
+	public Vocabulary vocabulary;
 	
 	public List<Term> noise = new ArrayList<Term>();
 	
@@ -38,12 +46,43 @@ public class Game extends myAbstractProperties{
     /**
      * A set containing all the game objects.
      */
-    public Set<GameObject> allObjects = new HashSet<GameObject>();
+    public Set<GameObject> allObjects = new OrderedSet<GameObject>();
+
+    /**
+     * An index over allObjects used to find the GameObjects named by a
+     * Word. This is built by the Builder when the game is complete.
+     */
+    public ObjectIndex objects;
     
+    /**
+     * All the Rooms, GameObjects and Players, in the order they were made.
+     * The position of a container in this list is its id in a GameSnapshot.
+     */
+    public List<Container> allContainers = new ArrayList<Container>();
+
+    /**
+     * The map of the Rooms, used to find routes between them. This is
+     * built by the Builder when the game is complete.
+     */
+    public RoomGraph map;
+
+    /**
+     * All the CycleMsgs made for this game, in the order they were made.
+     * Their positions are saved in a GameSnapshot.
+     */
+    public List<CycleMsg> allCycleMessages = new ArrayList<CycleMsg>();
+
     /**
 	 * A set containing all the Action objects.
 	 */
-    public Set<Action> allActions = new HashSet<Action>();
+    public Set<Action> allActions = new LinkedHashSet<Action>();
+
+    /**
+     * The dispatch table for allActions used by the command parser to
+     * find the Action for a command. This is built by the Builder when the
+     * game is complete.
+     */
+    public ActionTable actions;
 
     /**
      * The player.
@@ -57,6 +96,12 @@ public class Game extends myAbstractProperties{
      * current command.
      */
 	public boolean exit = false;
+
+    /**
+     * True once the game has been started, that is once the game.init
+     * event has been handled.
+     */
+	public boolean started = false;
     
     /**
      * The command parser.
@@ -80,7 +125,49 @@ public class Game extends myAbstractProperties{
 	 */
 	public String prompt;
 
+    /**
+     * The mutable state of this session of the game. The command parser
+     * binds this to the current thread while it runs commands.
+     */
+    public GameState state = new GameState(this);
+
     public Game() {
         // Nothing to do so far.
     }
+
+    /**
+     * Create a new session of this game.
+     *
+     * Everything built by the Builder (words, terms, messages, actions,
+     * rooms, objects and the player) is shared with the new session. The
+     * session gets its own GameState, input, output, command parser and
+     * exit flag, and a copy of the properties of this Game. The new session
+     * starts from the state the game was built in, so none of the changes
+     * made while playing this Game are seen by the new session.
+     *
+     * @param in the InputStream the session should use for input
+     * @param out the MessageFormatter the session should use for output
+     * @return the Game object for the new session
+     */
+    public Game newSession(InputStream in, MessageFormatter out) {
+        Game session = new Game();
+        session.allWords = allWords;
+        session.noise = noise;
+        session.special = special;
+        session.allObjects = allObjects;
+        session.objects = objects;
+        session.allContainers = allContainers;
+        session.map = map;
+        session.allCycleMessages = allCycleMessages;
+        session.allActions = allActions;
+        session.vocabulary = vocabulary;
+        session.actions = actions;
+        session.thePlayer = thePlayer;
+        session.prompt = prompt;
+        session.property = new PropertyValues(property);
+        session.commandIn = in;
+        session.messageOut = out;
+        session.parser = parser.newSession(session);
+        return session;
+    }
 }
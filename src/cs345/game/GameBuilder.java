@@ -9,6 +9,8 @@
 package cs345.game;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import cs345.interpret.*;
 import cs345.message.*;
@@ -24,6 +26,12 @@ public class GameBuilder implements Builder {
     /* The game this GameBuilder is building. */
     Game game;
 
+    /* The regions made so far, merged into the game in this order. */
+    private final List<GameBuilder> regions = new ArrayList<GameBuilder>();
+
+    /* The Terms made so far, compiled when the game is complete. */
+    private final List<Terms> terms = new ArrayList<Terms>();
+
     /**
      * Do any setup that is required before calling any of the makeXXX 
      * methods. This method should create the game object that's
@@ -42,12 +50,67 @@ public class GameBuilder implements Builder {
      * Do any final work that is required after all the makeXXX
      * methods have been called.
      *
-     * This implementation just returns the game object.
+     * This implementation adds what the regions made to the game, giving
+     * their containers ids after the ones already made, numbers the Words
+     * and compiles the Terms, then builds the indexes used by the command
+     * parser, the object index, the exits of each room and the room map,
+     * and returns the game object.
      */
     @Override public Game buildComplete() {
+        synchronized (regions) {
+            for (GameBuilder r : regions) {
+                merge(r.game);
+                terms.addAll(r.terms);
+            }
+            regions.clear();
+        }
+        Word[] byId = game.allWords.toArray(new Word[game.allWords.size()]);
+        for (int i = 0; i < byId.length; ++i) {
+            if (byId[i] instanceof Words)
+                ((Words) byId[i]).id = i;
+        }
+        for (Terms t : terms) {
+            t.compile(byId);
+        }
+        terms.clear();
+        game.vocabulary = new Vocabulary(game.allWords);
+        game.actions = new ActionTable(game.allActions);
+        game.objects = new ObjectIndex(game.allObjects, byId);
+        for (Container c : game.allContainers) {
+            if (c instanceof Rooms)
+                ((Rooms) c).indexExits(byId);
+        }
+        game.map = new RoomGraph(game.allContainers, RoomGraph.DEF_CACHE_SIZE);
         return game;
     }
     
+    /**
+     * Make a Builder for a region of the world, see Builder.region. The
+     * region collects what it makes in a Game of its own, which is merged
+     * into this game by buildComplete.
+     */
+    @Override public Builder region() {
+        GameBuilder region = new RegionBuilder();
+        synchronized (regions) {
+            regions.add(region);
+        }
+        return region;
+    }
+
+    /*
+     * Add the Words, Terms, containers and Actions of a region to the game.
+     */
+    private void merge(Game part) {
+        // A region made its own Words and objects, so none are in the game.
+        OrderedSet.appendAll(game.allWords, part.allWords);
+        game.noise.addAll(part.noise);
+        for (Container c : part.allContainers) {
+            register(c);
+        }
+        OrderedSet.appendAll(game.allObjects, part.allObjects);
+        game.allActions.addAll(part.allActions);
+    }
+
     /*
 	 * Make a Word and add it to the game.
 	 */
@@ -59,7 +122,7 @@ public class GameBuilder implements Builder {
 			Word pword = new WordPrefix();
 			pword.setWord(word.toLowerCase());
 			pword.setMatch(match);
-			game.allWords.add(pword);
+			OrderedSet.append(game.allWords, pword);
 			return pword;
 		}
 		
@@ -67,7 +130,7 @@ public class GameBuilder implements Builder {
 			Word eword = new WordExact();
 			eword.setWord(word.toLowerCase());
 			eword.setMatch(match);
-			game.allWords.add(eword);
+			OrderedSet.append(game.allWords, eword);
 			return eword;
 		
     
@@ -81,15 +144,56 @@ public class GameBuilder implements Builder {
 	 */
 	@Override public Term makeTerm(String name) {
 	    
-			Term term = new Terms();			
+			return addTerm(name, new Terms());
+	    }
+
+	/**
+	 * Make a Term of the words words[ids[0]], words[ids[1]], ..., in that
+	 * order, and add it to the game, as makeTerm and addWord would. The
+	 * arrays are kept, not copied, and must not be changed.
+	 *
+	 * When words holds the Words this GameBuilder made, in the order it
+	 * made them, the numbers are those the Words are given by
+	 * buildComplete, and the Term is compiled from them without looking up
+	 * its Words. WorldImage uses this to load the Terms it stores.
+	 *
+	 * @param name the name of the Term
+	 * @param words the Words
+	 * @param ids the indexes in words of the words of the Term
+	 * @return the Term
+	 * @throws IndexOutOfBoundsException if an index isn't in words
+	 */
+	public Term makeTerm(String name, Word[] words, int[] ids) {
+		for (int id : ids) {
+			if (id < 0 || id >= words.length)
+				throw new IndexOutOfBoundsException("word " + id);
+		}
+		return addTerm(name, new Terms(words, ids));
+	}
+
+	/*
+	 * Add a Term to those compiled by buildComplete. This checks for
+	 * creation of the "noisewords" term and does the right thing in that
+	 * case.
+	 */
+	private Term addTerm(String name, Terms term) {
+			terms.add(term);
 	        if (name == "noisewords"){		        
 	        	game.noise.add(term);	        
 	        	return term;	        	
 	        }
 	        
 	        return term;
-	    }
+	}
 	
+	/*
+	 * Give a container its id and add it to allContainers.
+	 */
+	private void register(Container c) {
+		((myContainer) c).id = game.allContainers.size();
+		game.allContainers.add(c);
+	}
+
 	/**
 	 * Make a Room and add it to the game.
 	 */
@@ -98,6 +202,7 @@ public class GameBuilder implements Builder {
 		newRoom.setName(name);
 		newRoom.setBriefDescription(brief);
 		newRoom.setBoundSelect(desc,newRoom);
+		register(newRoom);
 	
 		return newRoom;
 	}
@@ -109,6 +214,29 @@ public class GameBuilder implements Builder {
 		from.addpath(vocab, to);
 	    
 	}
+
+	/**
+	 * Make all the paths out of a room at once, as makePath would for each
+	 * terms[i] and to[i] in turn. The room must have no paths yet and no
+	 * Term may be in terms twice. For a Room made by this GameBuilder the
+	 * arrays are kept, not copied, and must not be changed. WorldImage uses
+	 * this to load the exits it stores.
+	 *
+	 * @param from the room
+	 * @param terms the Terms naming the paths
+	 * @param to the room each path leads to
+	 */
+	public void makePaths(Room from, Term[] terms, Room[] to) {
+		if (terms.length != to.length)
+			throw new IllegalArgumentException("Need a room for each Term");
+		if (from instanceof Rooms) {
+			((Rooms) from).setPaths(terms, to);
+			return;
+		}
+		for (int i = 0; i < terms.length; ++i) {
+			from.addpath(terms[i], to[i]);
+		}
+	}
 	
 	/**
 	 * Make an Action and add it to the set of all Actions.
@@ -130,6 +258,7 @@ public class GameBuilder implements Builder {
 	@Override public Player makePlayer(String name){
 		Player player =  new Players(game,name);
 		game.thePlayer = player;
+		register(player);
 		
 		
 		return player;
@@ -142,8 +271,9 @@ public class GameBuilder implements Builder {
 		Message inventoryDesc, Message hereIsDesc, Message longDesc) {
 		
 		GameObject gameObj = new GameObjects(name, vocab,inventoryDesc,hereIsDesc,longDesc);
-		game.allObjects.add(gameObj);
+		OrderedSet.append(game.allObjects, gameObj);
 		gameObj.setBoundSelect(gameObj);
+		register(gameObj);
 		
 		return gameObj;
 	}
@@ -178,6 +308,16 @@ public class GameBuilder implements Builder {
         return new ArgMsg(index);
     }
 
+    /**
+     * Make a message from a template with %n markers for arguments.
+     * @param template   the template
+     * @return  the created message object
+     */
+    @Override
+    public Message makeTemplateMessage(String template) {
+        return new TemplateMsg(template);
+    }
+
     /**
      * Make a message that selects one of a number of alternative messages.
      * @param msgs  the messages making up the message.
@@ -198,7 +338,9 @@ public class GameBuilder implements Builder {
      */
     @Override
     public Message makeCycleMessage(Message... msgs) {
-        return new CycleMsg(msgs);
+        CycleMsg msg = new CycleMsg(game.allCycleMessages.size(), msgs);
+        game.allCycleMessages.add(msg);
+        return msg;
     }
 
     /**
@@ -221,4 +363,47 @@ public class GameBuilder implements Builder {
     	game.prompt = prompt;
 
     }
+
+    /*
+     * The Builder for a region. It builds into a Game of its own that only
+     * collects what is made.
+     */
+    private static class RegionBuilder extends GameBuilder {
+
+        RegionBuilder() {
+            game = new Game();
+        }
+
+        private static UnsupportedOperationException unsupported(String what) {
+            return new UnsupportedOperationException("A region can't " + what);
+        }
+
+        @Override public void startBuild(InputStream in, MessageFormatter out) {
+            throw unsupported("start a build");
+        }
+
+        @Override public Game buildComplete() {
+            throw unsupported("complete a build");
+        }
+
+        @Override public Builder region() {
+            throw unsupported("make regions");
+        }
+
+        @Override public Player makePlayer(String name) {
+            throw unsupported("make the player");
+        }
+
+        @Override public Message makeCycleMessage(Message... msgs) {
+            throw unsupported("make cycle messages");
+        }
+
+        @Override public void setSpecialMessage(String name, Message msg) {
+            throw unsupported("set special messages");
+        }
+
+        @Override public void setPrompt(String prompt) {
+            throw unsupported("set the prompt");
+        }
+    }
 }
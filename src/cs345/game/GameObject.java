@@ -63,5 +63,13 @@ public interface GameObject extends Container {
 	 */
 	Message getLongDesc();
 
+	/**
+	 * Get the container that holds this GameObject: a Room, the Player or
+	 * another GameObject. This is the container the object was last added
+	 * to, or null if it was removed from that container.
+	 * @return  the container or null
+	 */
+	Container getContainer();
+
 	void setBoundSelect(GameObject gameObj);
 }
@@ -1,9 +1,5 @@
 package cs345.game;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-
 import cs345.message.BoundSelect;
 import cs345.message.Message;
 
@@ -13,8 +9,8 @@ public class GameObjects extends myContainer implements GameObject {
 	private Message shortDescribe;
 	private Message hereIs;
 	private Message longDescribe;
-	
-	private Set<GameObject> gameObj = new HashSet<GameObject>();
+	/* The initial container, while playing see GameState. */
+	Container owner;
 	
 	GameObjects(String name, Term command, Message shortDescribe, Message hereIs, Message longDescribe){
 		this.name = name;
@@ -30,44 +26,37 @@ public class GameObjects extends myContainer implements GameObject {
 	 * then reassign to attributes
 	 */
 	public void setBoundSelect(GameObject game){
-		Message boundShort = new BoundSelect(shortDescribe,game);
-		Message boundHere = new BoundSelect(hereIs,game);
-		Message boundLong = new BoundSelect(longDescribe,game);
+		Message boundShort = BoundSelect.bind(shortDescribe,game);
+		Message boundHere = BoundSelect.bind(hereIs,game);
+		Message boundLong = BoundSelect.bind(longDescribe,game);
 		this.shortDescribe = boundShort;
 		this.hereIs = boundHere;
 		this.longDescribe = boundLong;
 	}
 
 	@Override
-	public void addObject(GameObject obj) {
-		gameObj.add(obj);
-
-	}
-
-	@Override
-	public void removeObject(GameObject obj) {
-		if(gameObj !=null){
-		gameObj.remove(obj);
-		}
-
+	public boolean match(Word w) {
+		
+		 return command.contains(w);
 	}
 
-	@Override
-	public boolean contains(GameObject obj) {
-		
-		return gameObj.contains(obj);
+	/* The Term naming this object, for ObjectIndex. */
+	Term getTerm() {
+		return command;
 	}
 
 	@Override
-	public Collection<GameObject> getContents() {
-		
-		return gameObj;
+	public Container getContainer() {
+		GameState s = GameState.current();
+		return (s == null) ? owner : s.getOwner(this);
 	}
 
-	@Override
-	public boolean match(Word w) {
-		
-		 return command.contains(w);
+	void setContainer(Container c) {
+		GameState s = GameState.current();
+		if (s == null)
+			owner = c;
+		else
+			s.setOwner(this, c);
 	}
 
 	@Override
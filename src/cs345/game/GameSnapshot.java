@@ -0,0 +1,427 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import cs345.interpret.CommandParser;
+import cs345.interpret.Event;
+import cs345.interpret.EventType;
+import cs345.message.CycleMsg;
+
+/**
+ * This class saves and restores the state of a session of a game.
+ *
+ * A snapshot holds only what changes while a game is played: the changes
+ * recorded in the session's GameState, the properties of the Game, the
+ * positions of the CycleMsgs and the exit and started flags. Everything the
+ * Builder made is left out. Rooms, GameObjects and the Player are written
+ * as their ids, their positions in Game.allContainers, so a snapshot can
+ * be restored onto any session of a game built from the same
+ * GameDescription. A snapshot of HardCodedGame is a few hundred bytes.
+ *
+ * The format is:
+ *
+ *   "GS" version
+ *   containers cycles words     -- counts that identify the game
+ *   flags                       -- exit and started
+ *   n, then n changed containers in id order, each:
+ *     id mask [state] [contents] [properties] [location] [container]
+ *   the Game's properties
+ *   n, then n pairs of cycle message index and position
+ *
+ * Numbers are written as variable length ints, 7 bits to a byte. Property
+ * values may be null, Boolean, Integer, Long, String or a Container.
+ *
+ * After a snapshot is restored, a game.restore event is handled in place
+ * of game.init. Anything that isn't part of the snapshot, such as event
+ * handlers added while playing, must be rebuilt by a handler for that event.
+ */
+public final class GameSnapshot {
+
+    private static final byte MAGIC1 = 'G';
+    private static final byte MAGIC2 = 'S';
+    private static final byte VERSION = 2;
+
+    private static final int EXIT = 1;
+    private static final int STARTED = 2;
+
+    private static final int STATE = 1;
+    private static final int CONTENTS = 2;
+    private static final int PROPERTIES = 4;
+    private static final int LOCATION = 8;
+    private static final int OWNER = 16;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int STRING = 5;
+    private static final int CONTAINER = 6;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final EventType GAME_RESTORE =
+            EventType.getInstance(CommandParser.GAME_RESTORE_EVENT);
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Save the state of a session.
+     *
+     * @param game the session's Game object
+     * @return the snapshot
+     * @throws IllegalArgumentException if a property has a value that
+     *         can't be saved
+     */
+    public static byte[] save(Game game) {
+        Out out = new Out();
+        out.writeByte(MAGIC1);
+        out.writeByte(MAGIC2);
+        out.writeByte(VERSION);
+        out.writeInt(game.allContainers.size());
+        out.writeInt(game.allCycleMessages.size());
+        out.writeInt(game.allWords.size());
+        out.writeByte((game.exit ? EXIT : 0) | (game.started ? STARTED : 0));
+
+        Map<myContainer, GameState.Slot> slots = game.state.slots();
+        int[] ids = new int[slots.size()];
+        int n = 0;
+        for (myContainer c : slots.keySet()) {
+            ids[n++] = c.id;
+        }
+        Arrays.sort(ids);
+        out.writeInt(n);
+        for (int id : ids) {
+            GameState.Slot s = slots.get(game.allContainers.get(id));
+            int mask = (s.hasState ? STATE : 0)
+                    | (s.contents != null ? CONTENTS : 0)
+                    | (s.properties != null ? PROPERTIES : 0)
+                    | (s.hasLocation ? LOCATION : 0)
+                    | (s.hasOwner ? OWNER : 0);
+            out.writeInt(id);
+            out.writeByte(mask);
+            if (s.hasState)
+                out.writeInt(zigzag(s.state));
+            if (s.contents != null) {
+                out.writeInt(s.contents.size());
+                for (GameObject obj : s.contents) {
+                    out.writeInt(((myContainer) obj).id);
+                }
+            }
+            if (s.properties != null)
+                writeProperties(out, s.properties);
+            if (s.hasLocation)
+                writeContainer(out, s.location);
+            if (s.hasOwner)
+                writeContainer(out, s.owner);
+        }
+
+        writeProperties(out, game.property);
+
+        GameState state = game.state;
+        int nCycles = game.allCycleMessages.size();
+        int moved = 0;
+        for (int i = 0; i < nCycles; ++i) {
+            if (state.getCyclePosition(i) != 0)
+                moved += 1;
+        }
+        out.writeInt(moved);
+        for (int i = 0; i < nCycles; ++i) {
+            int position = state.getCyclePosition(i);
+            if (position != 0) {
+                out.writeInt(i);
+                out.writeInt(position);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Restore a snapshot onto a session. Any changes the session has made
+     * are discarded first, but handlers it added are not removed, so the
+     * session should be a new one. If the snapshot was taken after the
+     * game started, a game.restore event is handled once the state is
+     * restored.
+     *
+     * @param game the session's Game object
+     * @param snapshot the snapshot, as returned by save
+     * @throws IllegalArgumentException if the snapshot is damaged or was
+     *         taken from a different game
+     */
+    public static void restore(Game game, byte[] snapshot) {
+        In in = new In(snapshot);
+        try {
+            if (in.readByte() != MAGIC1 || in.readByte() != MAGIC2)
+                throw new IllegalArgumentException("Not a game snapshot");
+            int version = in.readByte();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unknown snapshot version " + version);
+            int containers = in.readInt();
+            int cycles = in.readInt();
+            int words = in.readInt();
+            if (containers != game.allContainers.size()
+                    || cycles != game.allCycleMessages.size()
+                    || words != game.allWords.size())
+                throw new IllegalArgumentException("Snapshot is from a different game");
+            int flags = in.readByte();
+
+            // Read everything before changing the game, so a damaged
+            // snapshot leaves the game as it was.
+            List<myContainer> changed = new ArrayList<myContainer>();
+            List<GameState.Slot> restored = new ArrayList<GameState.Slot>();
+            int n = in.readInt();
+            for (int i = 0; i < n; ++i) {
+                myContainer c = (myContainer) container(game, in.readInt());
+                int mask = in.readByte();
+                GameState.Slot s = new GameState.Slot();
+                if ((mask & STATE) != 0) {
+                    s.hasState = true;
+                    s.state = unzigzag(in.readInt());
+                }
+                if ((mask & CONTENTS) != 0) {
+                    int size = in.readInt();
+                    s.contents = new ArrayList<GameObject>(Math.min(size, containers));
+                    for (int k = 0; k < size; ++k) {
+                        s.contents.add((GameObject) container(game, in.readInt()));
+                    }
+                }
+                if ((mask & PROPERTIES) != 0)
+                    s.properties = readProperties(in, game);
+                if ((mask & LOCATION) != 0) {
+                    s.hasLocation = true;
+                    s.location = (Room) readContainer(in, game);
+                }
+                if ((mask & OWNER) != 0) {
+                    s.hasOwner = true;
+                    s.owner = readContainer(in, game);
+                }
+                changed.add(c);
+                restored.add(s);
+            }
+            PropertyValues properties = readProperties(in, game);
+            int moved = in.readInt();
+            int[] positions = new int[2 * moved];
+            for (int i = 0; i < positions.length; i += 2) {
+                positions[i] = in.readInt();
+                positions[i + 1] = in.readInt();
+                if (positions[i] >= cycles)
+                    throw new IllegalArgumentException("Bad cycle message " + positions[i]);
+            }
+            if (!in.atEnd())
+                throw new IllegalArgumentException("Extra data in snapshot");
+
+            GameState state = game.state;
+            state.clear();
+            for (int i = 0; i < changed.size(); ++i) {
+                state.slots().put(changed.get(i), restored.get(i));
+            }
+            game.property = properties;
+            for (int i = 0; i < positions.length; i += 2) {
+                CycleMsg m = game.allCycleMessages.get(positions[i]);
+                state.setCyclePosition(positions[i], Math.floorMod(positions[i + 1], m.size()));
+            }
+            game.exit = (flags & EXIT) != 0;
+            game.started = (flags & STARTED) != 0;
+        } catch (ClassCastException exc) {
+            throw new IllegalArgumentException("Damaged snapshot", exc);
+        } catch (IndexOutOfBoundsException exc) {
+            throw new IllegalArgumentException("Damaged snapshot", exc);
+        }
+
+        if (game.started) {
+            game.parser.queueEvent(new Event(GAME_RESTORE));
+            game.parser.handleEvents();
+        }
+    }
+
+    private static Container container(Game game, int id) {
+        if (id < 0 || id >= game.allContainers.size())
+            throw new IllegalArgumentException("Bad container id " + id);
+        return game.allContainers.get(id);
+    }
+
+    /* Containers are written as id + 1, with 0 for null. */
+    private static void writeContainer(Out out, Container c) {
+        out.writeInt((c == null) ? 0 : ((myContainer) c).id + 1);
+    }
+
+    private static Container readContainer(In in, Game game) {
+        int id = in.readInt();
+        return (id == 0) ? null : container(game, id - 1);
+    }
+
+    /* Properties are written by name, since PropertyKey ids depend on the
+     * order names were first used in a process. */
+    private static void writeProperties(Out out, PropertyValues properties) {
+        out.writeInt(properties.size());
+        for (int id = 0; id < properties.limit(); ++id) {
+            if (properties.has(id)) {
+                String name = PropertyKey.nameOf(id);
+                out.writeString(name);
+                writeValue(out, name, properties.get(id));
+            }
+        }
+    }
+
+    private static PropertyValues readProperties(In in, Game game) {
+        int n = in.readInt();
+        PropertyValues properties = new PropertyValues();
+        for (int i = 0; i < n; ++i) {
+            String name = in.readString();
+            properties.put(PropertyKey.named(name).getId(), readValue(in, game));
+        }
+        return properties;
+    }
+
+    private static void writeValue(Out out, String key, Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt(zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            long v = (Long) value;
+            out.writeByte(LONG);
+            out.writeLong((v << 1) ^ (v >> 63));
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof myContainer && ((myContainer) value).id >= 0) {
+            out.writeByte(CONTAINER);
+            writeContainer(out, (Container) value);
+        } else {
+            throw new IllegalArgumentException("Can't save property " + key
+                    + " of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(In in, Game game) {
+        int tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case FALSE:
+            return Boolean.FALSE;
+        case TRUE:
+            return Boolean.TRUE;
+        case INT:
+            return unzigzag(in.readInt());
+        case LONG:
+            long v = in.readLong();
+            return (v >>> 1) ^ -(v & 1);
+        case STRING:
+            return in.readString();
+        case CONTAINER:
+            return readContainer(in, game);
+        default:
+            throw new IllegalArgumentException("Bad property type " + tag);
+        }
+    }
+
+    /* Map small negative numbers to small positive ones. */
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /* A growable byte array. */
+    private static final class Out {
+        private byte[] buf = new byte[256];
+        private int pos = 0;
+
+        void writeByte(int b) {
+            if (pos == buf.length)
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            writeLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                writeByte((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            writeByte((int) v);
+        }
+
+        void writeString(String s) {
+            byte[] b = s.getBytes(UTF8);
+            writeInt(b.length);
+            for (byte x : b) {
+                writeByte(x);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    /* Reads what Out wrote. Reading past the end throws an exception. */
+    private static final class In {
+        private final byte[] buf;
+        private int pos = 0;
+
+        In(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readByte() {
+            if (pos >= buf.length)
+                throw new IllegalArgumentException("Snapshot is truncated");
+            return buf[pos++] & 0xFF;
+        }
+
+        int readInt() {
+            long v = readLong();
+            if ((v >>> 32) != 0)
+                throw new IllegalArgumentException("Bad number in snapshot");
+            return (int) v;
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IllegalArgumentException("Bad number in snapshot");
+        }
+
+        String readString() {
+            int n = readInt();
+            if (n > buf.length - pos)
+                throw new IllegalArgumentException("Snapshot is truncated");
+            String s = new String(buf, pos, n, UTF8);
+            pos += n;
+            return s;
+        }
+
+        boolean atEnd() {
+            return pos == buf.length;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the mutable state of one session of a game.
+ *
+ * The Rooms, GameObjects and Player built by a Builder make up a template
+ * that is shared by every session of the game. Their fields hold the
+ * initial state: the state ints, the contents, the properties, the
+ * container of each object and the location of the player. Once a session
+ * is playing, changes are not made to the template. Instead the first
+ * change to a container copies that container's state into this object
+ * (copy on write) and all later reads and writes for that container in
+ * this session use the copy. A new session therefore starts with an empty
+ * GameState and only pays for the containers it actually changes.
+ *
+ * The GameState in use is bound to the current thread. The command parser
+ * binds the state of its game while it runs commands and handles events, so
+ * game logic doesn't need to know about sessions. The positions of the
+ * game's CycleMsgs are kept here too. When no GameState is bound,
+ * for example while the game is being built, the template itself is read
+ * and changed.
+ */
+public class GameState {
+
+    private static final ThreadLocal<GameState> CURRENT = new ThreadLocal<GameState>();
+
+    /* The changed state of one container. */
+    static class Slot {
+        boolean hasState;
+        int state;
+        List<GameObject> contents;
+        PropertyValues properties;
+        boolean hasLocation;
+        Room location;
+        boolean hasOwner;
+        Container owner;
+    }
+
+    private final Game game;
+    private final Map<myContainer, Slot> slots = new IdentityHashMap<myContainer, Slot>();
+    /* The position of each CycleMsg, by id, or null if none has moved. */
+    private int[] cycles;
+
+    /**
+     * Create an empty state, a session that hasn't changed anything yet.
+     *
+     * @param game the session's Game object
+     */
+    public GameState(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * @return the session's Game object
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * @return the number of containers changed by this session
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Return the GameState bound to the current thread.
+     *
+     * @return the state or null if no state is bound
+     */
+    public static GameState current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Return the Game of the session bound to the current thread.
+     *
+     * @param template the Game to use if no state is bound
+     * @return the Game
+     */
+    public static Game currentGame(Game template) {
+        GameState s = CURRENT.get();
+        return (s == null) ? template : s.game;
+    }
+
+    /**
+     * Bind this state to the current thread.
+     *
+     * @return the previously bound state, to be passed to unbind
+     */
+    public GameState bind() {
+        GameState previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Undo a call to bind.
+     *
+     * @param previous the state returned by bind
+     */
+    public static void unbind(GameState previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    /**
+     * Discard all changes, returning the session to the state the game
+     * was built in.
+     */
+    public void clear() {
+        slots.clear();
+        cycles = null;
+    }
+
+    /**
+     * Return the position of a CycleMsg in this session.
+     *
+     * @param id the id of the message, its index in Game.allCycleMessages
+     * @return the index of the message that will be output next
+     */
+    public int getCyclePosition(int id) {
+        return (cycles == null || id >= cycles.length) ? 0 : cycles[id];
+    }
+
+    /**
+     * Set the position of a CycleMsg in this session.
+     *
+     * @param id the id of the message, its index in Game.allCycleMessages
+     * @param position the index of the message that will be output next
+     */
+    public void setCyclePosition(int id, int position) {
+        cyclesFor(id)[id] = position;
+    }
+
+    /**
+     * Advance the position of a CycleMsg in this session.
+     *
+     * @param id the id of the message, its index in Game.allCycleMessages
+     * @param size the number of messages in the cycle
+     * @return the index of the message to output now
+     */
+    public int nextCyclePosition(int id, int size) {
+        int[] c = cyclesFor(id);
+        int position = c[id];
+        c[id] = (position + 1 >= size) ? 0 : position + 1;
+        return position;
+    }
+
+    private int[] cyclesFor(int id) {
+        if (cycles == null || id >= cycles.length) {
+            int n = Math.max(id + 1, game.allCycleMessages.size());
+            cycles = (cycles == null) ? new int[n] : Arrays.copyOf(cycles, n);
+        }
+        return cycles;
+    }
+
+    /* The changed containers, for GameSnapshot. */
+    Map<myContainer, Slot> slots() {
+        return slots;
+    }
+
+    Slot slot(myContainer c) {
+        Slot s = slots.get(c);
+        if (s == null) {
+            s = new Slot();
+            slots.put(c, s);
+        }
+        return s;
+    }
+
+    int getState(myContainer c) {
+        Slot s = slots.get(c);
+        return (s != null && s.hasState) ? s.state : c.state;
+    }
+
+    void setState(myContainer c, int state) {
+        Slot s = slot(c);
+        s.hasState = true;
+        s.state = state;
+    }
+
+    List<GameObject> contents(myContainer c) {
+        Slot s = slots.get(c);
+        return (s != null && s.contents != null) ? s.contents : c.readOnlyContents();
+    }
+
+    List<GameObject> contentsForUpdate(myContainer c) {
+        Slot s = slot(c);
+        if (s.contents == null)
+            s.contents = new ArrayList<GameObject>(c.contents);
+        return s.contents;
+    }
+
+    PropertyValues properties(myContainer c) {
+        Slot s = slots.get(c);
+        return (s != null && s.properties != null) ? s.properties : c.property;
+    }
+
+    PropertyValues propertiesForUpdate(myContainer c) {
+        Slot s = slot(c);
+        if (s.properties == null)
+            s.properties = new PropertyValues(c.property);
+        return s.properties;
+    }
+
+    Room getLocation(Players p) {
+        Slot s = slots.get(p);
+        return (s != null && s.hasLocation) ? s.location : p.location;
+    }
+
+    void setLocation(Players p, Room location) {
+        Slot s = slot(p);
+        s.hasLocation = true;
+        s.location = location;
+    }
+
+    Container getOwner(GameObjects o) {
+        Slot s = slots.get(o);
+        return (s != null && s.hasOwner) ? s.owner : o.owner;
+    }
+
+    void setOwner(GameObjects o, Container owner) {
+        Slot s = slot(o);
+        s.hasOwner = true;
+        s.owner = owner;
+    }
+}
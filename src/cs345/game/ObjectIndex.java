@@ -0,0 +1,253 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class finds the GameObjects named by a Word.
+ *
+ * The index maps each Word to the GameObjects whose Term contains it, in
+ * the order the objects were made. Finding the object for a command looks
+ * only at those candidates, instead of matching the Word against every
+ * object in the game. The candidates can be narrowed to a scope using the
+ * container of each object, see GameObject.getContainer: the objects
+ * inside a container, including objects inside objects, or the objects
+ * the player can reach.
+ *
+ * Once the game is complete each Word has a number, see Words.getId, and
+ * the candidates are kept in an array by that number. A Word without a
+ * number is kept in a map.
+ *
+ * The index is built once, when the game is complete. Which objects a
+ * Word names doesn't change while playing, so the index is shared by all
+ * sessions of a game.
+ */
+public class ObjectIndex {
+
+    private static final GameObject[] NO_OBJECTS = new GameObject[0];
+
+    /* The deepest nesting of objects that is followed. */
+    private static final int MAX_DEPTH = 32;
+
+    /* The Words of the game by number, and the candidates of each. */
+    private final Word[] words;
+    private final GameObject[][] byId;
+    /* The candidates of the Words without a number. */
+    private final Map<Word, GameObject[]> others = new IdentityHashMap<Word, GameObject[]>();
+
+    /**
+     * Build the index.
+     *
+     * @param objects the GameObjects of the game, in the order they were made
+     * @param words the Words of the game, in the order they were numbered
+     */
+    public ObjectIndex(Collection<GameObject> objects, Collection<Word> words) {
+        this(objects, words.toArray(new Word[words.size()]));
+    }
+
+    /*
+     * Build the index, with the Words of the game by number, the array the
+     * Terms were compiled with.
+     */
+    ObjectIndex(Collection<GameObject> objects, Word[] byNumber) {
+        words = byNumber;
+        byId = new GameObject[words.length][];
+        // Each object and word it is named by, as a pair of numbers.
+        GameObject[] objs = objects.toArray(new GameObject[objects.size()]);
+        int[] pairWord = new int[objs.length];
+        int[] pairObj = new int[objs.length];
+        int pairs = 0;
+        Map<Word, List<GameObject>> lists = new IdentityHashMap<Word, List<GameObject>>();
+        for (int o = 0; o < objs.length; ++o) {
+            int[] ids = ids(objs[o], lists);
+            if (pairs + ids.length > pairWord.length) {
+                int n = Math.max(2 * pairWord.length, pairs + ids.length);
+                pairWord = Arrays.copyOf(pairWord, n);
+                pairObj = Arrays.copyOf(pairObj, n);
+            }
+            for (int id : ids) {
+                pairWord[pairs] = id;
+                pairObj[pairs] = o;
+                pairs += 1;
+            }
+        }
+
+        int[] count = new int[byId.length];
+        for (int i = 0; i < pairs; ++i) {
+            count[pairWord[i]] += 1;
+        }
+        for (int i = 0; i < pairs; ++i) {
+            int id = pairWord[i];
+            GameObject[] c = byId[id];
+            if (c == null) {
+                c = new GameObject[count[id]];
+                byId[id] = c;
+                count[id] = 0;
+            }
+            GameObject obj = objs[pairObj[i]];
+            // A Term made outside the Builder may name a word twice.
+            if (count[id] == 0 || c[count[id] - 1] != obj)
+                c[count[id]++] = obj;
+        }
+        for (int id = 0; id < byId.length; ++id) {
+            GameObject[] c = byId[id];
+            if (c != null && count[id] < c.length)
+                byId[id] = Arrays.copyOf(c, count[id]);
+        }
+        for (Map.Entry<Word, List<GameObject>> e : lists.entrySet()) {
+            List<GameObject> c = e.getValue();
+            others.put(e.getKey(), c.toArray(new GameObject[c.size()]));
+        }
+    }
+
+    /*
+     * The numbers of the Words that name an object. The objects for Words
+     * without a number are added to lists instead.
+     */
+    private int[] ids(GameObject obj, Map<Word, List<GameObject>> lists) {
+        Collection<Word> named;
+        if (obj instanceof GameObjects) {
+            Term t = ((GameObjects) obj).getTerm();
+            int[] ids = (t instanceof Terms) ? ((Terms) t).ids(words) : null;
+            if (ids != null)
+                return ids;
+            named = t.getWords();
+        } else {
+            // Not one of ours, so its Term is unknown.
+            named = new ArrayList<Word>();
+            for (Word w : words) {
+                if (obj.match(w))
+                    named.add(w);
+            }
+        }
+        int[] ids = new int[named.size()];
+        int n = 0;
+        for (Word w : named) {
+            int id = id(w);
+            if (id >= 0)
+                ids[n++] = id;
+            else
+                add(lists, w, obj);
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /* The number of a Word of the game, or -1 if it has none. */
+    private int id(Word w) {
+        if (!(w instanceof Words))
+            return -1;
+        int id = ((Words) w).id;
+        return (id >= 0 && id < words.length && words[id] == w) ? id : -1;
+    }
+
+    private static void add(Map<Word, List<GameObject>> lists, Word w, GameObject obj) {
+        List<GameObject> c = lists.get(w);
+        if (c == null) {
+            c = new ArrayList<GameObject>(1);
+            lists.put(w, c);
+        }
+        if (!c.contains(obj))
+            c.add(obj);
+    }
+
+    /**
+     * Return the GameObjects named by a Word.
+     *
+     * @param w the word
+     * @return the objects, in the order they were made, an empty array if
+     *         there are none
+     */
+    public GameObject[] candidates(Word w) {
+        int id = id(w);
+        GameObject[] c = (id >= 0) ? byId[id] : others.get(w);
+        return (c == null) ? NO_OBJECTS : c;
+    }
+
+    /**
+     * Find the first GameObject named by a Word, wherever it is.
+     *
+     * @param w the word
+     * @return the object or null if the Word names no object
+     */
+    public GameObject find(Word w) {
+        GameObject[] c = candidates(w);
+        return (c.length == 0) ? null : c[0];
+    }
+
+    /**
+     * Find the first GameObject named by a Word that is inside a container,
+     * directly or inside other objects in the container.
+     *
+     * @param w the word
+     * @param scope the container
+     * @return the object or null if there is none in the container
+     */
+    public GameObject find(Word w, Container scope) {
+        for (GameObject obj : candidates(w)) {
+            if (isInside(obj, scope))
+                return obj;
+        }
+        return null;
+    }
+
+    /**
+     * Find the GameObject named by a Word that the player can reach: one
+     * the player is carrying, or else one in the player's location.
+     *
+     * @param w the word
+     * @param player the player
+     * @return the object or null if the player can't reach one
+     */
+    public GameObject findReachable(Word w, Player player) {
+        GameObject obj = find(w, player);
+        if (obj == null && player.getLocation() != null)
+            obj = find(w, player.getLocation());
+        return obj;
+    }
+
+    /**
+     * Find the GameObject a command means. This is the object the player
+     * can reach if there is one, otherwise the first object named by the
+     * Word, so the caller can still say what the player can't reach.
+     *
+     * @param w the word
+     * @param player the player
+     * @return the object or null if the Word names no object
+     */
+    public GameObject resolve(Word w, Player player) {
+        GameObject obj = findReachable(w, player);
+        return (obj != null) ? obj : find(w);
+    }
+
+    /**
+     * Test whether a GameObject is inside a container, directly or inside
+     * other objects in the container.
+     *
+     * @param obj the object
+     * @param scope the container
+     * @return true if the object is inside the container
+     */
+    public static boolean isInside(GameObject obj, Container scope) {
+        Container c = obj.getContainer();
+        for (int depth = 0; c != null && depth < MAX_DEPTH; ++depth) {
+            if (c == scope)
+                return true;
+            if (!(c instanceof GameObject))
+                return false;
+            c = ((GameObject) c).getContainer();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A Set that keeps its elements in the order they were added, like a
+ * LinkedHashSet, but doesn't hash them until it is asked about one.
+ *
+ * The Builder appends every Word and GameObject it makes to one of these.
+ * They are new, so they can't already be in the set, and a large world
+ * is loaded without hashing any of them.
+ */
+final class OrderedSet<E> extends AbstractSet<E> {
+
+    private final ArrayList<E> list = new ArrayList<E>();
+
+    /* The elements, for contains, made when first needed. */
+    private Set<Object> index;
+
+    /**
+     * Add an element to a set, without checking whether it is already
+     * there if the set is an OrderedSet.
+     *
+     * @param set  the set
+     * @param e  the element, which must not be in the set
+     */
+    static <E> void append(Set<E> set, E e) {
+        if (set instanceof OrderedSet) {
+            OrderedSet<E> s = (OrderedSet<E>) set;
+            s.list.add(e);
+            if (s.index != null)
+                s.index.add(e);
+        } else {
+            set.add(e);
+        }
+    }
+
+    /**
+     * Add elements to a set, without checking whether they are already
+     * there if the set is an OrderedSet.
+     *
+     * @param set  the set
+     * @param c  the elements, none of which may be in the set
+     */
+    static <E> void appendAll(Set<E> set, Collection<? extends E> c) {
+        for (E e : c) {
+            append(set, e);
+        }
+    }
+
+    private Set<Object> index() {
+        if (index == null)
+            index = new HashSet<Object>(list);
+        return index;
+    }
+
+    @Override public boolean add(E e) {
+        if (!index().add(e))
+            return false;
+        list.add(e);
+        return true;
+    }
+
+    @Override public boolean contains(Object o) {
+        return index().contains(o);
+    }
+
+    @Override public boolean remove(Object o) {
+        if (!index().remove(o))
+            return false;
+        list.remove(o);
+        return true;
+    }
+
+    @Override public void clear() {
+        list.clear();
+        index = null;
+    }
+
+    @Override public int size() {
+        return list.size();
+    }
+
+    @Override public Object[] toArray() {
+        return list.toArray();
+    }
+
+    @Override public <T> T[] toArray(T[] a) {
+        return list.toArray(a);
+    }
+
+    @Override public Iterator<E> iterator() {
+        final Iterator<E> it = list.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override public E next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override public void remove() {
+                it.remove();
+                if (index != null)
+                    index.remove(last);
+            }
+        };
+    }
+}
@@ -1,13 +1,9 @@
 package cs345.game;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
 public class Players extends myContainer  implements Player {
 	private String name;
-	private Room location;
+	Room location;
 	private Game game;
-	private Collection<GameObject> gameObjects =  new ArrayList<GameObject>();
 	
 	Players(Game game, String name){
 		this.setName(name);
@@ -18,56 +14,34 @@ public class Players extends myContainer  implements Player {
 
 
 
-	@Override
-	public void addObject(GameObject obj) {
-		gameObjects.add(obj);
-		
-
-	}
-
-	@Override
-	public void removeObject(GameObject obj) {
-		if(gameObjects != null){
-			gameObjects.remove(obj);
-		}
-
-	}
-
-	@Override
-	public boolean contains(GameObject obj) {
-		return gameObjects.contains(obj);
-	}
-
-	@Override
-	public Collection<GameObject> getContents() {
-		
-		return gameObjects;
-	}
-
 	@Override
 	// Get the players location;
 	public Room getLocation() {
-		
-		return this.location;
+		GameState s = GameState.current();
+		return (s == null) ? this.location : s.getLocation(this);
 	}
 
 	@Override
 	public void apportTo(Room room) {
-		this.location = room;
+		GameState s = GameState.current();
+		if (s == null)
+			this.location = room;
+		else
+			s.setLocation(this, room);
 
 	}
 
 	@Override
 	public void startAt(Room room) {
-		this.location = room;
+		apportTo(room);
 
 	}
 
 	@Override
 	public boolean moveOnPath(Word pathName) {
-		Room r = this.location.getRoom(pathName);
+		Room r = getLocation().getRoom(pathName);
 		if(r!=null){
-			this.location = r;
+			apportTo(r);
 			return true;
 		}
 		
@@ -78,9 +52,11 @@ public class Players extends myContainer  implements Player {
 	@Override
 	public void lookAround() {
 		//Game objects in current room
-		this.location.getDescription().print(game.messageOut);
+		Game game = GameState.currentGame(this.game);
+		Room location = getLocation();
+		location.getDescription().print(game.messageOut);
 				
-				for(GameObject gameobj : this.location.getContents()){							
+				for(GameObject gameobj : location.getContents()){							
 					gameobj.getHereIsDesc().print(game.messageOut);
 				}
 				game.messageOut.println();
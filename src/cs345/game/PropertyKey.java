@@ -0,0 +1,161 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is the name and type of a property.
+ *
+ * Keys are interned: there is one key for each name, and each key has a
+ * small dense id given in the order the names were first used. An object
+ * stores its properties in an array indexed by id, see PropertyValues, so
+ * getting a property with a key is an array index instead of a String hash
+ * and lookup.
+ *
+ * A key made with of has a type and the typed property methods check
+ * values against it. The String property methods use the same keys, made
+ * with type Object when the name hasn't been used before. A game should
+ * make its keys once, in static fields, for example
+ *
+ *   {@code static final PropertyKey<Boolean> LIT = PropertyKey.of("lit", Boolean.class);}
+ *
+ * @param <T> the type of the values of the property
+ */
+public final class PropertyKey<T> {
+
+    private static final Map<String, PropertyKey<?>> BY_NAME =
+            new ConcurrentHashMap<String, PropertyKey<?>>();
+    private static final List<String> NAMES = new ArrayList<String>();
+
+    private final String name;
+    private final Class<T> type;
+    private final int id;
+
+    private PropertyKey(String name, Class<T> type, int id) {
+        this.name = name;
+        this.type = type;
+        this.id = id;
+    }
+
+    /**
+     * Return the key for a property, making it if needed.
+     *
+     * A name first used through the String property methods has type
+     * Object. Making a typed key for it later gives it that type.
+     *
+     * @param name the name of the property
+     * @param type the type of the values of the property
+     * @param <T> the type of the values of the property
+     * @return the key
+     * @throws IllegalArgumentException if the name already has a key of
+     *         another type
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <T> PropertyKey<T> of(String name, Class<T> type) {
+        PropertyKey<?> key = BY_NAME.get(name);
+        if (key == null) {
+            key = new PropertyKey<T>(name, type, NAMES.size());
+            NAMES.add(name);
+        } else if (key.type == type) {
+            return (PropertyKey<T>) key;
+        } else if (key.type == Object.class) {
+            key = new PropertyKey<T>(name, type, key.id);
+        } else if (type != Object.class) {
+            throw new IllegalArgumentException("Property " + name + " has type "
+                    + key.type.getName() + ", not " + type.getName());
+        } else {
+            return (PropertyKey<T>) key;
+        }
+        BY_NAME.put(name, key);
+        return (PropertyKey<T>) key;
+    }
+
+    /**
+     * Return the key for a name, making an untyped key if the name hasn't
+     * been used.
+     *
+     * @param name the name of the property
+     * @return the key
+     */
+    public static PropertyKey<?> named(String name) {
+        PropertyKey<?> key = BY_NAME.get(name);
+        return (key != null) ? key : of(name, Object.class);
+    }
+
+    /**
+     * Return the key for a name, without making one.
+     *
+     * @param name the name of the property
+     * @return the key or null if the name hasn't been used
+     */
+    public static PropertyKey<?> find(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /* The name of the property with an id. */
+    static synchronized String nameOf(int id) {
+        return NAMES.get(id);
+    }
+
+    /**
+     * @return the name of the property
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the type of the values of the property
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the dense id of the property
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Check that a value can be stored in this property.
+     *
+     * @param value the value, null is always allowed
+     * @return the value, as a T
+     * @throws IllegalArgumentException if the value isn't a T
+     */
+    T check(Object value) {
+        if (value != null && !type.isInstance(value))
+            throw new IllegalArgumentException("Property " + name + " has type "
+                    + type.getName() + ", not " + value.getClass().getName());
+        return type.cast(value);
+    }
+
+    /* Keys are interned, so there is one key for an id except while an
+     * untyped key is being given a type. Compare ids. */
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof PropertyKey) && ((PropertyKey<?>) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
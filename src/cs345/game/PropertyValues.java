@@ -0,0 +1,81 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the values of the properties of one object, in an
+ * array indexed by PropertyKey id.
+ *
+ * An empty slot means the object doesn't have the property. A property
+ * whose value is null holds a marker instead, so hasProperty can tell the
+ * two apart. An object with a handful of properties costs one small array,
+ * far less than a HashMap and its entries.
+ */
+final class PropertyValues {
+
+    private static final Object NULL = new Object();
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] values = EMPTY;
+
+    PropertyValues() {
+    }
+
+    /**
+     * Create a copy of another object's values.
+     *
+     * @param other the values to copy
+     */
+    PropertyValues(PropertyValues other) {
+        values = (other.values.length == 0) ? EMPTY : other.values.clone();
+    }
+
+    boolean has(int id) {
+        return id < values.length && values[id] != null;
+    }
+
+    Object get(int id) {
+        if (id >= values.length)
+            return null;
+        Object v = values[id];
+        return (v == NULL) ? null : v;
+    }
+
+    void put(int id, Object value) {
+        if (id >= values.length)
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length + 4));
+        values[id] = (value == null) ? NULL : value;
+    }
+
+    void clear() {
+        values = EMPTY;
+    }
+
+    /**
+     * @return the number of properties the object has
+     */
+    int size() {
+        int n = 0;
+        for (Object v : values) {
+            if (v != null)
+                n += 1;
+        }
+        return n;
+    }
+
+    /**
+     * @return one more than the highest id that may be set, for iterating
+     *         with has and get
+     */
+    int limit() {
+        return values.length;
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the map of the rooms of a game, compiled into arrays, and
+ * finds routes between rooms.
+ *
+ * Each room is given a number, its position among the rooms in the order
+ * they were made. The paths made by Builder.makePath are held in
+ * compressed sparse row form: the paths out of room r are the entries
+ * first[r] up to first[r + 1] of the arrays target and term, in the order
+ * they were added. Walking the map therefore touches a few int arrays
+ * instead of the Rooms. A room is found from its container id, see
+ * Game.allContainers, so finding the number of a room is an array lookup.
+ *
+ * Routes are found by a breadth first search from the starting room, which
+ * gives the shortest route, in number of paths, to every other room. The
+ * result of a search is kept, for a limited number of starting rooms, so
+ * later routes from the same room cost only the walk back along the route.
+ * This suits NPCs and hints, which ask for many routes from few rooms.
+ * Each search kept is an int for every room, so the number kept is also
+ * limited to what fits in MAX_CACHE_BYTES: 256 searches of a world of a
+ * thousand rooms, but only 41 of a world of 100,000.
+ *
+ * The graph is built once, when the game is complete. The map doesn't
+ * change while playing, so the graph is shared by all sessions of a game
+ * and may be used from any thread.
+ */
+public class RoomGraph {
+
+    /** The default number of searches that are kept. */
+    public static final int DEF_CACHE_SIZE = 256;
+
+    /**
+     * The most memory the searches that are kept may use, in bytes. One
+     * search is kept even if it is bigger.
+     */
+    public static final int MAX_CACHE_BYTES = 16 << 20;
+
+    private final Room[] rooms;
+    /* The number of each room by its container id, -1 if not a room. */
+    private final int[] index;
+    /* The paths out of room r are first[r] .. first[r + 1] - 1. */
+    private final int[] first;
+    private final int[] target;
+    /* The room each path starts from, to walk back along a route. */
+    private final int[] origin;
+    private final Term[] term;
+
+    /* For each starting room searched, the path used to reach each room. */
+    private final Map<Integer, int[]> searches;
+
+    /**
+     * Build the graph.
+     *
+     * @param containers the containers of the game; the Rooms among them
+     *        are the rooms of the graph, in this order
+     * @param cacheSize the number of searches to keep, if they fit in
+     *        MAX_CACHE_BYTES
+     * @throws IllegalArgumentException if two of the Rooms have the same
+     *         container id, or one has none
+     */
+    public RoomGraph(Collection<Container> containers, int cacheSize) {
+        List<Rooms> list = new ArrayList<Rooms>();
+        for (Container c : containers) {
+            if (c instanceof Rooms)
+                list.add((Rooms) c);
+        }
+        int n = list.size();
+        rooms = list.toArray(new Room[n]);
+        int ids = 0;
+        for (Rooms r : list) {
+            ids = Math.max(ids, r.id + 1);
+        }
+        index = new int[ids];
+        Arrays.fill(index, -1);
+        for (int r = 0; r < n; ++r) {
+            int id = list.get(r).id;
+            if (id < 0 || index[id] >= 0)
+                throw new IllegalArgumentException("Not a room with its own container id: " + rooms[r]);
+            index[id] = r;
+        }
+
+        first = new int[n + 1];
+        int edges = 0;
+        for (int r = 0; r < n; ++r) {
+            first[r] = edges;
+            Rooms from = list.get(r);
+            for (int p = 0; p < from.pathCount(); ++p) {
+                if (indexOf(from.pathRoom(p)) >= 0)
+                    edges += 1;
+            }
+        }
+        first[n] = edges;
+        target = new int[edges];
+        origin = new int[edges];
+        term = new Term[edges];
+        int e = 0;
+        for (int r = 0; r < n; ++r) {
+            Rooms from = list.get(r);
+            for (int p = 0; p < from.pathCount(); ++p) {
+                int to = indexOf(from.pathRoom(p));
+                if (to >= 0) {
+                    target[e] = to;
+                    origin[e] = r;
+                    term[e] = from.pathTerm(p);
+                    e += 1;
+                }
+            }
+        }
+
+        final int keep = (cacheSize > 0)
+                ? (int) Math.max(1, Math.min(cacheSize, MAX_CACHE_BYTES / (4L * Math.max(1, n))))
+                : 0;
+        searches = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > keep;
+            }
+        };
+    }
+
+    /**
+     * @return the number of rooms
+     */
+    public int size() {
+        return rooms.length;
+    }
+
+    /**
+     * @return the number of paths between rooms
+     */
+    public int pathCount() {
+        return target.length;
+    }
+
+    /**
+     * @param r the number of a room
+     * @return the room
+     */
+    public Room getRoom(int r) {
+        return rooms[r];
+    }
+
+    /**
+     * @param room a room
+     * @return the number of the room or -1 if it isn't part of the graph
+     */
+    public int indexOf(Room room) {
+        if (!(room instanceof Rooms))
+            return -1;
+        int id = ((Rooms) room).id;
+        if (id < 0 || id >= index.length)
+            return -1;
+        int r = index[id];
+        return (r >= 0 && rooms[r] == room) ? r : -1;
+    }
+
+    /**
+     * Return the rooms reached directly from a room.
+     *
+     * @param room the room
+     * @return the rooms, in the order the paths were added
+     */
+    public List<Room> neighbours(Room room) {
+        int r = number(room);
+        List<Room> result = new ArrayList<Room>(first[r + 1] - first[r]);
+        for (int e = first[r]; e < first[r + 1]; ++e) {
+            result.add(rooms[target[e]]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the length of the shortest route between two rooms.
+     *
+     * @param from the starting room
+     * @param to the destination
+     * @return the number of paths taken or -1 if there is no route
+     */
+    public int distance(Room from, Room to) {
+        int s = number(from);
+        int t = number(to);
+        if (s == t)
+            return 0;
+        int[] via = search(s);
+        if (via[t] < 0)
+            return -1;
+        int d = 0;
+        for (int r = t; r != s; r = origin[via[r]]) {
+            d += 1;
+        }
+        return d;
+    }
+
+    /**
+     * Return a shortest route between two rooms.
+     *
+     * @param from the starting room
+     * @param to the destination
+     * @return the Terms of the paths to take, in order, empty if the rooms
+     *         are the same, or null if there is no route
+     */
+    public List<Term> route(Room from, Room to) {
+        int s = number(from);
+        int t = number(to);
+        if (s == t)
+            return Collections.emptyList();
+        int[] via = search(s);
+        if (via[t] < 0)
+            return null;
+        List<Term> result = new ArrayList<Term>();
+        for (int r = t; r != s; r = origin[via[r]]) {
+            result.add(term[via[r]]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Return the first path of a shortest route between two rooms, for
+     * something that moves one room at a time.
+     *
+     * @param from the starting room
+     * @param to the destination
+     * @return the Term of the path to take or null if the rooms are the
+     *         same or there is no route
+     */
+    public Term nextStep(Room from, Room to) {
+        int s = number(from);
+        int t = number(to);
+        if (s == t)
+            return null;
+        int[] via = search(s);
+        if (via[t] < 0)
+            return null;
+        int e = via[t];
+        while (origin[e] != s) {
+            e = via[origin[e]];
+        }
+        return term[e];
+    }
+
+    private int number(Room room) {
+        int r = indexOf(room);
+        if (r < 0)
+            throw new IllegalArgumentException("Not a room of this game: " + room);
+        return r;
+    }
+
+    /*
+     * Search from a room. The result gives, for each room, the path by
+     * which it is first reached, or -1 if it can't be reached.
+     */
+    private int[] search(int s) {
+        int[] via;
+        synchronized (searches) {
+            via = searches.get(s);
+        }
+        if (via != null)
+            return via;
+
+        via = new int[rooms.length];
+        Arrays.fill(via, -1);
+        int[] queue = new int[rooms.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int r = queue[head++];
+            for (int e = first[r]; e < first[r + 1]; ++e) {
+                int t = target[e];
+                if (t != s && via[t] < 0) {
+                    via[t] = e;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        synchronized (searches) {
+            searches.put(s, via);
+        }
+        return via;
+    }
+}
@@ -1,69 +1,175 @@
 package cs345.game;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 import cs345.message.BoundSelect;
 import cs345.message.Message;
 import cs345.message.MessageFormatter;
 
 public class Rooms extends myContainer implements Room {
+	private static final Term[] NO_TERMS = new Term[0];
+	private static final Room[] NO_ROOMS = new Room[0];
+	private static final int[] NO_EXITS = new int[0];
+
 	private String name;
-	private Collection<GameObject> gameObj =  new ArrayList<GameObject>();
 	//private Message description;
 	private Message boundSelect;
 	private Message brief;
-	Map<Term, Room> paths = new HashMap<Term, Room>();
+	/* The paths, in the order they were added: pathTerms[i] leads to
+	 * pathRooms[i]. A room has few paths, so arrays are kept instead of a
+	 * map; adding a path for a Term already there replaces its room. */
+	private Term[] pathTerms = NO_TERMS;
+	private Room[] pathRooms = NO_ROOMS;
+	private int pathCount;
+	/* The exits, built by indexExits: an open addressed table of the
+	 * numbers of the words of the paths, -1 in an empty slot, and the room
+	 * each leads to. It is at most half full. Null while paths are being
+	 * added, or if a word has no number. exitWords are the Words of the
+	 * game by number. */
+	private int[] exitIds;
+	private Room[] exitRooms;
+	private Word[] exitWords;
 	
 
 
 	@Override
-	public void addObject(GameObject obj) {
-		gameObj.add(obj);
-
+	public Message getDescription() {				
+		return boundSelect;
 	}
-
-	@Override
-	public void removeObject(GameObject obj) {
-		if(gameObj !=null){
-			gameObj.remove(obj);
+	
+	/* 
+	 * add path to the paths
+	 */
+	public void addpath(Term vocab, Room to){
+		exitIds = null;
+		for (int i = 0; i < pathCount; ++i) {
+			if (pathTerms[i].equals(vocab)) {
+				pathRooms[i] = to;
+				return;
+			}
+		}
+		if (pathCount == pathTerms.length) {
+			int n = Math.max(4, 2 * pathCount);
+			pathTerms = Arrays.copyOf(pathTerms, n);
+			pathRooms = Arrays.copyOf(pathRooms, n);
 		}
+		pathTerms[pathCount] = vocab;
+		pathRooms[pathCount] = to;
+		pathCount += 1;
+	}
 
+	/*
+	 * Replace the paths with terms[i] leading to to[i]. The arrays are
+	 * kept, not copied; no Term may be in terms twice.
+	 */
+	void setPaths(Term[] terms, Room[] to) {
+		exitIds = null;
+		pathTerms = terms;
+		pathRooms = to;
+		pathCount = terms.length;
 	}
 
-	@Override
-	public boolean contains(GameObject obj) {
-		return gameObj.contains(obj);
+	/* The number of paths, and the Term and room of each, for RoomGraph. */
+	int pathCount() {
+		return pathCount;
 	}
 
-	@Override
-	public Collection<GameObject> getContents() {
-		return gameObj;
+	Term pathTerm(int i) {
+		return pathTerms[i];
 	}
 
-	@Override
-	public Message getDescription() {				
-		return boundSelect;
+	Room pathRoom(int i) {
+		return pathRooms[i];
 	}
-	
-	/* 
-	 * add path to Map
+
+	/*
+	 * Build the table of exits, given the Words of the game by number.
+	 * When two paths share a word, the one added first wins, as in the
+	 * search in getRoom.
 	 */
-	public void addpath(Term vocab, Room to){
-		paths.put(vocab, to);
+	void indexExits(Word[] byId){
+		int[][] pathIds = new int[pathCount][];
+		int n = 0;
+		for (int i = 0; i < pathCount; ++i) {
+			pathIds[i] = ids(pathTerms[i], byId);
+			if (pathIds[i] == null) {
+				exitIds = null;
+				return;
+			}
+			n += pathIds[i].length;
+		}
+		int[] ids = NO_EXITS;
+		Room[] to = NO_ROOMS;
+		if (n > 0) {
+			int size = Integer.highestOneBit(2 * n - 1) << 1;
+			ids = new int[size];
+			Arrays.fill(ids, -1);
+			to = new Room[size];
+			for (int i = 0; i < pathCount; ++i) {
+				for (int id : pathIds[i]) {
+					int slot = slot(ids, id);
+					if (ids[slot] < 0) {
+						ids[slot] = id;
+						to[slot] = pathRooms[i];
+					}
+				}
+			}
+		}
+		exitWords = byId;
+		exitRooms = to;
+		exitIds = ids;
+	}
+
+	/* The slot of a word number in the table, or the empty slot it would
+	 * go in. */
+	private static int slot(int[] ids, int id) {
+		int mask = ids.length - 1;
+		int slot = id & mask;
+		while (ids[slot] >= 0 && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/* The numbers of the words of a Term, or null if a word has none. */
+	private static int[] ids(Term t, Word[] byId) {
+		int[] ids = (t instanceof Terms) ? ((Terms) t).ids(byId) : null;
+		if (ids != null)
+			return ids;
+		List<Word> words = t.getWords();
+		ids = new int[words.size()];
+		for (int i = 0; i < ids.length; ++i) {
+			Word w = words.get(i);
+			if (!(w instanceof Words))
+				return null;
+			int id = ((Words) w).id;
+			if (id < 0 || id >= byId.length || byId[id] != w)
+				return null;
+			ids[i] = id;
+		}
+		return ids;
 	}
 	
 	/* 
-	 * Searches through map for Term word that matches 
-	 * parameter, returns room
+	 * Returns the room the path named by the word leads to. Once the
+	 * game is complete this is a probe of the table of exits by the
+	 * number of the word, otherwise the paths are searched.
 	 */
 	public Room getRoom(Word w){
-		for(Term key : paths.keySet()){
-			if (key.getWords().contains(w)){
-				return paths.get(key);
-			}
+		int[] ids = exitIds;
+		if (ids != null) {
+			if (!(w instanceof Words) || ids.length == 0)
+				return null;
+			int id = ((Words) w).id;
+			if (id < 0 || id >= exitWords.length || exitWords[id] != w)
+				return null;
+			int slot = slot(ids, id);
+			return (ids[slot] == id) ? exitRooms[slot] : null;
+		}
+		for (int i = 0; i < pathCount; ++i) {
+			if (pathTerms[i].contains(w))
+				return pathRooms[i];
 		}
 		return null;
 	}
@@ -93,7 +199,7 @@ public class Rooms extends myContainer implements Room {
 	 * @param boundSelect the boundSelect to set
 	 */
 	public void setBoundSelect(Message messageObject, Room r) {
-		Message bound = new BoundSelect(messageObject,r);		
+		Message bound = BoundSelect.bind(messageObject,r);		
 		this.boundSelect = bound;
 	}
 
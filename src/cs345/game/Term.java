@@ -44,5 +44,10 @@ public interface Term {
      */
     boolean contains(Word w);
 
-	List<Word> getWords();
+    /**
+     * Return the Words of the term, in the order they were added.
+     *
+     * @return the Words
+     */
+    List<Word> getWords();
 }
@@ -1,32 +1,186 @@
 package cs345.game;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/*
+ * While the game is being built the words of a Term are kept in a list.
+ * When the game is complete the Builder numbers the Words and calls
+ * compile, which replaces the list with the numbers of the words: a bit
+ * set from the first word to the last or, when there are only a few words
+ * or they are far apart, a sorted array. contains is then a test of one
+ * bit, or a binary search, instead of a search of the list. getWords keeps
+ * the order the words were added in: if that isn't the order of their
+ * numbers, the words are also kept in an array in that order.
+ *
+ * A Term made by GameBuilder.makeTerm from an array of Words and numbers
+ * keeps them until it is compiled. If the numbers are those of the game,
+ * compile uses them without looking up the Words.
+ */
 public class Terms implements Term {
+	/* Terms with no more words than this keep a sorted array. */
+	private static final int FEW_WORDS = 4;
+
 	private List<Word> words = new ArrayList<Word>();
+	/* Once compiled, the Words by number and the numbers in this Term. */
+	private Word[] byId;
+	private long[] bits;
+	private int lo;
+	private int[] ids;
+	/* The words in the order they were added, if it isn't by number. */
+	private Word[] order;
+	/* Until compiled, the array and numbers the Term was made from. */
+	private Word[] made;
+	private int[] madeIds;
 	
 	// Constructor
 		public Terms(){
 			
 		}
 
+	/*
+	 * Make a Term of the words made[madeIds[0]], made[madeIds[1]], ... The
+	 * arrays are kept, not copied.
+	 */
+	Terms(Word[] made, int[] madeIds) {
+		this.made = made;
+		this.madeIds = madeIds;
+		words = view(made, madeIds);
+	}
+
 	@Override
 	public void addWord(Word word) {
+		if (byId != null || made != null)
+			words = new ArrayList<Word>(getWords());
+		byId = null;
+		made = null;
+		madeIds = null;
 		words.add(word);
 
 	}
 
 	@Override
 	public boolean contains(Word w) {
-		return words.contains(w);
+		if (byId == null)
+			return words.contains(w);
+		if (!(w instanceof Words))
+			return false;
+		int id = ((Words) w).id;
+		if (id < 0 || id >= byId.length || byId[id] != w)
+			return false;
+		if (bits != null) {
+			int b = (id >>> 6) - lo;
+			return b >= 0 && b < bits.length && (bits[b] & (1L << id)) != 0;
+		}
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	/*
+	 * Replace the list of words with their numbers. byId holds the Words of
+	 * the game, each at its number. If a word isn't one of them the list is
+	 * kept.
+	 */
+	void compile(Word[] byId) {
+		if (this.byId != null)
+			return;
+		int[] n = new int[words.size()];
+		for (int i = 0; i < n.length; ++i) {
+			if (madeIds != null) {
+				int id = madeIds[i];
+				if (id < byId.length && byId[id] == made[id]) {
+					n[i] = id;
+					continue;
+				}
+			}
+			Word w = words.get(i);
+			if (!(w instanceof Words))
+				return;
+			int id = ((Words) w).id;
+			if (id < 0 || id >= byId.length || byId[id] != w)
+				return;
+			n[i] = id;
+		}
+		boolean inOrder = true;
+		for (int i = 1; i < n.length; ++i) {
+			if (n[i] <= n[i - 1])
+				inOrder = false;
+		}
+		order = inOrder ? null : words.toArray(new Word[words.size()]);
+		Arrays.sort(n);
+		int size = 0;
+		for (int i = 0; i < n.length; ++i) {
+			if (i == 0 || n[i] != n[i - 1])
+				n[size++] = n[i];
+		}
+		if (size < n.length)
+			n = Arrays.copyOf(n, size);
+		if (size > FEW_WORDS && (n[size - 1] >>> 6) - (n[0] >>> 6) < size) {
+			lo = n[0] >>> 6;
+			bits = new long[(n[size - 1] >>> 6) - lo + 1];
+			for (int id : n) {
+				bits[(id >>> 6) - lo] |= 1L << id;
+			}
+			ids = null;
+		} else {
+			bits = null;
+			ids = n;
+		}
+		this.byId = byId;
+		words = null;
+		made = null;
+		madeIds = null;
 	}
 
 	/**
-	 * @return the words
+	 * @return the words, in the order they were added
 	 */
 	public List<Word> getWords() {
-		return words;
+		if (byId == null)
+			return words;
+		if (order != null)
+			return Collections.unmodifiableList(Arrays.asList(order));
+		return view(byId, ids(byId));
+	}
+
+	/* The words w[n[0]], w[n[1]], ... as a List. */
+	private static List<Word> view(final Word[] w, final int[] n) {
+		return new AbstractList<Word>() {
+			@Override public Word get(int i) {
+				return w[n[i]];
+			}
+
+			@Override public int size() {
+				return n.length;
+			}
+		};
+	}
+
+	/*
+	 * The sorted numbers of the words if this Term was compiled with the
+	 * Words byId, otherwise null. The array must not be changed.
+	 */
+	int[] ids(Word[] byId) {
+		if (this.byId == null || this.byId != byId)
+			return null;
+		return (ids != null) ? ids : members();
+	}
+
+	private int[] members() {
+		int size = 0;
+		for (long b : bits) {
+			size += Long.bitCount(b);
+		}
+		int[] n = new int[size];
+		int i = 0;
+		for (int b = 0; b < bits.length; ++b) {
+			for (long x = bits[b]; x != 0; x &= x - 1) {
+				n[i++] = 64 * (lo + b) + Long.numberOfTrailingZeros(x);
+			}
+		}
+		return n;
 	}
 
 	/**
@@ -34,6 +188,9 @@ public class Terms implements Term {
 	 */
 	public void setWords(List<Word> words) {
 		this.words = words;
+		byId = null;
+		made = null;
+		madeIds = null;
 	}
 
 }
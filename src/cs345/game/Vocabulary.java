@@ -0,0 +1,202 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * This class is an index over the vocabulary (the Words) of a game.
+ *
+ * The index is a prefix trie. Every word and every abbreviation of a word
+ * is entered into the trie using the lower case letters of its String.
+ * Each node of the trie corresponds to a prefix and records:
+ *   1. the Word whose String is exactly that prefix, if any,
+ *   2. the Word having that prefix as an abbreviation, if any,
+ *   3. the number of PREFIX words that start with that prefix, and
+ *      the first of them.
+ *
+ * A lookup walks the trie once, so it costs O(length of the input)
+ * regardless of the size of the vocabulary. The rules are the same as
+ * those used by the command parser before the index existed:
+ *   - an exact (case insensitive) match of a Word returns that Word,
+ *   - an exact match of an abbreviation returns the abbreviated Word,
+ *   - otherwise, if exactly one PREFIX word starts with the input, that
+ *     Word is returned,
+ *   - otherwise the input is either ambiguous (more than one PREFIX word
+ *     starts with it) or unknown.
+ *
+ * The index is built once, when the game is complete, and is never
+ * changed afterwards.
+ */
+public class Vocabulary {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static class Node {
+        /* Children, sorted by key. */
+        char[] keys = NO_KEYS;
+        Node[] children = NO_NODES;
+
+        /* The Word whose String ends at this node. */
+        Word word;
+
+        /* The Word having the abbreviation ending at this node. The
+         * abbreviation itself is kept since abbreviations, unlike words,
+         * are matched case sensitively.
+         */
+        Word abbrevWord;
+        String abbrev;
+
+        /* The PREFIX words that pass through this node. */
+        int prefixCount;
+        Word prefixWord;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return (i >= 0) ? children[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0)
+                return children[i];
+            i = -(i + 1);
+            Node n = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newKeys[i] = c;
+            newChildren[i] = n;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, keys.length - i);
+            keys = newKeys;
+            children = newChildren;
+            return n;
+        }
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * Build the index for the given words.
+     *
+     * @param words the Words of the game, in the order they were made
+     */
+    public Vocabulary(Collection<Word> words) {
+        for (Word w : words) {
+            add(w);
+        }
+    }
+
+    private void add(Word w) {
+        String s = w.getWord();
+        boolean prefix = (w.getMatch() == MatchType.PREFIX);
+        Node n = root;
+        for (int i = 0; i < s.length(); ++i) {
+            n = n.addChild(Character.toLowerCase(s.charAt(i)));
+            if (prefix) {
+                if (n.prefixCount == 0)
+                    n.prefixWord = w;
+                n.prefixCount += 1;
+            }
+        }
+        if (n.word == null)
+            n.word = w;
+        for (String abbrev : w.getwordAbbs()) {
+            Node a = root;
+            for (int i = 0; i < abbrev.length(); ++i) {
+                a = a.addChild(Character.toLowerCase(abbrev.charAt(i)));
+            }
+            if (a.abbrevWord == null) {
+                a.abbrevWord = w;
+                a.abbrev = abbrev;
+            }
+        }
+        size += 1;
+    }
+
+    /* Walk the trie for s[start, end), returns null if there is no node. */
+    private Node walk(CharSequence s, int start, int end) {
+        Node n = root;
+        for (int i = start; i < end && n != null; ++i) {
+            n = n.child(Character.toLowerCase(s.charAt(i)));
+        }
+        return n;
+    }
+
+    private static boolean regionEquals(String a, CharSequence s, int start, int end) {
+        if (a.length() != end - start)
+            return false;
+        for (int i = start; i < end; ++i) {
+            if (a.charAt(i - start) != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find the Word designated by the given user input.
+     *
+     * @param s the user input
+     * @return the Word or null if the input is ambiguous or unknown
+     */
+    public Word lookup(CharSequence s) {
+        return lookup(s, 0, s.length());
+    }
+
+    /**
+     * Find the Word designated by the characters s[start, end).
+     *
+     * @param s a sequence containing the user input
+     * @param start the index of the first character of the input
+     * @param end the index after the last character of the input
+     * @return the Word or null if the input is ambiguous or unknown
+     */
+    public Word lookup(CharSequence s, int start, int end) {
+        if (start >= end)
+            return null;
+        Node n = walk(s, start, end);
+        if (n == null)
+            return null;
+        if (n.word != null)
+            return n.word;
+        if (n.abbrevWord != null && regionEquals(n.abbrev, s, start, end))
+            return n.abbrevWord;
+        return (n.prefixCount == 1) ? n.prefixWord : null;
+    }
+
+    /**
+     * Return the number of PREFIX words that start with the characters
+     * s[start, end). When lookup returns null, a count greater than one
+     * means the input was ambiguous and a count of zero means the input
+     * was unknown.
+     *
+     * @param s a sequence containing the user input
+     * @param start the index of the first character of the input
+     * @param end the index after the last character of the input
+     * @return the number of matching PREFIX words
+     */
+    public int prefixCount(CharSequence s, int start, int end) {
+        if (start >= end)
+            return 0;
+        Node n = walk(s, start, end);
+        return (n == null) ? 0 : n.prefixCount;
+    }
+
+    /**
+     * @return the number of Words in the index
+     */
+    public int size() {
+        return size;
+    }
+}
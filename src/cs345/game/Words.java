@@ -7,6 +7,8 @@ public class Words implements Word {
 	private String word;
     private MatchType match;
     private List<String> wordAbb = new ArrayList<String>(); 
+    /* The number of the word, its position in Game.allWords, see getId. */
+    int id = -1;
    
     /**
      * Constructor
@@ -17,7 +19,7 @@ public class Words implements Word {
     
 public Words(String words, MatchType match) {
 	super();	
-	this.word = words;
+	this.word = words.toLowerCase();
 	this.match = match;
 		
 	}
@@ -33,20 +35,20 @@ public MatchType match(String s){
  * returns word object toString
  */
 public String toString(){
-	return word.toString();
+	return word;
 }
 /**
  * @return the word
  */
 public String getWord() {
-	return word.toLowerCase();
+	return word;
 }
 
 /**
- * @param word the word to set
+ * @param word the word to set, it is kept in lower case
  */
 public void setWord(String word) {
-	this.word = word;
+	this.word = word.toLowerCase();
 }
 
 /**
@@ -72,6 +74,15 @@ public List<String> getwordAbbs(){
 	return this.wordAbb;
 }
 
+/**
+ * @return the number of the word, its position in Game.allWords, or -1
+ *         if the game isn't complete. Numbers are given by the Builder
+ *         when the game is complete and are used by Terms.
+ */
+public int getId(){
+	return id;
+}
+
 	
 	
 	
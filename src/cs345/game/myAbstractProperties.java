@@ -1,30 +1,60 @@
 package cs345.game;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import cs345.interpret.PropertyObject;
 
+/*
+ * The properties are held in a PropertyValues, indexed by PropertyKey id.
+ * The String methods find the key for the name; the PropertyKey methods
+ * go straight to the array.
+ */
 public abstract class myAbstractProperties implements PropertyObject {
-	private Map<String, Object> property = new HashMap<String, Object>();
-	
+	PropertyValues property = new PropertyValues();
+
+	/* The values to read. myContainer reads the session's copy. */
+	PropertyValues values() {
+		return property;
+	}
+
+	/* The values to change. myContainer changes the session's copy. */
+	PropertyValues valuesForUpdate() {
+		return property;
+	}
 
 	@Override
 	public Object getProperty(String name)/*throws BadPropException*/ {	
 		/*if(property.get(name) == null){
 			throw new BadPropException("No property for name");
 		}*/
-		return property.get(name);
+		PropertyKey<?> key = PropertyKey.find(name);
+		return (key == null) ? null : values().get(key.getId());
 	}
 
 	@Override
 	public void setProperty(String name, Object value) {
-		property.put(name, value);		
+		PropertyKey<?> key = PropertyKey.named(name);
+		key.check(value);
+		valuesForUpdate().put(key.getId(), value);
 	}
 
 	@Override
 	public boolean hasProperty(String name) {		
-		return property.containsValue(name);
+		PropertyKey<?> key = PropertyKey.find(name);
+		return key != null && values().has(key.getId());
+	}
+
+	@Override
+	public <T> T getProperty(PropertyKey<T> key) {
+		return key.getType().cast(values().get(key.getId()));
+	}
+
+	@Override
+	public <T> void setProperty(PropertyKey<T> key, T value) {
+		valuesForUpdate().put(key.getId(), key.check(value));
+	}
+
+	@Override
+	public boolean hasProperty(PropertyKey<?> key) {
+		return values().has(key.getId());
 	}
 	
 	/*public class BadPropException extends Exception {		
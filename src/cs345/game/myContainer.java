@@ -1,22 +1,85 @@
 package cs345.game;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Container super-interface for Room, GameObject, Player
  *
+ * The fields hold the initial state of the container. While a session is
+ * playing, reads and changes go through the session's GameState.
  */
 public class myContainer extends myAbstractProperties{
-	private int state = 0;
-	
-	
-	
-	public int getState() {		
-		return state;
+	/* The position of this container in Game.allContainers. */
+	int id = -1;
+	int state = 0;
+	final List<GameObject> contents = new ArrayList<GameObject>();
+	/* Made when first asked for, most containers never are. */
+	private List<GameObject> readOnlyContents;
+
+	List<GameObject> readOnlyContents() {
+		List<GameObject> r = readOnlyContents;
+		if (r == null) {
+			r = Collections.unmodifiableList(contents);
+			readOnlyContents = r;
+		}
+		return r;
+	}
+
+
+	public int getState() {
+		GameState s = GameState.current();
+		return (s == null) ? state : s.getState(this);
 	}
 
-	
+
 	public void setState(int state) {
-		this.state = state;
+		GameState s = GameState.current();
+		if (s == null)
+			this.state = state;
+		else
+			s.setState(this, state);
+
+	}
+
+	private List<GameObject> contentsForUpdate() {
+		GameState s = GameState.current();
+		return (s == null) ? contents : s.contentsForUpdate(this);
+	}
+
+	public void addObject(GameObject obj) {
+		contentsForUpdate().add(obj);
+		if (obj instanceof GameObjects)
+			((GameObjects) obj).setContainer((Container) this);
+	}
+
+	public void removeObject(GameObject obj) {
+		contentsForUpdate().remove(obj);
+		if (obj instanceof GameObjects && obj.getContainer() == this)
+			((GameObjects) obj).setContainer(null);
+	}
+
+	public boolean contains(GameObject obj) {
+		return getContents().contains(obj);
+	}
+
+	public Collection<GameObject> getContents() {
+		GameState s = GameState.current();
+		return (s == null) ? readOnlyContents() : s.contents(this);
+	}
+
+	@Override
+	PropertyValues values() {
+		GameState s = GameState.current();
+		return (s == null) ? property : s.properties(this);
+	}
 
+	@Override
+	PropertyValues valuesForUpdate() {
+		GameState s = GameState.current();
+		return (s == null) ? property : s.propertiesForUpdate(this);
 	}
 
 }
@@ -9,16 +9,19 @@
 package cs345.interpret;
 
 import cs345.game.Action;
+import cs345.game.ActionTable;
 
 import cs345.game.Game;
-import cs345.game.MatchType;
+import cs345.game.GameState;
+import cs345.game.Term;
+import cs345.game.Vocabulary;
 import cs345.game.Word;
-import cs345.game.Words;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
 import java.util.Scanner;
 
 
@@ -28,12 +31,18 @@ import java.util.Scanner;
  * @author Chris Reedy (Chris.Reedy@wwu.edu)
  */
 public class BaseCommandParser implements CommandParser{
-	 List<EventHandler> eventHandlers = new ArrayList<EventHandler>();
-	 List<Event> eventQueue = new ArrayList<Event>();
+	private static final EventType COMMAND_EXEC = EventType.makeNewEventType(COMMAND_EXEC_EVENT);
+	 HandlerRegistry eventHandlers = new HandlerRegistry();
+	 Deque<Event> eventQueue = new ArrayDeque<Event>();
 	
 	
 // add protected special message attribute?
 	private Game game;
+	private final Tokenizer tokenizer = new Tokenizer();
+	private CommandJournal journal;
+	// Read once by each method that uses it, so null costs one test.
+	private ParserMetrics metrics;
+	private ScriptProfiler profiler;
 		
 
 	/**
@@ -47,20 +56,39 @@ public class BaseCommandParser implements CommandParser{
 	}
 	
 	
+	@Override
+	public CommandParser newSession(Game session) {
+		BaseCommandParser p = new BaseCommandParser(session);
+		p.eventHandlers = new HandlerRegistry(eventHandlers);
+		p.metrics = metrics;
+		p.profiler = profiler;
+		return p;
+	}
+	
+	
+	@Override
 	public void handleEvents(){
-		//List<Event> copyQueue = new ArrayList<Event>(eventQueue);
-		List<EventHandler> copy = new ArrayList<EventHandler>(eventHandlers);
-		while (!eventQueue.isEmpty()){
-						 
-			Event e = eventQueue.remove(0);
-			for (EventHandler h : copy){
-				if (h.getEventType() == e.getType()){
-					h.handle(game, e);
-					
-				}
-				
+		ParserMetrics m = metrics;
+		long t0 = 0;
+		if (m != null) {
+			m.queueDepth(eventQueue.size());
+			t0 = System.nanoTime();
+		}
+		GameState previous = game.state.bind();
+		try {
+		// Handlers added or removed by a handler take effect on the next call.
+		Map<EventType, EventHandler[]> snapshot = eventHandlers.handlers();
+		Event e;
+		while ((e = eventQueue.poll()) != null){
+			for (EventHandler h : HandlerRegistry.handlers(snapshot, e.getType())){
+				h.handle(game, e);
 			}
 		}
+		} finally {
+			GameState.unbind(previous);
+			if (m != null)
+				m.time(ParserMetrics.Stage.HANDLE_EVENTS, System.nanoTime() - t0);
+		}
 	}
 
     /**
@@ -70,18 +98,58 @@ public class BaseCommandParser implements CommandParser{
      */
 	public void run() throws IOException {
 		Scanner input = new Scanner(game.commandIn);
-		//game.messageOut.prompt( "? ");
-		queueEvent(new Event ( EventType.makeNewEventType("game.init")));
-		handleEvents();				
+		start();
 	    while (!game.exit) {	
-	    	game.messageOut.startLine();
-	    	game.messageOut.prompt("? ");	    	
-			 if (!ProcessLine(input.nextLine()))
+	    	prompt();
+			 if (!step(input.nextLine()))
 	                break;
-	            	            
-			handleEvents();
 		}
+		ParserMetrics m = metrics;
+		long t0 = (m != null) ? System.nanoTime() : 0;
 		game.messageOut.println();
+		game.messageOut.flush();
+		if (m != null)
+			m.time(ParserMetrics.Stage.FLUSH, System.nanoTime() - t0);
+	}
+
+    /**
+     * Start the game. The game.init event is queued and handled. This
+     * only happens once, later calls do nothing.
+     */
+	@Override
+	public void start() {
+		if (game.started)
+			return;
+		game.started = true;
+		queueEvent(new Event ( EventType.makeNewEventType(GAME_INIT_EVENT)));
+		handleEvents();
+	}
+
+    /**
+     * Prompt the user for the next command.
+     */
+	@Override
+	public void prompt() {
+		ParserMetrics m = metrics;
+		long t0 = (m != null) ? System.nanoTime() : 0;
+		game.messageOut.startLine();
+		game.messageOut.prompt("? ");
+		if (m != null)
+			m.time(ParserMetrics.Stage.FLUSH, System.nanoTime() - t0);
+	}
+
+    /**
+     * Run one command and handle the events it caused.
+     *
+     * @param line the command entered by the user
+     * @return true if the game should continue with another command
+     */
+	@Override
+	public boolean step(String line) {
+		if (!ProcessLine(line))
+			return false;
+		handleEvents();
+		return !game.exit;
 	}
 	
     /**
@@ -104,47 +172,57 @@ public class BaseCommandParser implements CommandParser{
      */
 
 	@Override
-	//Process input into user tokens
 	public boolean ProcessLine(String s) {
-		  s = s.trim();
-	        if (s.length() == 0) {
+		GameState previous = game.state.bind();
+		try {
+			return processTokens(s);
+		} finally {
+			GameState.unbind(previous);
+		}
+	}
+
+	//Process input into user tokens
+	private boolean processTokens(String s) {
+	        ParserMetrics m = metrics;
+	        long t0 = (m != null) ? System.nanoTime() : 0;
+	        int count = tokenizer.tokenize(s);
+	        if (m != null)
+	            m.time(ParserMetrics.Stage.TOKENIZE, System.nanoTime() - t0);
+	        if (count == 0) {
 	            // Empty line, do nothing
 	            return true;
 	        }
-	        String[] tokens = s.trim().split("\\s+");
+	        if (journal != null)
+	            journal.record(s);
 	        
-	        // Convert the tokens to words. Build words. Exit if there
-	        // was an error
-	       
-	        List<Word> words = new ArrayList<Word>();
-	        	        	
-	            for (String t : tokens) {
-	            	Word aWord = findWord(t);
-	            	//System.out.println(aWord);
-	            	   	    
-	            	if(!game.noise.get(0).getWords().contains(aWord)){	            
-	            		words.add(aWord);	
-	            	}
-  	
-	            	else{
-	            		game.special.get("command.allnoise").println(game.messageOut);
-	            		return true;
-	            	}
+	        // Convert the tokens to words. A command with a noise word
+	        // in it is all noise.
+	        Term noise = game.noise.get(0);
+	        Word word1 = null;
+	        Word word2 = null;
+	        for (int i = 0; i < count; ++i) {
+	            if (m != null)
+	                t0 = System.nanoTime();
+	            Word aWord = findWord(s, tokenizer.start(i), tokenizer.end(i));
+	            if (m != null)
+	                m.time(ParserMetrics.Stage.FIND_WORD, System.nanoTime() - t0);
+	            if (noise.contains(aWord)) {
+	                game.special.get("command.allnoise").println(game.messageOut);
+	                return true;
 	            }
-	            
-	            	        
+	            if (i == 0)
+	                word1 = aWord;
+	            else if (i == 1)
+	                word2 = aWord;
+	        }
+	        
 	        // Check for the correct number of words.
-	        if (words.size() > 2) {
+	        if (count > 2) {
 	        	game.special.get("command.toolong").println(game.messageOut);
-	        	//game.messageOut.println("I only understand one or two word commands.");
 	            return true;
 	        }
 	        
-	        
-	        
 	        // Find an action
-	        Word word1 = words.get(0);
-	        Word word2 = (words.size() > 1) ? words.get(1) : null;
 	        Action act = findAction(word1, word2);
              
 	        if (act == null) {
@@ -166,74 +244,67 @@ public class BaseCommandParser implements CommandParser{
 	//Takes parameter user input string 
 	// returns correct word
 	public Word findWord(String s) {
-    	int count = 0;
-    	Word newword = new Words();
-    	
-    	for (Word w : game.allWords){ 
-    		
-    		    		
-    		if (w.match(s) == (MatchType.PREFIX) && !(w.getwordAbbs().contains(s)) ){
-
-    			if(count == 0){
-    				newword = w;
-    			}
-    			
-    			count++;
-    		}
-
-    		if (s.equalsIgnoreCase(w.getWord()) || w.getwordAbbs().contains(s)){
-    			return w;			
-    		}
-    		
-    	}
-
-    	if(count == 1){
-    		return newword;
-
-    	}else if(count > 1){
-
-    		game.special.get("word.ambiguous").println(game.messageOut, s);
+		return findWord(s, 0, s.length());
+	}
 
-    	}else if(count == 0){
-    		game.special.get("word.unknown").println(game.messageOut, s);
-    		
-    	}
+	/**
+	 * Find the Word for the user input s[start, end). If there is no
+	 * such Word, the word.ambiguous or word.unknown message is output.
+	 *
+	 * @param s a sequence containing the user input
+	 * @param start the index of the first character of the input
+	 * @param end the index after the last character of the input
+	 * @return the Word or null if the input is ambiguous or unknown
+	 */
+	public Word findWord(CharSequence s, int start, int end) {
+		if (game.vocabulary == null) {
+			// The game was built without an index, build it now.
+			game.vocabulary = new Vocabulary(game.allWords);
+		}
+		Word w = game.vocabulary.lookup(s, start, end);
+		if (w != null) {
+			return w;
+		}
 
-    	return null; 		
- }
+		String token = s.subSequence(start, end).toString();
+		if (game.vocabulary.prefixCount(s, start, end) > 1) {
+			game.special.get("word.ambiguous").println(game.messageOut, token);
+		} else {
+			game.special.get("word.unknown").println(game.messageOut, token);
+		}
+		return null;
+	}
 	
 	
    //Takes two word objects form user and 
-	// 
+	// returns the valid action with the highest priority
    public Action findAction(Word word1, Word word2) {  
-	Action chosenAction = null;
-   	for(Action act : game.allActions){    
-   		
-   		if ((act.getTerm1().getWords().contains(word1)) &&
-                               ((word2 == null && act.getTerm2() == null) || 
-                                ((word2 != null && act.getTerm2()!= null &&
-                                        act.getTerm2().getWords().contains(word2)))) && 
-                                        	act.checkValid(game,word1,word2)){
-   			
-   			if (chosenAction == null || 
-   					act.getPriority() > chosenAction.getPriority()){
-   				
-   				chosenAction = act;
-   			}
-   			
-   			return chosenAction;
-   		}    				
-   	}
-   	 	
-       return null;
+	if (game.actions == null) {
+		// The game was built without a dispatch table, build it now.
+		game.actions = new ActionTable(game.allActions);
+	}
+	ParserMetrics m = metrics;
+	if (m == null)
+		return game.actions.find(game, word1, word2);
+	long t0 = System.nanoTime();
+	Action act = game.actions.find(game, word1, word2, m);
+	m.time(ParserMetrics.Stage.FIND_ACTION, System.nanoTime() - t0);
+	return act;
   }	
 	
 			
    public boolean doAction(Action act, Game game, Word w1, Word w2) {
-   act.doAction(game, w1, w2);
-   Event execute = new Event ( EventType.makeNewEventType("command.exec"));
-   execute.setProperty("word1", w1);
-   execute.setProperty("word2", w2);
+   ParserMetrics m = metrics;
+   if (m == null) {
+	   act.doAction(game, w1, w2);
+   } else {
+	   long t0 = System.nanoTime();
+	   act.doAction(game, w1, w2);
+	   m.time(ParserMetrics.Stage.DO_ACTION, System.nanoTime() - t0);
+   }
+   Event execute = new Event (COMMAND_EXEC);
+   execute.setProperty(WORD1, w1);
+   execute.setProperty(WORD2, w2);
    eventQueue.add(execute);
    
    	
@@ -243,18 +314,39 @@ public class BaseCommandParser implements CommandParser{
 @Override
 public void addHandler(EventHandler handler) {
 	
-	eventHandlers.add(handler);
+	eventHandlers.add((profiler == null) ? handler : profiler.wrap(handler));
 	
 }
 
 @Override
 public void removeHandler(EventHandler handler) {		
-	if(eventHandlers != null){
-		eventHandlers.remove(handler);
-	}
+	eventHandlers.remove(handler);
 	
 }
 
+@Override
+public void setJournal(CommandJournal journal) {
+	this.journal = journal;
+}
+
+@Override
+public void setMetrics(ParserMetrics metrics) {
+	this.metrics = metrics;
+}
+
+@Override
+public void setProfiler(ScriptProfiler profiler) {
+	this.profiler = profiler;
+	// Wrap, or unwrap, the handlers already added, keeping their order.
+	HandlerRegistry r = new HandlerRegistry();
+	for (EventHandler[] hs : eventHandlers.handlers().values()) {
+		for (EventHandler h : hs) {
+			r.add((profiler == null) ? ScriptProfiler.unwrap(h) : profiler.wrap(h));
+		}
+	}
+	eventHandlers = r;
+}
+
 @Override
 public void queueEvent(Event event) {
 	eventQueue.add(event);
@@ -0,0 +1,25 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+/**
+ * This is the interface for objects that record the commands accepted by a
+ * command parser, so that a session can be rebuilt later by running the
+ * same commands again.
+ */
+public interface CommandJournal {
+
+    /**
+     * Record a command. The parser calls this when it accepts a line,
+     * before the command is run. Empty lines are not recorded.
+     *
+     * @param line the command entered by the user
+     */
+    void record(String line);
+}
@@ -9,6 +9,8 @@ package cs345.interpret;
 
 import java.io.IOException;
 
+import cs345.game.Game;
+import cs345.game.PropertyKey;
 import cs345.game.Word;
 
 /**
@@ -24,9 +26,19 @@ public interface CommandParser {
      *   game.init -- once before the first command is run
      *   command.exec -- after every call to an action
      *     properties: word1 and word2, the two words of the command
+     *   game.restore -- after a GameSnapshot is restored, instead of
+     *     game.init. Handlers can rebuild anything that isn't part of the
+     *     snapshot, such as handlers that are added while playing.
      */
     static final String GAME_INIT_EVENT = "game.init";
     static final String COMMAND_EXEC_EVENT = "command.exec";
+    static final String GAME_RESTORE_EVENT = "game.restore";
+
+    /**
+     * The properties of the command.exec event.
+     */
+    static final PropertyKey<Word> WORD1 = PropertyKey.of("word1", Word.class);
+    static final PropertyKey<Word> WORD2 = PropertyKey.of("word2", Word.class);
 
     /**
      * This method sets the exit flag.
@@ -68,6 +80,37 @@ public interface CommandParser {
      */
     void queueEvent(Event event);
 
+    /**
+     * Set the journal that records the commands this parser accepts.
+     *
+     * @param journal the journal or null for none
+     */
+    void setJournal(CommandJournal journal);
+
+    /**
+     * Set the object that collects measurements of the commands this
+     * parser runs. Parsers made by newSession get the same object. With
+     * none, which is the default, nothing is measured.
+     *
+     * @param metrics the metrics or null for none
+     */
+    void setMetrics(ParserMetrics metrics);
+
+    /**
+     * Set the profiler that times the event handlers of this parser, those
+     * already added and those added later. Parsers made by newSession get
+     * the same profiler. See ScriptProfiler.install, which also profiles
+     * the Actions of the game.
+     *
+     * @param profiler the profiler or null for none
+     */
+    void setProfiler(ScriptProfiler profiler);
+
+    /**
+     * Handle all the queued events.
+     */
+    void handleEvents();
+
     /**
      * Run the game.
      *
@@ -79,6 +122,40 @@ public interface CommandParser {
      */
     void run() throws IOException;
 
+    /**
+     * Create a parser for a new session of the same game.
+     *
+     * The new parser has the same event handlers as this one, in the same
+     * order, and has not been started.
+     *
+     * @param session the Game object for the new session
+     * @return the new parser
+     */
+    CommandParser newSession(Game session);
+
+    /**
+     * Start the game without running it.
+     *
+     * This queues and handles the game.init event. It is used, together
+     * with prompt and step, by code that supplies the user's commands
+     * itself instead of having the parser read them from the game's
+     * input stream. Calling start more than once has no effect.
+     */
+    void start();
+
+    /**
+     * Output the prompt for the next command.
+     */
+    void prompt();
+
+    /**
+     * Run one command and handle any events it caused.
+     *
+     * @param line the command entered by the user
+     * @return true if the game continues, false if the game is over
+     */
+    boolean step(String line);
+
 	boolean ProcessLine(String s);
 
 	Word findWord(String s);
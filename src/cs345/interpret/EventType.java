@@ -42,12 +42,13 @@ public class EventType {
      * object is there is already one with that name.
      *
      * As implied, by the description, it is not an error to calls this method
-     * twice with the same name.
+     * twice with the same name. This method may be called from multiple
+     * threads, for example when several games are built concurrently.
      *
      * @param name the name of the type
      * @return EvemtType object with that name
      */
-    public static EventType makeNewEventType(String name) {
+    public static synchronized EventType makeNewEventType(String name) {
     	if(type.containsKey(name)){
     		return type.get(name);
     	}
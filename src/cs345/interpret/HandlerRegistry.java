@@ -0,0 +1,112 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the event handlers of a command parser, indexed by the
+ * type of event they handle.
+ *
+ * The handlers for each EventType are kept in an array in the order they
+ * were added. The arrays and the map that holds them are never changed once
+ * they are published. Adding or removing a handler builds a new array for
+ * that one type and a new map, so a snapshot taken with handlers() is
+ * unaffected by later changes and taking one costs nothing. Handlers are
+ * added and removed far less often than events are handled.
+ */
+final class HandlerRegistry {
+
+    private static final EventHandler[] NONE = new EventHandler[0];
+
+    private Map<EventType, EventHandler[]> byType =
+            new IdentityHashMap<EventType, EventHandler[]>();
+
+    /**
+     * Create an empty registry.
+     */
+    HandlerRegistry() {
+    }
+
+    /**
+     * Create a registry with the same handlers as another. The two
+     * registries are independent from then on.
+     *
+     * @param other the registry to copy
+     */
+    HandlerRegistry(HandlerRegistry other) {
+        // The arrays are never changed, so they can be shared.
+        byType = other.byType;
+    }
+
+    /**
+     * Return the current handlers. The returned map must not be changed.
+     *
+     * @return the handlers, by the type of event they handle
+     */
+    Map<EventType, EventHandler[]> handlers() {
+        return byType;
+    }
+
+    /**
+     * Return the handlers for one type of event in a snapshot taken by
+     * handlers().
+     *
+     * @param snapshot the snapshot
+     * @param type the type of event
+     * @return the handlers, in the order they were added
+     */
+    static EventHandler[] handlers(Map<EventType, EventHandler[]> snapshot, EventType type) {
+        EventHandler[] h = snapshot.get(type);
+        return (h == null) ? NONE : h;
+    }
+
+    /**
+     * Add a handler after any handlers already added for its type.
+     *
+     * @param handler the handler
+     */
+    void add(EventHandler handler) {
+        EventType type = handler.getEventType();
+        EventHandler[] old = handlers(byType, type);
+        EventHandler[] h = new EventHandler[old.length + 1];
+        System.arraycopy(old, 0, h, 0, old.length);
+        h[old.length] = handler;
+        put(type, h);
+    }
+
+    /**
+     * Remove the first occurrence of a handler.
+     *
+     * @param handler the handler
+     */
+    void remove(EventHandler handler) {
+        EventType type = handler.getEventType();
+        EventHandler[] old = handlers(byType, type);
+        for (int i = 0; i < old.length; ++i) {
+            if (old[i].equals(handler)) {
+                EventHandler[] h = new EventHandler[old.length - 1];
+                System.arraycopy(old, 0, h, 0, i);
+                System.arraycopy(old, i + 1, h, i, h.length - i);
+                put(type, (h.length == 0) ? null : h);
+                return;
+            }
+        }
+    }
+
+    private void put(EventType type, EventHandler[] h) {
+        Map<EventType, EventHandler[]> m = new IdentityHashMap<EventType, EventHandler[]>(byType);
+        if (h == null)
+            m.remove(type);
+        else
+            m.put(type, h);
+        byType = m;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a histogram of values, such as times in nanoseconds, that
+ * many threads can record into without locking.
+ *
+ * As in an HDR histogram, the buckets get wider as the values get larger:
+ * values below 16 each have a bucket, and each power of two above that is
+ * split into 16 buckets. So a value read from the histogram is within
+ * 1/16 of the values recorded in its bucket, whatever their size, and 960
+ * buckets cover every long. Recording a value adds one to its bucket and
+ * to the count, adds the value to the total and, when it is a new
+ * largest value, sets the maximum.
+ *
+ * Reading the histogram while values are recorded gives results that may
+ * include some of those values and not others.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        total.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /* The bucket for a value. */
+    private static int bucket(long value) {
+        if (value < SUB)
+            return (int) value;
+        int k = 63 - Long.numberOfLeadingZeros(value);
+        return (k - SUB_BITS + 1) * SUB + (int) ((value >>> (k - SUB_BITS)) & (SUB - 1));
+    }
+
+    /* The largest value that goes in a bucket. */
+    private static long highest(int bucket) {
+        if (bucket < SUB)
+            return bucket;
+        int shift = bucket / SUB - 1;
+        long lowest = (long) (SUB + bucket % SUB) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the largest value recorded, 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the values recorded, 0 if there are none
+     */
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Return the value that the given percentage of the values recorded
+     * are less than or equal to, to within the width of its bucket.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value, 0 if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highest(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget the values recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return a summary of the values recorded so far
+     */
+    public Summary summary() {
+        return new Summary(getCount(), getMean(), getValueAtPercentile(50),
+                getValueAtPercentile(90), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+
+    /**
+     * The count, mean, some percentiles and the maximum of a Histogram.
+     * This is the form a Histogram takes as a JMX attribute.
+     */
+    public static class Summary {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        public Summary(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                    count, mean, p50, p90, p99, p999, max);
+        }
+    }
+}
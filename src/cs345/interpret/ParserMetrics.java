@@ -0,0 +1,61 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+/**
+ * This is the interface for objects that collect measurements of where a
+ * command parser spends its time, see CommandParser.setMetrics.
+ *
+ * The parser calls these methods from the thread running the command, so
+ * an object shared by the sessions of a game is called from many threads
+ * at once. The calls are on the path of every command and should be
+ * cheap; ParserStats is an implementation that keeps histograms.
+ */
+public interface ParserMetrics {
+
+    /**
+     * The parts of running a command that are timed.
+     */
+    enum Stage {
+        /** Splitting the command into tokens. */
+        TOKENIZE,
+        /** Finding the Word for one token. */
+        FIND_WORD,
+        /** Finding the Action for the Words, including its ValidMethods. */
+        FIND_ACTION,
+        /** Doing the Action. */
+        DO_ACTION,
+        /** Handling the queued events. */
+        HANDLE_EVENTS,
+        /** Writing the output held by the MessageFormatter. */
+        FLUSH
+    }
+
+    /**
+     * Record the time taken by a part of a command.
+     *
+     * @param stage the part
+     * @param nanos the time in nanoseconds
+     */
+    void time(Stage stage, long nanos);
+
+    /**
+     * Record the number of ValidMethods called to find an Action.
+     *
+     * @param calls the number of calls
+     */
+    void validCalls(int calls);
+
+    /**
+     * Record the number of events queued when handling events starts.
+     *
+     * @param events the number of events
+     */
+    void queueDepth(int events);
+}
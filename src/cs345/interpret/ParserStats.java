@@ -0,0 +1,165 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class is a ParserMetrics that keeps a Histogram for each Stage of a
+ * command, for the ValidMethods called to find an Action and for the
+ * events queued. One ParserStats can be shared by all the sessions of a
+ * game: setting it on the parser of the template sets it for every
+ * session made afterwards.
+ *
+ * The numbers can be printed with report, read through the histograms or
+ * read with JMX once the object is registered:
+ *
+ *   ParserStats stats = new ParserStats();
+ *   template.parser.setMetrics(stats);
+ *   stats.register("server");
+ *
+ * which makes the MXBean cs345:type=ParserStats,name=server.
+ */
+public class ParserStats implements ParserMetrics, ParserStatsMXBean {
+
+    private final Histogram[] times = new Histogram[Stage.values().length];
+    private final Histogram validCalls = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+
+    public ParserStats() {
+        for (int i = 0; i < times.length; ++i) {
+            times[i] = new Histogram();
+        }
+    }
+
+    @Override public void time(Stage stage, long nanos) {
+        times[stage.ordinal()].record(nanos);
+    }
+
+    @Override public void validCalls(int calls) {
+        validCalls.record(calls);
+    }
+
+    @Override public void queueDepth(int events) {
+        queueDepth.record(events);
+    }
+
+    /**
+     * @param stage a part of running a command
+     * @return the histogram of the times for the stage
+     */
+    public Histogram getHistogram(Stage stage) {
+        return times[stage.ordinal()];
+    }
+
+    /**
+     * @return the histogram of the number of ValidMethods called to find
+     *         an Action
+     */
+    public Histogram getValidCallsHistogram() {
+        return validCalls;
+    }
+
+    /**
+     * @return the histogram of the number of events queued when handling
+     *         events starts
+     */
+    public Histogram getQueueDepthHistogram() {
+        return queueDepth;
+    }
+
+    @Override public long getCommands() {
+        return times[Stage.TOKENIZE.ordinal()].getCount();
+    }
+
+    @Override public Histogram.Summary getTokenize() {
+        return getHistogram(Stage.TOKENIZE).summary();
+    }
+
+    @Override public Histogram.Summary getFindWord() {
+        return getHistogram(Stage.FIND_WORD).summary();
+    }
+
+    @Override public Histogram.Summary getFindAction() {
+        return getHistogram(Stage.FIND_ACTION).summary();
+    }
+
+    @Override public Histogram.Summary getValidCalls() {
+        return validCalls.summary();
+    }
+
+    @Override public Histogram.Summary getDoAction() {
+        return getHistogram(Stage.DO_ACTION).summary();
+    }
+
+    @Override public Histogram.Summary getHandleEvents() {
+        return getHistogram(Stage.HANDLE_EVENTS).summary();
+    }
+
+    @Override public Histogram.Summary getQueueDepth() {
+        return queueDepth.summary();
+    }
+
+    @Override public Histogram.Summary getFlush() {
+        return getHistogram(Stage.FLUSH).summary();
+    }
+
+    @Override public void reset() {
+        for (Histogram h : times) {
+            h.reset();
+        }
+        validCalls.reset();
+        queueDepth.reset();
+    }
+
+    /**
+     * Register this object with the platform MBean server.
+     *
+     * @param name the name property of the MBean
+     * @return the name of the MBean
+     * @throws IllegalStateException if the MBean can't be registered, for
+     *         example because the name is taken
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName on = new ObjectName("cs345:type=ParserStats,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            return on;
+        } catch (JMException exc) {
+            throw new IllegalStateException("Can't register ParserStats " + name, exc);
+        }
+    }
+
+    /**
+     * Print a table of the numbers, one line for each histogram. Times are
+     * in microseconds.
+     *
+     * @param out where the table is printed
+     */
+    public void report(PrintStream out) {
+        out.printf("%-14s %10s %9s %9s %9s %9s %9s%n",
+                "", "count", "mean", "p50", "p90", "p99", "max");
+        for (Stage s : Stage.values()) {
+            line(out, s.name().toLowerCase(), getHistogram(s), 1e3);
+        }
+        line(out, "valid_calls", validCalls, 1);
+        line(out, "queue_depth", queueDepth, 1);
+    }
+
+    private static void line(PrintStream out, String name, Histogram h, double scale) {
+        out.printf("%-14s %10d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, h.getCount(),
+                h.getMean() / scale, h.getValueAtPercentile(50) / scale,
+                h.getValueAtPercentile(90) / scale, h.getValueAtPercentile(99) / scale,
+                h.getMax() / scale);
+    }
+}
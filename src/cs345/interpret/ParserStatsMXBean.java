@@ -0,0 +1,45 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+/**
+ * This is the JMX interface of ParserStats. Times are in nanoseconds.
+ */
+public interface ParserStatsMXBean {
+
+    /** @return the number of command lines run, including empty ones */
+    long getCommands();
+
+    /** @return the times to split commands into tokens */
+    Histogram.Summary getTokenize();
+
+    /** @return the times to find the Word for a token */
+    Histogram.Summary getFindWord();
+
+    /** @return the times to find the Action for a command */
+    Histogram.Summary getFindAction();
+
+    /** @return the number of ValidMethods called to find an Action */
+    Histogram.Summary getValidCalls();
+
+    /** @return the times to do an Action */
+    Histogram.Summary getDoAction();
+
+    /** @return the times to handle the queued events */
+    Histogram.Summary getHandleEvents();
+
+    /** @return the number of events queued when handling events starts */
+    Histogram.Summary getQueueDepth();
+
+    /** @return the times to write the output held by the formatter */
+    Histogram.Summary getFlush();
+
+    /** Forget everything recorded so far. */
+    void reset();
+}
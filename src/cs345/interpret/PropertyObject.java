@@ -7,6 +7,7 @@
 
 package cs345.interpret;
 
+import cs345.game.PropertyKey;
 import cs345.game.myAbstractProperties;
 
 /**
@@ -32,6 +33,8 @@ public interface PropertyObject {
      *
      * @param name the name of the property
      * @param value the value to set the property
+     * @throws IllegalArgumentException if the property has a typed
+     *         PropertyKey and the value isn't of its type
      */
     public void setProperty(String name, Object value);
 
@@ -42,4 +45,31 @@ public interface PropertyObject {
      * @return true if the property exists
      */
     public boolean hasProperty(String name);
+
+    /**
+     * Get the property with the given key.
+     *
+     * @param key the key of the property
+     * @param <T> the type of the property
+     * @return the value of the property or null if there is none
+     */
+    public <T> T getProperty(PropertyKey<T> key);
+
+    /**
+     * Set the property with the given key. If the property does not exist
+     * it is created.
+     *
+     * @param key the key of the property
+     * @param value the value to set the property
+     * @param <T> the type of the property
+     */
+    public <T> void setProperty(PropertyKey<T> key, T value);
+
+    /**
+     * Test to see if there is a property with the given key.
+     *
+     * @param key the key of the property
+     * @return true if the property exists
+     */
+    public boolean hasProperty(PropertyKey<?> key);
 }
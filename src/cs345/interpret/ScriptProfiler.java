@@ -0,0 +1,396 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import cs345.game.Action;
+import cs345.game.ActionMethod;
+import cs345.game.Game;
+import cs345.game.Term;
+import cs345.game.ValidMethod;
+import cs345.game.Word;
+
+/**
+ * This class measures the scripts of a game: every ActionMethod,
+ * ValidMethod and EventHandler. For each one it keeps a Histogram of the
+ * times of its calls and the number of bytes they allocated, so a slow
+ * script can be found by name rather than by guessing.
+ *
+ * Profiling is off unless asked for. install wraps the methods of every
+ * Action of a game and the handlers of its parser in objects that time
+ * each call; a game that isn't profiled runs the methods directly. Since
+ * the sessions of a game share its Actions and copy its parser, installing
+ * a profiler on the template profiles every session:
+ *
+ *   ScriptProfiler profiler = new ScriptProfiler();
+ *   profiler.install(template);
+ *   profiler.reportOnExit(System.err);
+ *
+ * An entry is named by what it is, the words of its Terms or its
+ * EventType, and the class that implements it, which for the anonymous
+ * classes of a hard coded game gives the line to look at:
+ *
+ *   action get|take coin [CloakHardCoded$12]
+ *   valid go|walk north [CloakHardCoded$3]
+ *   handler command.exec [CloakHardCoded$31]
+ *
+ * Times include everything the method calls. The bytes allocated are
+ * measured with the ThreadMXBean of the JVM, when it can; otherwise they
+ * are reported as 0.
+ */
+public class ScriptProfiler implements ScriptProfilerMXBean {
+
+    private static final int MAX_WORDS = 3;
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    /**
+     * The measurements of one script.
+     */
+    public static class Entry {
+        private final String name;
+        private final Histogram times = new Histogram();
+        private final LongAdder bytes = new LongAdder();
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, long allocated) {
+            times.record(nanos);
+            bytes.add(allocated);
+        }
+
+        /**
+         * @return the name of the script
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the histogram of the times of the calls, in nanoseconds
+         */
+        public Histogram getTimes() {
+            return times;
+        }
+
+        /**
+         * @return the number of bytes allocated by all the calls
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        void reset() {
+            times.reset();
+            bytes.reset();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+                if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled())
+                    return b;
+            }
+        } catch (LinkageError err) {
+            // Not a JVM with com.sun.management, times only.
+        }
+        return null;
+    }
+
+    /* The bytes allocated so far by the current thread, 0 if unknown. */
+    private static long allocated() {
+        return (ALLOCATION == null) ? 0 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Profile a game: wrap the ActionMethod and ValidMethod of each of its
+     * Actions and each handler of its parser, including the handlers
+     * added later. Installing a second profiler replaces the first.
+     *
+     * @param game the game, usually a template before any sessions are made
+     */
+    public void install(Game game) {
+        Map<String, Integer> seen = new HashMap<String, Integer>();
+        for (Action act : game.allActions) {
+            ActionMethod a = act.getAction();
+            if (a instanceof TimedAction)
+                a = ((TimedAction) a).target;
+            ValidMethod v = act.getValid();
+            if (v instanceof TimedValid)
+                v = ((TimedValid) v).target;
+            String terms = describe(act.getTerm1())
+                    + ((act.getTerm2() == null) ? "" : " " + describe(act.getTerm2()));
+            if (a != null)
+                act.setAction(new TimedAction(entry(unique(seen, "action " + terms + " [" + className(a) + "]")), a));
+            if (v != null)
+                act.setValid(new TimedValid(entry(unique(seen, "valid " + terms + " [" + className(v) + "]")), v));
+        }
+        game.parser.setProfiler(this);
+    }
+
+    /*
+     * Actions with the same Terms and class, as made by a game read from
+     * a file, are told apart by number, in the order they were made.
+     */
+    private static String unique(Map<String, Integer> seen, String name) {
+        Integer n = seen.get(name);
+        seen.put(name, (n == null) ? 1 : n + 1);
+        return (n == null) ? name : name + " #" + (n + 1);
+    }
+
+    private static String describe(Term term) {
+        List<Word> words = term.getWords();
+        if (words.isEmpty())
+            return "-";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words.size() && i < MAX_WORDS; ++i) {
+            if (i > 0)
+                sb.append('|');
+            sb.append(words.get(i).getWord());
+        }
+        if (words.size() > MAX_WORDS)
+            sb.append("|...");
+        return sb.toString();
+    }
+
+    private static String className(Object o) {
+        String name = o.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private Entry entry(String name) {
+        Entry e = entries.get(name);
+        if (e == null) {
+            Entry fresh = new Entry(name);
+            e = entries.putIfAbsent(name, fresh);
+            if (e == null)
+                e = fresh;
+        }
+        return e;
+    }
+
+    /**
+     * Return a handler that records its calls in this profiler. Handlers
+     * of the same EventType and class share an entry, so a handler that is
+     * added and removed again and again during play has one.
+     *
+     * @param handler the handler, which may already be wrapped
+     * @return the wrapped handler
+     */
+    EventHandler wrap(EventHandler handler) {
+        EventHandler h = unwrap(handler);
+        return new TimedHandler(entry("handler " + h.getEventType() + " [" + className(h) + "]"), h);
+    }
+
+    /**
+     * @param handler a handler, which may be wrapped by a profiler
+     * @return the handler that was wrapped, or handler if it isn't wrapped
+     */
+    static EventHandler unwrap(EventHandler handler) {
+        return (handler instanceof TimedHandler) ? ((TimedHandler) handler).target : handler;
+    }
+
+    /**
+     * @return the entries, by name
+     */
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    @Override public int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override public void reset() {
+        for (Entry e : entries.values()) {
+            e.reset();
+        }
+    }
+
+    @Override public String getReport() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            PrintStream out = new PrintStream(bytes, false, "UTF-8");
+            report(out, 0);
+            out.flush();
+            return bytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    /**
+     * Print a table of the scripts that have been called, the ones that
+     * took the most time in all first. Times are in microseconds.
+     *
+     * @param out where the table is printed
+     * @param limit the number of scripts printed, 0 for all of them
+     */
+    public void report(PrintStream out, int limit) {
+        List<Entry> called = new ArrayList<Entry>();
+        for (Entry e : entries.values()) {
+            if (e.getTimes().getCount() > 0)
+                called.add(e);
+        }
+        Collections.sort(called, new Comparator<Entry>() {
+            @Override public int compare(Entry a, Entry b) {
+                int c = Long.compare(b.getTimes().getTotal(), a.getTimes().getTotal());
+                return (c != 0) ? c : a.getName().compareTo(b.getName());
+            }
+        });
+        if (limit > 0 && called.size() > limit)
+            called = called.subList(0, limit);
+        out.printf("%10s %11s %9s %9s %9s %11s  %s%n",
+                "calls", "total", "mean", "p99", "max", "bytes/call", "script");
+        for (Entry e : called) {
+            Histogram h = e.getTimes();
+            long n = h.getCount();
+            out.printf("%10d %11.1f %9.2f %9.2f %9.2f %11d  %s%n", n,
+                    h.getTotal() / 1e3, h.getMean() / 1e3, h.getValueAtPercentile(99) / 1e3,
+                    h.getMax() / 1e3, e.getBytes() / n, e.getName());
+        }
+    }
+
+    /**
+     * Print the report, all of it, when the JVM exits.
+     *
+     * @param out where the report is printed
+     */
+    public void reportOnExit(final PrintStream out) {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override public void run() {
+                out.println("Script profile, times in microseconds:");
+                report(out, 0);
+                out.flush();
+            }
+        }, "script-profile"));
+    }
+
+    /**
+     * Register this object with the platform MBean server.
+     *
+     * @param name the name property of the MBean
+     * @return the name of the MBean
+     * @throws IllegalStateException if the MBean can't be registered, for
+     *         example because the name is taken
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName on = new ObjectName("cs345:type=ScriptProfiler,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            return on;
+        } catch (JMException exc) {
+            throw new IllegalStateException("Can't register ScriptProfiler " + name, exc);
+        }
+    }
+
+    private static final class TimedAction implements ActionMethod {
+        final Entry entry;
+        final ActionMethod target;
+
+        TimedAction(Entry entry, ActionMethod target) {
+            this.entry = entry;
+            this.target = target;
+        }
+
+        @Override public void doAction(Game game, Word w1, Word w2) {
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            try {
+                target.doAction(game, w1, w2);
+            } finally {
+                long t = System.nanoTime() - t0;
+                entry.record(t, allocated() - b0);
+            }
+        }
+    }
+
+    private static final class TimedValid implements ValidMethod {
+        final Entry entry;
+        final ValidMethod target;
+
+        TimedValid(Entry entry, ValidMethod target) {
+            this.entry = entry;
+            this.target = target;
+        }
+
+        @Override public boolean isValid(Game game, Word w1, Word w2) {
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            try {
+                return target.isValid(game, w1, w2);
+            } finally {
+                long t = System.nanoTime() - t0;
+                entry.record(t, allocated() - b0);
+            }
+        }
+    }
+
+    /*
+     * A wrapped handler is equal to the handler it wraps, so the handler
+     * a game removes is found in the registry, where it is wrapped.
+     */
+    private static final class TimedHandler implements EventHandler {
+        final Entry entry;
+        final EventHandler target;
+
+        TimedHandler(Entry entry, EventHandler target) {
+            this.entry = entry;
+            this.target = target;
+        }
+
+        @Override public EventType getEventType() {
+            return target.getEventType();
+        }
+
+        @Override public void handle(Game game, Event event) {
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            try {
+                target.handle(game, event);
+            } finally {
+                long t = System.nanoTime() - t0;
+                entry.record(t, allocated() - b0);
+            }
+        }
+
+        @Override public boolean equals(Object o) {
+            if (o instanceof TimedHandler)
+                o = ((TimedHandler) o).target;
+            return target.equals(o);
+        }
+
+        @Override public int hashCode() {
+            return target.hashCode();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+/**
+ * This is the JMX interface of ScriptProfiler.
+ */
+public interface ScriptProfilerMXBean {
+
+    /** @return the number of scripts profiled */
+    int getEntryCount();
+
+    /** @return the report, the scripts that took the most time first */
+    String getReport();
+
+    /** Forget everything recorded so far. */
+    void reset();
+}
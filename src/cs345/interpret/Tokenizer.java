@@ -0,0 +1,115 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.interpret;
+
+/**
+ * This class splits a command line into tokens.
+ *
+ * A token is a run of characters that aren't white space, where, as for
+ * String.trim, white space is any character up to and including the space
+ * character. The tokens are not copied out of the line. Instead the
+ * tokenizer records the offsets of each token, which can be passed
+ * straight to Vocabulary.lookup. A Tokenizer is reused for every line, so
+ * once its offset array has grown to fit the longest line, tokenizing
+ * allocates nothing.
+ *
+ * A Tokenizer is not thread safe. Each command parser has its own.
+ */
+public final class Tokenizer {
+
+    private CharSequence line = "";
+    /* The start and end offsets of each token, in pairs. */
+    private int[] bounds = new int[8];
+    private int count = 0;
+
+    /**
+     * Split a line into tokens, replacing the tokens of the previous line.
+     *
+     * @param line the command line
+     * @return the number of tokens
+     */
+    public int tokenize(CharSequence line) {
+        this.line = line;
+        count = 0;
+        int n = line.length();
+        int i = 0;
+        while (true) {
+            while (i < n && line.charAt(i) <= ' ') {
+                ++i;
+            }
+            if (i >= n)
+                break;
+            int start = i;
+            while (i < n && line.charAt(i) > ' ') {
+                ++i;
+            }
+            add(start, i);
+        }
+        return count;
+    }
+
+    private void add(int start, int end) {
+        if (2 * count == bounds.length) {
+            int[] b = new int[2 * bounds.length];
+            System.arraycopy(bounds, 0, b, 0, bounds.length);
+            bounds = b;
+        }
+        bounds[2 * count] = start;
+        bounds[2 * count + 1] = end;
+        count += 1;
+    }
+
+    /**
+     * @return the line that was tokenized
+     */
+    public CharSequence line() {
+        return line;
+    }
+
+    /**
+     * @return the number of tokens in the line
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @param i the index of a token
+     * @return the offset in the line of the first character of the token
+     */
+    public int start(int i) {
+        checkIndex(i);
+        return bounds[2 * i];
+    }
+
+    /**
+     * @param i the index of a token
+     * @return the offset in the line after the last character of the token
+     */
+    public int end(int i) {
+        checkIndex(i);
+        return bounds[2 * i + 1];
+    }
+
+    /**
+     * Return a token as a String. This allocates, so it is meant for
+     * messages, not for the normal path of a command.
+     *
+     * @param i the index of a token
+     * @return the token
+     */
+    public String token(int i) {
+        return line.subSequence(start(i), end(i)).toString();
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count)
+            throw new IndexOutOfBoundsException("Token " + i + " of " + count);
+    }
+}
@@ -3,34 +3,51 @@ package cs345.message;
 /*
  * This is an abstract Message class that does messageOut and calls
  * print to message formatter and calls the getStrings for all 
+ * 
+ * Subclasses only have to provide renderTo. The Strings and the output
+ * are all produced by rendering the message.
  */
 
 public abstract class AbstractMsg implements Message {
 	
+	@Override
+	public String getString(Object... args) {
+		return getAltString(0, args);
+	}
+
+
+	@Override
+	public String getAltString(int alt, Object... args) {
+		StringBuilder sb = new StringBuilder();
+		renderTo(sb, alt, args);
+		return sb.toString();
+	}
+
+
 	@Override
 	public void print(MessageFormatter out, Object... args) {
-		out.print(getString(args));
+		out.print(this, 0, args);
 
 	}
 
 	
 	@Override
 	public void println(MessageFormatter out, Object... args) {
-		out.println(getString(args));
+		out.println(this, 0, args);
 
 	}
 
 	
 	@Override
 	public void altPrint(int alt, MessageFormatter out, Object... args) {
-		out.print(getAltString(alt, args));
+		out.print(this, alt, args);
 
 	}
 
 	
 	@Override
 	public void altPrintln(int alt, MessageFormatter out, Object... args) {
-		out.println(getAltString(alt,args));
+		out.println(this, alt, args);
 
 	}
 	
@@ -14,29 +14,12 @@ public class ArgMsg extends AbstractMsg implements Message {
 	
 
 	@Override
-	public String getString(Object... args) {
-		
-		if(!(index > args.length || index < 0)){
-			return args[index].toString();
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		if(!(index >= args.length || index < 0)){
+			sink.append(args[index].toString());
+			return;
 		}
 		throw new IndexOutOfBoundsException();
 	}
 
-	
-		
-	
-	
-	@Override 
-	public String getAltString(int alt, Object... args) {
-		if(!(index > args.length || index < 0)){
-			return (args[index].toString());
-		}
-		throw new IndexOutOfBoundsException();
-	}
-		
-			
-
-	
-	
-
 }
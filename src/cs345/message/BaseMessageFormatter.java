@@ -8,11 +8,15 @@
 
 package cs345.message;
 
-import java.util.Arrays;
 import java.io.*;
 
 /**
  * This class is a MessageFormatter.
+ *
+ * Messages are rendered directly into the buffer, then word wrapped to
+ * MAX_LINE characters in a single pass over the buffer, without regular
+ * expressions or intermediate strings. The wrapped output is collected in
+ * a reusable buffer and written to the PrintStream once per prompt.
  * 
  * @author Chris Reedy (Chris.Reedy@wwu.edu)
  */
@@ -23,6 +27,11 @@ public class BaseMessageFormatter implements MessageFormatter {
     
     private PrintStream out;
     private StringBuilder buf = new StringBuilder();
+    private StringBuilder pending = new StringBuilder();
+
+    /* Pending output is written once it grows beyond this many characters. */
+    private static final int PENDING_LIMIT = 8192;
+    private static final String NEWLINE = System.getProperty("line.separator");
     
     public BaseMessageFormatter(PrintStream out, int maxLine) {
         this.out = out;
@@ -41,6 +50,31 @@ public class BaseMessageFormatter implements MessageFormatter {
         println();
     }
     
+    @Override
+    public void print(Message msg, int alt, Object... args) {
+        render(msg, alt, args);
+        doOutput(false);
+    }
+
+    @Override
+    public void println(Message msg, int alt, Object... args) {
+        render(msg, alt, args);
+        println();
+    }
+
+    /* Render a message into the buffer. If rendering fails, nothing is
+     * added to the buffer.
+     */
+    private void render(Message msg, int alt, Object... args) {
+        int mark = buf.length();
+        try {
+            msg.renderTo(buf, alt, args);
+        } catch (RuntimeException exc) {
+            buf.setLength(mark);
+            throw exc;
+        }
+    }
+
     @Override
     public void println() {
         buf.append(LINE_SEP);
@@ -61,16 +95,18 @@ public class BaseMessageFormatter implements MessageFormatter {
     }
 
     /**
-     * Stub for doOutput. Does nothing.
+     * Write any formatted output that is being held to the PrintStream and
+     * flush it. A partial line in the buffer is not output.
      */
-//    private void doOutput(boolean flush) {
-//        out.print(buf.toString().replace("\n", System.lineSeparator()));
-//        buf.setLength(0);
-//    }
-    
+    @Override
+    public void flush() {
+        writePending();
+        out.flush();
+    }
+
     /**
-     * Process output. The contents of the buffer is output to the
-     * PrintStream out. Some subset of the buffer may be output. Any
+     * Process output. The contents of the buffer is formatted into the
+     * pending output. Some subset of the buffer may be output. Any
      * residual part of the buffer that is not output remains in the
      * buffer for subsequent calls.
      *
@@ -89,80 +125,108 @@ public class BaseMessageFormatter implements MessageFormatter {
      *     eliminated. Multiple white space characters are compressed to a
      *     single space.
      *   - At any point where the words in a line would exceed MAX_LINE,
-     *     a call to out.println() is substituted for the space that
-     *     would appear between words.
-     *   - A full line is ended by a call to out.println(). No white space
+     *     a line separator is substituted for the space that would appear
+     *     between words.
+     *   - A full line is ended by a line separator. No white space
      *     appears at the end of the output of a full line.
      *   - If a partial line ends in a white space character, a single white
      *     space character ends the output
+     *
+     * The line separator is the platform line separator, as output by
+     * PrintStream.println(). The formatted output is held and written to
+     * the PrintStream in one piece when a prompt is output, when flush is
+     * called or when more than PENDING_LIMIT characters are held.
      */
     private void doOutput(boolean flush) {
         // Eliminate empty buffer case.
         if (buf.length() == 0)
             return;
 
-        // Split string into lines. If there is a new line at the end
-        // of the line, there will be an empty string for the last line.
-        String current = buf.toString();
-        buf.setLength(0);
-        String[] lines = current.split(LINE_SEP, -1);
-        for (String line : Arrays.copyOf(lines, lines.length - 1)) {
-            outputLine(line, true);
+        // Output the full lines.
+        int start = 0;
+        int end;
+        while ((end = buf.indexOf(LINE_SEP, start)) >= 0) {
+            outputLine(start, end, true);
+            start = end + LINE_SEP.length();
         }
-        
+
         // Handle last line.
-        String line = lines[lines.length - 1];
-        if (flush)
-            outputLine(line, false);
-        else
-            buf.append(line);
+        if (flush) {
+            outputLine(start, buf.length(), false);
+            buf.setLength(0);
+            writePending();
+            out.flush();
+        } else {
+            buf.delete(0, start);
+            if (pending.length() > PENDING_LIMIT)
+                writePending();
+        }
+    }
 
-        // Clean up
-        out.flush();
+    private void writePending() {
+        if (pending.length() > 0) {
+            out.print(pending);
+            pending.setLength(0);
+        }
     }
-    
-    private void outputLine(String line, boolean endLine) {
+
+    /* The white space that separates words, as matched by \s. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /* Output buf[start, end) as a line. */
+    private void outputLine(int start, int end, boolean endLine) {
+        // A line that String.trim() would make empty is all white space.
+        boolean blank = true;
+        for (int i = start; i < end && blank; ++i) {
+            blank = (buf.charAt(i) <= ' ');
+        }
+        if (blank) {
+            if (endLine) {
+                pending.append(NEWLINE);
+            } else if (start < end) {
+                pending.append(' ');
+            }
+            return;
+        }
+
         int curLineLoc = 0;
         boolean space = false;
-        if (!line.trim().isEmpty()) {
-            // The line is non-empty. Split the line into words. Leave
-            // extra "" at beginning and end if blanks at start and end.
-            String[] words = line.split("\\s+", -1);
-            // If there is white space at the beginning of the line, that
-            // will appear as an empty string in words[0].
-            int start = (words[0].isEmpty() ? 1 : 0);
-            for (String w : Arrays.copyOfRange(words, start, words.length - 1)) {
-                curLineLoc = outputWord(w, curLineLoc, space);
-                space = true;
-            }
-            // Handle the last word.
-            String w = words[words.length - 1];
-            if (!w.isEmpty() || !endLine) {
-                curLineLoc = outputWord(w, curLineLoc, space);
-            }
-            if (endLine) {
-                out.println();
+        int i = start;
+        while (i < end) {
+            if (isSpace(buf.charAt(i))) {
+                ++i;
+                continue;
             }
-        } else {
-            // Line is all whitespace
-            if (endLine) {
-                out.println();
-            } else if (!line.isEmpty()) {
-                out.print(' ');
+            int wordStart = i;
+            while (i < end && !isSpace(buf.charAt(i))) {
+                ++i;
             }
+            curLineLoc = outputWord(wordStart, i, curLineLoc, space);
+            space = true;
+        }
+        // A partial line that ends in white space keeps a single space.
+        if (!endLine && isSpace(buf.charAt(end - 1))) {
+            curLineLoc = outputWord(end, end, curLineLoc, space);
+        }
+        if (endLine) {
+            pending.append(NEWLINE);
         }
     }
     
-    private int outputWord(String w, int oldLineLoc, boolean space) {
+    /* Output the word buf[start, end). */
+    private int outputWord(int start, int end, int oldLineLoc, boolean space) {
+        int len = end - start;
         int curLineLoc = oldLineLoc;
-        if (curLineLoc + w.length() + (space ? 1 : 0) > MAX_LINE) {
-            out.println();
+        if (curLineLoc + len + (space ? 1 : 0) > MAX_LINE) {
+            pending.append(NEWLINE);
             curLineLoc = 0;
         } else if (space) {
-            out.print(' ');
+            pending.append(' ');
             curLineLoc += 1;
         }
-        out.print(w);
-        return curLineLoc + w.length();
+        pending.append(buf, start, end);
+        return curLineLoc + len;
     }
 }
@@ -6,25 +6,35 @@ import cs345.game.Container;
 /**
  * make message object of messages based on state of game objects
  *
+ * The state is read each time the message is rendered, so the message
+ * follows changes to the state.
  */
 public class BoundSelect extends AbstractMsg implements Message {
-	private int state;
+	private final Container cont;
 	private Message mess;
 	
 	public BoundSelect(Message m, Container cont){
 		this.mess = m;
-		this.state = cont.getState();
+		this.cont = cont;
 		
 	}
 
+	/*
+	 * Bind a message to the state of a container. A StringMsg is the same
+	 * in every state, so it is returned as it is.
+	 */
+	public static Message bind(Message m, Container cont) {
+		return (m instanceof StringMsg) ? m : new BoundSelect(m, cont);
+	}
+
 	@Override
-	public String getString(Object... args) {		
-		return mess.getAltString(state,args);
+	public String getAltString(int alt, Object... args) {
+		return mess.getAltString(cont.getState(), args);
 	}
 
 	@Override
-	public String getAltString(int alt, Object... args) {		
-		 return mess.getAltString(state,args);
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		mess.renderTo(sink, cont.getState(), args);
 	}
 
 }
@@ -2,53 +2,89 @@ package cs345.message;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cs345.game.GameState;
 
 
 /*Cycle through messages with counter
+ *
+ * The position in the cycle is part of the state of a session. A CycleMsg
+ * made for a game has an id, its index in Game.allCycleMessages, and while
+ * a session's GameState is bound the position is kept there, so sessions
+ * sharing the message don't see each other's output. Without a bound
+ * session, or for a message without an id, a shared position is advanced
+ * atomically, so concurrent use is safe but shared.
  * */
  
 public class CycleMsg extends AbstractMsg implements Message {
 	private List<Message> message = new ArrayList<Message>();
-	int c = 0;
+	private final int id;
+	private final AtomicInteger shared = new AtomicInteger();
 	
-	public CycleMsg(Message ... args){		
+	public CycleMsg(Message ... args){
+		this(-1, args);
+	}
+
+	/**
+	 * @param id the index of this message in Game.allCycleMessages, or -1
+	 *           if the message isn't part of a game
+	 * @param args the messages to cycle through
+	 */
+	public CycleMsg(int id, Message ... args){
+		this.id = id;
 		for(Message m : args){			
 			message.add(m);
 		}
-			if (c >= message.size()){
-				c = 0;
-			}
-		}
-			
-	
-	
+	}
 
-	@Override
-	public String getString(Object... args) {
-		String temp;		
-		temp = message.get(c).getString(args);
-		c++;
-		if (c >= message.size()){
-			c = 0;
-		}
-		return temp;
-		
+	/**
+	 * @return the index of this message in Game.allCycleMessages or -1
+	 */
+	public int getId() {
+		return id;
 	}
 
-	
+	/**
+	 * @return the number of messages in the cycle
+	 */
+	public int size() {
+		return message.size();
+	}
 
-	@Override
-	public String getAltString(int alt, Object... args) {
-		String temp;		
-		temp = message.get(c).getAltString(alt,args);
-		c++;
-		if (c >= message.size()){
-			c = 0;
+	/**
+	 * @return the index of the message that will be output next when no
+	 *         session is bound
+	 */
+	public int getPosition() {
+		return shared.get();
+	}
+
+	/**
+	 * Set the message that will be output next when no session is bound.
+	 *
+	 * @param position the index of the message, taken modulo the
+	 *                 number of messages
+	 */
+	public void setPosition(int position) {
+		shared.set(Math.floorMod(position, message.size()));
+	}
+
+	/* Advance the shared position, returning the old one. */
+	private int nextShared() {
+		while (true) {
+			int c = shared.get();
+			int n = (c + 1 >= message.size()) ? 0 : c + 1;
+			if (shared.compareAndSet(c, n))
+				return c;
 		}
-		return temp;
-		
 	}
 
-	
+	@Override
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		GameState s = (id >= 0) ? GameState.current() : null;
+		int c = (s == null) ? nextShared() : s.nextCyclePosition(id, message.size());
+		message.get(c).renderTo(sink, alt, args);
+	}
 
 }
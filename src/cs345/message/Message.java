@@ -118,4 +118,25 @@ public interface Message {
      * @param args The objects for filling in parameters
      */
     void altPrintln(int alt, MessageFormatter out, Object... args);
+
+    /**
+     * Append the specified alternative of the message, with the given
+     * arguments substituted, to a StringBuilder.
+     *
+     * This is the method that produces the text of a message. The other
+     * methods are defined in terms of it: getString(args) is the same as
+     * getAltString(0, args), getAltString(alt, args) returns what renderTo
+     * appends, and the print methods render the message directly into the
+     * MessageFormatter's buffer. Messages made of other messages render
+     * their parts into the same StringBuilder, so no intermediate Strings
+     * are built.
+     *
+     * Alternatives are processed as described in the getAltString method,
+     * above.
+     *
+     * @param sink the StringBuilder the message is appended to
+     * @param alt The alternative to be output
+     * @param args The objects for filling in parameters
+     */
+    void renderTo(StringBuilder sink, int alt, Object... args);
 }
@@ -29,6 +29,28 @@ public interface MessageFormatter {
      */
     public void print(String s);
     
+    /**
+     * Render the alternative alt of msg, with the arguments args, as a
+     * message fragment. This is the same as print(msg.getAltString(alt,
+     * args)) but the message is rendered straight into the formatter.
+     *
+     * @param msg the Message to be added
+     * @param alt the alternative of the message
+     * @param args the objects for filling in parameters of the message
+     */
+    public void print(Message msg, int alt, Object... args);
+
+    /**
+     * Render the alternative alt of msg, with the arguments args, and
+     * output the message. This is the same as println(msg.getAltString(alt,
+     * args)) but the message is rendered straight into the formatter.
+     *
+     * @param msg the Message to be output
+     * @param alt the alternative of the message
+     * @param args the objects for filling in parameters of the message
+     */
+    public void println(Message msg, int alt, Object... args);
+
     /**
      * Add the String s to the current message (if the current message is
      * empty, s is the entire message), output the message to the user,
@@ -62,4 +84,12 @@ public interface MessageFormatter {
      * beginning of a new line.
      */
     public void prompt(String s);
+
+    /**
+     * Make sure everything output so far, except any partial message in
+     * the buffer, has been written to the user. A formatter may hold
+     * output until the next prompt; flush is used when there will be no
+     * next prompt, for example at the end of the game.
+     */
+    public void flush();
 }
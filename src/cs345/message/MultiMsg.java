@@ -17,27 +17,11 @@ public class MultiMsg extends AbstractMsg implements Message {
 				
 	}
 	
-	@Override 
-	public String getString(Object... args) {	
-		StringBuilder buf = new StringBuilder();
-			for(Message m : message){
-				buf.append(m.getString(args));							
-			}
-					return buf.toString();		
-	}
-
-
-
 	@Override
-	public String getAltString(int alt, Object... args) {
-		StringBuilder buf = new StringBuilder();
-		for(Message m : message){
-			buf.append(m.getAltString(alt,args));							
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		for(int i = 0; i < message.size(); ++i){
+			message.get(i).renderTo(sink, alt, args);
 		}
-				return buf.toString();		
-}
-	
-
-
+	}
 
 }
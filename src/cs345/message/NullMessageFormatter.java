@@ -0,0 +1,63 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.message;
+
+/**
+ * This class is a MessageFormatter that discards all output.
+ *
+ * It is used where a game has to run but nobody is watching, for example
+ * when building a game that is only used as a template for sessions.
+ */
+public class NullMessageFormatter implements MessageFormatter {
+
+    @Override
+    public void print(String s) {
+        // Discarded.
+    }
+
+    @Override
+    public void println(String s) {
+        // Discarded.
+    }
+
+    /*
+     * Messages are still rendered, and the result discarded, so that
+     * messages that change as they are output, like CycleMsg, behave
+     * the same as they do when someone is watching.
+     */
+    @Override
+    public void print(Message msg, int alt, Object... args) {
+        msg.renderTo(new StringBuilder(), alt, args);
+    }
+
+    @Override
+    public void println(Message msg, int alt, Object... args) {
+        msg.renderTo(new StringBuilder(), alt, args);
+    }
+
+    @Override
+    public void println() {
+        // Discarded.
+    }
+
+    @Override
+    public void startLine() {
+        // Discarded.
+    }
+
+    @Override
+    public void prompt(String s) {
+        // Discarded.
+    }
+
+    @Override
+    public void flush() {
+        // Discarded.
+    }
+}
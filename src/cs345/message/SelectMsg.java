@@ -18,17 +18,22 @@ public class SelectMsg extends AbstractMsg implements Message {
 		}		
 	}
 
+	/*
+	 * The alternative selects one of the messages. Out of range
+	 * alternatives select the first or last message.
+	 */
 	@Override
-	public String getString(Object... args) {
-		return message.get(0).getString(args);
+	public String getAltString(int alt, Object... args) {
+		return select(alt).getString(args);
 	}
-	
+
 	@Override
-	public String getAltString(int alt, Object... args) {
-		
-		return message.get(alt).getString(args);
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		select(alt).renderTo(sink, 0, args);
 	}
 
-	
+	private Message select(int alt) {
+		return message.get(Math.max(0, Math.min(alt, message.size() - 1)));
+	}
 
 }
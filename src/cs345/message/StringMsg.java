@@ -17,19 +17,15 @@ public class StringMsg extends AbstractMsg implements Message {
 		this.msg = msg;
 	}
 	
-	// Get the strings of the msg objects passed in?
+	// The String is the message, there is nothing to render.
 	@Override
-	public String getString(Object... args) {				
+	public String getAltString(int alt, Object... args) {
 		return msg;
 	}
 
-	
 	@Override
-	public String getAltString(int alt, Object... args) {		
-		return msg;
+	public void renderTo(StringBuilder sink, int alt, Object... args) {
+		sink.append(msg);
 	}
 
-	
-	
-
 }
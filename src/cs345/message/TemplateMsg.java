@@ -0,0 +1,153 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a message made from a template string with markers where
+ * the arguments are substituted.
+ *
+ * The markers in a template are:
+ *
+ *   %n     where n is a digit 1 .. 9, the nth argument
+ *   %{n}   where n is any positive number, the nth argument
+ *   %%     a percent sign
+ *
+ * Arguments are numbered from 1, so %1 is args[0]. Any other use of % is
+ * an error that is reported when the template is compiled.
+ *
+ * The template is compiled once, when the message is created, into a flat
+ * array of segments. Each segment is either literal text or the index of
+ * an argument. Rendering appends the segments, in order, to a StringBuilder,
+ * so no intermediate Strings are built. A template has no alternatives;
+ * alt is ignored.
+ */
+public class TemplateMsg extends AbstractMsg implements Message {
+
+    private final String template;
+    /* For each segment, the literal text or null for an argument. */
+    private final String[] text;
+    /* For each segment, the index of the argument or -1 for literal text. */
+    private final int[] arg;
+    private final int argCount;
+
+    /**
+     * Compile a template.
+     *
+     * @param template the template
+     * @throws IllegalArgumentException if the template has a % that is not
+     *         part of a valid marker
+     */
+    public TemplateMsg(String template) {
+        this.template = template;
+        List<String> texts = new ArrayList<String>();
+        List<Integer> args = new ArrayList<Integer>();
+        StringBuilder literal = new StringBuilder();
+        int maxArg = -1;
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i += 1;
+                continue;
+            }
+            if (i + 1 >= template.length())
+                throw badMarker(i, "ends with %");
+            char indicator = template.charAt(i + 1);
+            int index;
+            if (indicator == '%') {
+                literal.append('%');
+                i += 2;
+                continue;
+            } else if (indicator >= '1' && indicator <= '9') {
+                index = indicator - '1';
+                i += 2;
+            } else if (indicator == '{') {
+                int close = template.indexOf('}', i + 2);
+                if (close < 0)
+                    throw badMarker(i, "has no closing }");
+                try {
+                    index = Integer.parseInt(template.substring(i + 2, close)) - 1;
+                } catch (NumberFormatException exc) {
+                    throw badMarker(i, "needs a number inside %{}");
+                }
+                if (index < 0)
+                    throw badMarker(i, "argument numbers start at 1");
+                i = close + 1;
+            } else {
+                throw badMarker(i, "unknown marker %" + indicator);
+            }
+            if (literal.length() > 0) {
+                texts.add(literal.toString());
+                args.add(-1);
+                literal.setLength(0);
+            }
+            texts.add(null);
+            args.add(index);
+            maxArg = Math.max(maxArg, index);
+        }
+        if (literal.length() > 0) {
+            texts.add(literal.toString());
+            args.add(-1);
+        }
+        text = texts.toArray(new String[texts.size()]);
+        arg = new int[args.size()];
+        for (int s = 0; s < arg.length; ++s) {
+            arg[s] = args.get(s);
+        }
+        argCount = maxArg + 1;
+    }
+
+    private IllegalArgumentException badMarker(int at, String problem) {
+        return new IllegalArgumentException("Message template \"" + template
+                + "\" at " + at + ": " + problem);
+    }
+
+    /**
+     * @return the number of arguments the template uses, one more than the
+     *         index of the highest argument
+     */
+    public int getArgCount() {
+        return argCount;
+    }
+
+    private Object argument(int index, Object[] args) {
+        if (index >= args.length)
+            throw new IndexOutOfBoundsException("Message template \"" + template
+                    + "\" uses argument " + (index + 1) + " but was given " + args.length);
+        return args[index];
+    }
+
+    /**
+     * Append the message to a StringBuilder.
+     *
+     * @param sb the StringBuilder
+     * @param alt ignored, a template has no alternatives
+     * @param args the objects for filling in parameters
+     * @throws IndexOutOfBoundsException if the template uses more arguments
+     *         than were given
+     */
+    @Override
+    public void renderTo(StringBuilder sb, int alt, Object... args) {
+        for (int s = 0; s < text.length; ++s) {
+            if (arg[s] < 0)
+                sb.append(text[s]);
+            else
+                sb.append(argument(arg[s], args));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -56,6 +56,27 @@ public interface Builder {
      */
     Game buildComplete();
 
+    /**
+     * Make a Builder for a region of the world.
+     *
+     * A region builder makes Words, Terms, Rooms, paths, GameObjects,
+     * Actions and messages like this builder, but keeps them to itself,
+     * so it can be used on another thread while this builder and other
+     * regions are in use. Everything a region made is added to the game
+     * by buildComplete, region by region in the order the regions were
+     * made, so the game doesn't depend on the order the regions finished.
+     *
+     * A region must only change the Rooms and Terms it made itself: a path
+     * between regions, or a word added to a shared Term, is made once the
+     * regions are finished. A region can't start or complete the build,
+     * make the player, make cycle messages, set special messages or the
+     * prompt, or make regions of its own; those throw
+     * UnsupportedOperationException.
+     *
+     * @return a builder for the region
+     */
+    Builder region();
+
     /**
      * Make a Word and add it to the game.
      * 
@@ -156,6 +177,16 @@ public interface Builder {
      */
     Message makeArgMessage(int index);
 
+    /**
+     * Make a message from a template with markers where arguments are
+     * substituted: %1 .. %9 or %{n} for the nth argument and %% for a
+     * percent sign. The template is compiled once, here.
+     * @param template  the template string.
+     * @return the created message object.
+     * @throws IllegalArgumentException if the template is malformed.
+     */
+    Message makeTemplateMessage(String template);
+
     /**
      * Make a message from a list of other messages. The messages
      * in the list are alternatives. The printAlt message selects
@@ -21,6 +21,7 @@ import cs345.game.Game;
 import cs345.game.GameObject;
 import cs345.game.MatchType;
 import cs345.game.Player;
+import cs345.game.PropertyKey;
 import cs345.game.Room;
 import cs345.game.Term;
 import cs345.game.ValidMethod;
@@ -37,6 +38,15 @@ import cs345.message.Message;
  */
 public class CloakHardCoded implements GameDescription {
 	
+	/* The properties used by the game. */
+	private static final PropertyKey<Boolean> LIT = PropertyKey.of("lit", Boolean.class);
+	private static final PropertyKey<Boolean> BEEN_HERE = PropertyKey.of("beenhere", Boolean.class);
+	private static final PropertyKey<Boolean> VERBOSE = PropertyKey.of("verbose", Boolean.class);
+	private static final PropertyKey<Boolean> MESSAGE_READ = PropertyKey.of("messageread", Boolean.class);
+	private static final PropertyKey<Boolean> DISTURBING = PropertyKey.of("disturbing", Boolean.class);
+	private static final PropertyKey<Room> FROM_ROOM = PropertyKey.of("fromroom", Room.class);
+	private static final PropertyKey<Room> TO_ROOM = PropertyKey.of("toroom", Room.class);
+
 	private Builder builder;
 	
 	private static class WordData {
@@ -100,51 +110,24 @@ public class CloakHardCoded implements GameDescription {
         return builder.makeCycleMessage(msgs);
     }
 
-    private Message _am(String smsg) {
-        Message msg = messageMap.get(smsg);
+	private Message _am(String smsg) {
+		Message msg = messageMap.get(smsg);
 		if (msg != null)
 			return msg;
-        /* At this point scan the message looking for % markers.
-		 * A %n (n in 1 .. 9) indicates that an argument is to be
-		 * substituted at this point.
-         * A %% substitutes a percent sign.
-		 * 
-         * XXX This does not allow for more than 9 arguments other niceties.
-		 */
-        List<Message> msgParts = new ArrayList<Message>();
-		int b = 0;
-		for (int i = 0; i < smsg.length(); ++i) {
-			if (smsg.charAt(i) != '%')
-				continue;
-			/* Found a % sign. Insert substitution.
-			 * XXX No check for exceeding string length, etc. is made.
-			 */
-			msgParts.add(_m(smsg.substring(b, i)));
-			i += 1;
-			b = i + 1;
-            char indicator = smsg.charAt(i);
-            if (indicator == '%')
-                msgParts.add(_m("%"));
-            else
-                msgParts.add(builder.makeArgMessage(indicator - '1'));
-		}
-		if (b < smsg.length())
-			msgParts.add(_m(smsg.substring(b, smsg.length())));
-        msg = builder.makeMessage(msgParts.toArray(new Message[msgParts.size()]));
+		/* Let the builder compile the %n and %% markers. */
+		msg = builder.makeTemplateMessage(smsg);
+		messageMap.put(smsg, msg);
 		return msg;
 	}
 
-	private List<EventHandler> eventHandlers = new ArrayList<>();
-	
 	/* Here begins the actual game. */
 	
-	static Message mDarkHere;
-	static boolean messageRead;
+	private Message mDarkHere;
 	
-	private static void describeHere(Game game, Room here) {
-		if ((Boolean)here.getProperty("lit")) {
-			if (!(Boolean)game.thePlayer.getProperty("verbose") &&
-                    (Boolean)here.getProperty("beenhere")) {
+	private void describeHere(Game game, Room here) {
+		if (here.getProperty(LIT)) {
+			if (!game.thePlayer.getProperty(VERBOSE) &&
+                    here.getProperty(BEEN_HERE)) {
 				here.getBriefDescription().print(game.messageOut);
 			} else {
 				here.getDescription().print(game.messageOut);
@@ -159,24 +142,20 @@ public class CloakHardCoded implements GameDescription {
 	}
 	
     /**
-     * This method locates an object by name in allObjects.
+     * This method locates the object a word designates, preferring one the
+     * player can reach.
      * @param game the game object for the game
      * @param w a word designating the object
      * @return the found object or null if no object was found.
      */
     private static GameObject findObject(Game game, Word w) {
-        for (GameObject it : game.allObjects) {
- 			if (it.match(w)) {
-				return it;
-			}
-		}
-		return null;
-	}
+        return game.objects.resolve(w, game.thePlayer);
+    }
 
     private static void queuePlayerMovedEvent(Game game, EventType type, Room from, Room to) {
         Event evt = new Event(type);
-        evt.setProperty("fromroom", from);
-        evt.setProperty("toroom", to);
+        evt.setProperty(FROM_ROOM, from);
+        evt.setProperty(TO_ROOM, to);
         game.parser.queueEvent(evt);
     }
 
@@ -185,6 +164,7 @@ public class CloakHardCoded implements GameDescription {
 		
 		/* wordMap is needed for all versions of hardcoded game. */
 		wordMap = new HashMap<String, WordData>();
+		List<EventHandler> eventHandlers = new ArrayList<EventHandler>();
 
 		/* Call the builder to start the build. */
 		builder.startBuild(in, out);
@@ -303,14 +283,15 @@ public class CloakHardCoded implements GameDescription {
 		eventHandlers.add(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_INIT_EVENT)) {
             @Override
             public void handle(Game game, Event evt) {
-                rHall.setProperty("lit", true);
-                rHall.setProperty("beenhere", false);
-                rCloakRoom.setProperty("lit", true);
-                rCloakRoom.setProperty("beenhere", false);
-                rBar.setProperty("lit", false);
-                rBar.setProperty("beenhere", false);
-
-                messageRead = false;
+                rHall.setProperty(LIT, true);
+                rHall.setProperty(BEEN_HERE, false);
+                rCloakRoom.setProperty(LIT, true);
+                rCloakRoom.setProperty(BEEN_HERE, false);
+                rBar.setProperty(LIT, false);
+                rBar.setProperty(BEEN_HERE, false);
+
+                game.setProperty(MESSAGE_READ, false);
+                game.setProperty(DISTURBING, false);
             }
         });
 		
@@ -328,9 +309,9 @@ public class CloakHardCoded implements GameDescription {
 		builder.makeAction(vVerbose, vYesNo, 0, null, new ActionMethod() {
 			@Override public void doAction(Game game, Word w1, Word w2) {
 				if (w2 == wYes)
-					game.thePlayer.setProperty("verbose", true);
+					game.thePlayer.setProperty(VERBOSE, true);
 				else
-					game.thePlayer.setProperty("verbose", false);
+					game.thePlayer.setProperty(VERBOSE, false);
 			}		
 		});
 
@@ -363,10 +344,10 @@ public class CloakHardCoded implements GameDescription {
         final ActionMethod lookAction = new ActionMethod() {
             @Override public void doAction(Game game, Word w1, Word w2) {
                 Room here = game.thePlayer.getLocation();
-                Boolean beenHere = (Boolean)here.getProperty("beenhere");
-                here.setProperty("beenhere", false);
+                Boolean beenHere = here.getProperty(BEEN_HERE);
+                here.setProperty(BEEN_HERE, false);
                 describeHere(game, here);
-                here.setProperty("beenhere", beenHere);
+                here.setProperty(BEEN_HERE, beenHere);
             }
         };
 
@@ -432,7 +413,7 @@ public class CloakHardCoded implements GameDescription {
         eventHandlers.add(new AbstractEventHandler(gameExitEventType) {
             @Override public void handle(Game game, Event evt) {
                 game.parser.setExit(true);
-                if (messageRead) {
+                if (game.getProperty(MESSAGE_READ)) {
                     iMessage.getLongDesc().print(game.messageOut);
                 } else {
                     int option = 0;
@@ -480,7 +461,7 @@ public class CloakHardCoded implements GameDescription {
 				iHook.setState(1);
 				game.thePlayer.removeObject(iCloak);
 				rCloakRoom.addObject(iCloak);
-				rBar.setProperty("lit", true);
+				rBar.setProperty(LIT, true);
 				mHangingCloak.print(game.messageOut);
 			}
 		});
@@ -500,7 +481,7 @@ public class CloakHardCoded implements GameDescription {
 				iHook.setState(0);
 				rCloakRoom.removeObject(iCloak);
 				game.thePlayer.addObject(iCloak);
-				rBar.setProperty("lit", false);
+				rBar.setProperty(LIT, false);
 				mWearingCloak.print(game.messageOut);
 			}
 		});
@@ -512,7 +493,7 @@ public class CloakHardCoded implements GameDescription {
                 assert (item != null);
                 Room here = game.thePlayer.getLocation();
                 if (game.thePlayer.contains(item) || here.contains(item)) {
-                    if ((Boolean) here.getProperty("lit")) {
+                    if (here.getProperty(LIT)) {
                         item.getLongDesc().println(game.messageOut);
                     } else {
                         mDarkHere.println(game.messageOut);
@@ -565,13 +546,13 @@ public class CloakHardCoded implements GameDescription {
 		final ActionMethod readMessage = new ActionMethod() {
 			@Override public void doAction(Game game, Word w1, Word w2) {
 				/* The player is in the Bar. */
-				if (!(Boolean)rBar.getProperty("lit")) {
+				if (!rBar.getProperty(LIT)) {
 					mDarkHere.print(game.messageOut);
 					game.messageOut.print(" ");
 					mBetterIdea.print(game.messageOut);
 				} else {
 					/* In the bar without the cloak. */
-					messageRead = true;
+					game.setProperty(MESSAGE_READ, true);
 					game.parser.queueEvent(new Event(gameExitEventType));
 				}
 			}			
@@ -592,7 +573,7 @@ public class CloakHardCoded implements GameDescription {
 		final ValidMethod inDarkBar = new ValidMethod() {
 			@Override
 			public boolean isValid(Game game, Word w1, Word w2) {
-				return game.thePlayer.getLocation() == rBar && !(Boolean)rBar.getProperty("lit");
+				return game.thePlayer.getLocation() == rBar && !rBar.getProperty(LIT);
 			}
 		};
 		final ActionMethod betterIdea = new ActionMethod() {
@@ -611,7 +592,7 @@ public class CloakHardCoded implements GameDescription {
         eventHandlers.add(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_INIT_EVENT)) {
             @Override public void handle(Game game, Event evt) {
                 game.thePlayer.apportTo(rHall);
-                game.thePlayer.setProperty("verbose", false);
+                game.thePlayer.setProperty(VERBOSE, false);
             }
         });
 		
@@ -629,7 +610,7 @@ public class CloakHardCoded implements GameDescription {
         final EventHandler disturbMessage = new AbstractEventHandler(EventType.getInstance(CommandParser.COMMAND_EXEC_EVENT)) {
             @Override public void handle(Game game, Event evt) {
                 // We don't count a verbose command as disturbing the message
-                if (!vVerbose.contains((Word)evt.getProperty("word1"))) {
+                if (!vVerbose.contains(evt.getProperty(CommandParser.WORD1))) {
                     int state = iMessage.getState();
                     if (state > 0) {
                         iMessage.setState(state - 1);
@@ -642,19 +623,31 @@ public class CloakHardCoded implements GameDescription {
         /* Respond to player moved event. */
         eventHandlers.add(new AbstractEventHandler(playerMoved) {
             @Override public void handle(Game game, Event evt) {
-                Room fromRoom = (Room)evt.getProperty("fromroom");
-                Room toRoom = (Room)evt.getProperty("toroom");
+                Room fromRoom = evt.getProperty(FROM_ROOM);
+                Room toRoom = evt.getProperty(TO_ROOM);
                 // Describe the location and adjust beenhere
                 describeHere(game, toRoom);
-                if ((Boolean)toRoom.getProperty("lit"))
-                    toRoom.setProperty("beenhere", true);
+                if (toRoom.getProperty(LIT))
+                    toRoom.setProperty(BEEN_HERE, true);
 
                 // If we've arrived in the Bar, queue the message countdown
-                if (toRoom == rBar && !(Boolean)rBar.getProperty("lit"))
+                if (toRoom == rBar && !rBar.getProperty(LIT)) {
                     game.parser.addHandler(disturbMessage);
+                    game.setProperty(DISTURBING, true);
+                }
                 //If we've left a dark Bar, remove the message countdown
-                if (fromRoom == rBar && !(Boolean)rBar.getProperty("lit"))
+                if (fromRoom == rBar && !rBar.getProperty(LIT)) {
                     game.parser.removeHandler(disturbMessage);
+                    game.setProperty(DISTURBING, false);
+                }
+            }
+        });
+
+        /* The message countdown isn't part of a snapshot, put it back. */
+        eventHandlers.add(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_RESTORE_EVENT)) {
+            @Override public void handle(Game game, Event evt) {
+                if (Boolean.TRUE.equals(game.getProperty(DISTURBING)))
+                    game.parser.addHandler(disturbMessage);
             }
         });
 
@@ -0,0 +1,1151 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.reader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cs345.game.*;
+import cs345.interpret.*;
+import cs345.message.Message;
+import cs345.message.MessageFormatter;
+
+/**
+ * This class builds a game described by a game file, so a world can be
+ * written and changed without recompiling anything.
+ *
+ * A game file is text, one statement to a line. A line that ends with a
+ * backslash is continued on the next line. Each statement is a keyword
+ * followed by its arguments, separated by white space. An argument with
+ * spaces in it is written in double quotes; in quotes \" is a quote, \\ a
+ * backslash and \n a new line. Everything after a # outside quotes is a
+ * comment. The statements are:
+ *
+ *   prompt MSG
+ *   special NAME MSG             a special message, see Builder
+ *   noise WORD...                noise words
+ *   word exact|prefix WORD ABBREVIATION...
+ *   term NAME WORD...            a Term, or more words for one
+ *   message NAME MSG             a named message
+ *   join NAME MSG...             the messages one after the other
+ *   select NAME MSG...           chosen by the state of a room or object
+ *   cycle NAME MSG...            each in turn
+ *   room NAME MSG MSG            the description and the brief description
+ *   path TERM ROOM ROOM          a path from the first room to the second
+ *   object NAME TERM MSG MSG MSG [WHERE]
+ *                                the inventory, here is and long messages,
+ *                                and the room, object or player it starts in
+ *   state THING N                the initial state of a room or object
+ *   player NAME ROOM [MSG]       the player, where the player starts and a
+ *                                message shown first
+ *   action TERM TERM|- PRIORITY [if CONDITION...] do EFFECT [; EFFECT]...
+ *
+ * A MSG is either a string in quotes or the name of a message. A string
+ * with a % in it is a template: %1 is the first word of the command, %2
+ * the second word and %3 the inventory description of the object the
+ * second word names, or the word itself if it names no object. %% is a
+ * percent sign.
+ *
+ * A word that isn't declared by a word statement is a prefix word. Words
+ * are made lower case. Everything must be declared before it is used,
+ * except that a path may lead to a room declared later.
+ *
+ * Actions are chosen by the command parser: of the actions for the words
+ * of a command, the one with the highest priority whose conditions hold is
+ * done. The conditions, each of which may be preceded by not, are:
+ *
+ *   in ROOM          the player is in the room
+ *   carrying OBJ     the player is carrying the object
+ *   here OBJ         the object is in the player's room
+ *   state THING N    a room or object is in state N
+ *   flag NAME        the flag is set
+ *
+ * The effects, done in order, are:
+ *
+ *   say MSG          print the message
+ *   look             describe the player's room
+ *   examine OBJ      print the long description of the object
+ *   move MSG         take the path named by the second word, or the first
+ *                    if there is only one, and look, or say the message if
+ *                    there is no such path
+ *   goto ROOM        move the player to the room and look
+ *   take OBJ         move the object to the player
+ *   drop OBJ         move the object to the player's room
+ *   put OBJ WHERE    move the object to a room or object, or to nowhere
+ *   setstate THING N set the state of a room or object
+ *   set NAME         set a flag
+ *   clear NAME       clear a flag
+ *   inventory MSG    list what the player is carrying, or say the message
+ *                    if nothing
+ *   quit             end the game
+ *
+ * In conditions and effects OBJ may be $2, the object named by the second
+ * word of the command. Flags are game properties, so each session has its
+ * own.
+ *
+ * The file is read in a single pass, a line at a time, and each statement
+ * is passed to the Builder as soon as it is read. Memory use depends on
+ * the size of the world, not the size of the file.
+ *
+ * A game file can be compiled into a WorldImage, which loads faster.
+ *
+ * When the game is built through GameMain the file name is the second
+ * argument, or the system property game.file:
+ *
+ *   java -cp CLASSPATH cs345.GameMain FileGame worlds/tour.game
+ */
+public class FileGame implements GameDescription {
+
+    /** The system property naming the game file. */
+    public static final String FILE_PROPERTY = "game.file";
+
+    private static final String ARG2 = "$2";
+    private static final String NOWHERE = "nowhere";
+    private static final String PLAYER = "player";
+    /* The name GameBuilder gives the noise Term, compared by identity. */
+    private static final String NOISE = "noisewords";
+
+    private final Builder builder;
+    private final String fileName;
+
+    /*
+     * The state of a build. The names, the player and the script are also
+     * used by WorldImage.
+     */
+    private String source;
+    private int lineNo;
+    private String[] tok = new String[16];
+    private boolean[] quoted = new boolean[16];
+    /* The Name of each token, null if not found yet. */
+    private Name[] slots = new Name[16];
+    private int count;
+    private StringBuilder sb = new StringBuilder();
+    private Names names;
+    private List<PendingPath> pendingPaths;
+    Player player;
+    Room start;
+    Message intro;
+    /* If not null, the action statements read are added to this. */
+    List<Statement> script;
+
+    /* A statement as read from the file, already split into tokens. */
+    static class Statement {
+        final int lineNo;
+        final String[] tok;
+        final boolean[] quoted;
+
+        Statement(int lineNo, String[] tok, boolean[] quoted) {
+            this.lineNo = lineNo;
+            this.tok = tok;
+            this.quoted = quoted;
+        }
+    }
+
+    /*
+     * A word of a game file that isn't in quotes, and what it names: the
+     * Word, if this is the word in lower case, the Term, message, room and
+     * object. There is one Name for each different word, so a statement
+     * finds what its arguments name without looking them up.
+     */
+    static final class Name {
+        final String text;
+        /* The Name of the text in lower case. */
+        Name lowerCase;
+        Word word;
+        Term term;
+        Message message;
+        Room room;
+        GameObject object;
+
+        Name(String text) {
+            this.text = text;
+        }
+    }
+
+    /*
+     * The Names of a file. The tokenizer finds the Name of each word as it
+     * reads it, from the characters, so a word used on many lines is made
+     * into a String once.
+     */
+    private static class Names implements Iterable<Name> {
+        private Name[] table = new Name[1 << 10];
+        private int size;
+
+        Name get(char[] a, int from, int length) {
+            int h = 0;
+            for (int i = from; i < from + length; ++i) {
+                h = 31 * h + a[i];
+            }
+            int mask = table.length - 1;
+            for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+                Name n = table[i];
+                if (n == null)
+                    return add(i, new String(a, from, length));
+                if (n.text.hashCode() == h && equal(n.text, a, from, length))
+                    return n;
+            }
+        }
+
+        Name get(String s) {
+            int h = s.hashCode();
+            int mask = table.length - 1;
+            for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+                Name n = table[i];
+                if (n == null)
+                    return add(i, s);
+                if (n.text == s || n.text.equals(s))
+                    return n;
+            }
+        }
+
+        private Name add(int i, String s) {
+            Name n = new Name(s);
+            table[i] = n;
+            size += 1;
+            if (2 * size > table.length)
+                grow();
+            return n;
+        }
+
+        private static boolean equal(String s, char[] a, int from, int length) {
+            if (s.length() != length)
+                return false;
+            for (int i = 0; i < length; ++i) {
+                if (s.charAt(i) != a[from + i])
+                    return false;
+            }
+            return true;
+        }
+
+        private void grow() {
+            Name[] old = table;
+            table = new Name[2 * old.length];
+            int mask = table.length - 1;
+            for (Name n : old) {
+                if (n == null)
+                    continue;
+                int h = n.text.hashCode();
+                int i = (h ^ (h >>> 16)) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = n;
+            }
+        }
+
+        @Override public Iterator<Name> iterator() {
+            List<Name> all = new ArrayList<Name>(size);
+            for (Name n : table) {
+                if (n != null)
+                    all.add(n);
+            }
+            return all.iterator();
+        }
+    }
+
+    /* A path to a room that hadn't been declared yet. */
+    private static class PendingPath {
+        final Term term;
+        final Room from;
+        final Name to;
+        final int lineNo;
+
+        PendingPath(Term term, Room from, Name to, int lineNo) {
+            this.term = term;
+            this.from = from;
+            this.to = to;
+            this.lineNo = lineNo;
+        }
+    }
+
+    /**
+     * Create a description that reads the file named by the system
+     * property game.file.
+     *
+     * @param builder the Builder used to build the game
+     */
+    public FileGame(Builder builder) {
+        this(builder, System.getProperty(FILE_PROPERTY));
+    }
+
+    /**
+     * Create a description that reads a game file.
+     *
+     * @param builder the Builder used to build the game
+     * @param fileName the name of the game file
+     */
+    public FileGame(Builder builder, String fileName) {
+        this.builder = builder;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Build the game in the file.
+     *
+     * @throws IllegalArgumentException if the file has an error, with the
+     *         file name and line number in the message
+     * @throws UncheckedIOException if the file can't be read
+     */
+    @Override public Game build(InputStream in, MessageFormatter out) {
+        if (fileName == null)
+            throw new IllegalStateException("No game file, set " + FILE_PROPERTY);
+        try {
+            Reader r = new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8);
+            try {
+                return build(r, fileName, in, out);
+            } finally {
+                r.close();
+            }
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    /**
+     * Build a game from a game description read from a Reader.
+     *
+     * @param reader the Reader for the description
+     * @param name the name of the description, for error messages
+     * @param in an InputStream that will be the input for the game
+     * @param out a MessageFormatter that will be the output for the game
+     * @return the constructed Game
+     * @throws IOException if the description can't be read
+     * @throws IllegalArgumentException if the description has an error
+     */
+    public Game build(Reader reader, String name, InputStream in, MessageFormatter out)
+            throws IOException {
+        begin(name, in, out);
+        parse(reader);
+        return finish();
+    }
+
+    /* Start a build: clear the names and start the Builder. */
+    void begin(String name, InputStream in, MessageFormatter out) {
+        source = name;
+        lineNo = 0;
+        names = new Names();
+        pendingPaths = new ArrayList<PendingPath>();
+        player = null;
+        start = null;
+        intro = null;
+        builder.startBuild(in, out);
+    }
+
+    /* Read the statements of a game file. */
+    void parse(Reader reader) throws IOException {
+        Lines lines = new Lines(reader);
+        while (lines.next()) {
+            lineNo += 1;
+            char[] a = lines.buf;
+            int start = lines.start;
+            int end = lines.end;
+            if (end > start && a[end - 1] == '\\') {
+                sb.setLength(0);
+                boolean more = true;
+                while (more && a[end - 1] == '\\') {
+                    sb.append(a, start, end - 1 - start);
+                    more = lines.next();
+                    if (more) {
+                        lineNo += 1;
+                        a = lines.buf;
+                        start = lines.start;
+                        end = lines.end;
+                        if (end == start)
+                            break;
+                    }
+                }
+                if (more)
+                    sb.append(a, start, end - start);
+                a = new char[sb.length()];
+                sb.getChars(0, a.length, a, 0);
+                start = 0;
+                end = a.length;
+            }
+            tokenize(a, start, end);
+            if (count > 0)
+                statement();
+        }
+        count = 0;
+    }
+
+    /*
+     * The lines of a game file. The characters are read into a buffer and
+     * each line is a range of it, so no String is made for a line.
+     */
+    private static class Lines {
+        private final Reader in;
+        private boolean eof;
+        /* The characters read but not yet returned are buf[pos, lim). */
+        private int pos;
+        private int lim;
+
+        char[] buf = new char[1 << 16];
+        /* The current line, without its terminator, is buf[start, end). */
+        int start;
+        int end;
+
+        Lines(Reader in) {
+            this.in = in;
+        }
+
+        /*
+         * Move to the next line, which ends at \n, \r or \r\n like a line of
+         * BufferedReader.readLine. Returns false at the end of the input.
+         */
+        boolean next() throws IOException {
+            int i = pos;
+            while (true) {
+                while (i < lim && buf[i] != '\n' && buf[i] != '\r') {
+                    i += 1;
+                }
+                if (i < lim && (buf[i] == '\n' || i + 1 < lim || eof)) {
+                    start = pos;
+                    end = i;
+                    pos = i + 1;
+                    if (buf[i] == '\r' && pos < lim && buf[pos] == '\n')
+                        pos += 1;
+                    return true;
+                }
+                if (eof) {
+                    if (pos == lim)
+                        return false;
+                    start = pos;
+                    end = lim;
+                    pos = lim;
+                    return true;
+                }
+                i -= pos;
+                fill();
+                i += pos;
+            }
+        }
+
+        /* Move what is left to the start of buf, making room, and read more. */
+        private void fill() throws IOException {
+            System.arraycopy(buf, pos, buf, 0, lim - pos);
+            lim -= pos;
+            pos = 0;
+            if (lim == buf.length)
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            int n = in.read(buf, lim, buf.length - lim);
+            if (n < 0)
+                eof = true;
+            else
+                lim += n;
+        }
+    }
+
+    /* Do a statement that has already been split into tokens. */
+    void replay(Statement st) {
+        String[] t = tok;
+        boolean[] q = quoted;
+        Name[] n = slots;
+        lineNo = st.lineNo;
+        tok = st.tok;
+        quoted = st.quoted;
+        slots = new Name[st.tok.length];
+        count = st.tok.length;
+        try {
+            statement();
+        } finally {
+            tok = t;
+            quoted = q;
+            slots = n;
+            count = 0;
+        }
+    }
+
+    /* The Name for a word, made if it is new. */
+    Name named(String s) {
+        return names.get(s);
+    }
+
+    /*
+     * Add the Terms, messages, rooms and objects named by the used names
+     * to names, mapped to their names.
+     */
+    void usedNames(Set<String> used, Map<Object, String> names) {
+        for (Name n : this.names) {
+            if (!used.contains(n.text))
+                continue;
+            for (Object o : new Object[] { n.term, n.message, n.room, n.object }) {
+                if (o != null)
+                    names.put(o, n.text);
+            }
+        }
+    }
+
+    /* True while an action statement is being read. */
+    boolean inAction() {
+        return count > 0 && tok[0].equals("action");
+    }
+
+    /* Finish a build: make the paths left over and complete the game. */
+    Game finish() {
+        for (PendingPath p : pendingPaths) {
+            Room to = p.to.room;
+            if (to == null) {
+                lineNo = p.lineNo;
+                throw error("unknown room " + p.to.text);
+            }
+            builder.makePath(p.term, p.from, to);
+        }
+        if (player == null)
+            throw error("no player statement");
+
+        Game game = builder.buildComplete();
+        final Room startRoom = start;
+        final Message introMsg = intro;
+        game.parser.addHandler(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_INIT_EVENT)) {
+            @Override public void handle(Game game, Event evt) {
+                if (introMsg != null)
+                    introMsg.println(game.messageOut);
+                game.thePlayer.apportTo(startRoom);
+                game.thePlayer.lookAround();
+            }
+        });
+
+        names = null;
+        pendingPaths = null;
+        return game;
+    }
+
+    private IllegalArgumentException error(String problem) {
+        return new IllegalArgumentException(source + ":" + lineNo + ": " + problem);
+    }
+
+    /*
+     * Split the line a[from, to) into tokens. A ; outside quotes is a token
+     * of its own.
+     */
+    private void tokenize(char[] a, int from, int to) {
+        count = 0;
+        int i = from;
+        while (i < to) {
+            char c = a[i];
+            if (c <= ' ') {
+                i += 1;
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                i += 1;
+                int s = i;
+                while (i < to && a[i] != '"' && a[i] != '\\') {
+                    i += 1;
+                }
+                if (i < to && a[i] == '"') {
+                    // No escapes, the string is the characters as they are.
+                    add(new String(a, s, i - s), null, true);
+                    i += 1;
+                    continue;
+                }
+                sb.setLength(0);
+                sb.append(a, s, i - s);
+                while (true) {
+                    if (i >= to)
+                        throw error("missing closing quote");
+                    c = a[i++];
+                    if (c == '"')
+                        break;
+                    if (c == '\\' && i < to) {
+                        c = a[i++];
+                        if (c == 'n')
+                            c = '\n';
+                    }
+                    sb.append(c);
+                }
+                add(sb.toString(), null, true);
+            } else if (c == ';') {
+                add(";", null, false);
+                i += 1;
+            } else {
+                int s = i;
+                while (i < to && (c = a[i]) > ' ' && c != ';' && c != '"' && c != '#') {
+                    i += 1;
+                }
+                Name n = names.get(a, s, i - s);
+                add(n.text, n, false);
+            }
+        }
+    }
+
+    private void add(String s, Name n, boolean q) {
+        if (count == tok.length) {
+            tok = Arrays.copyOf(tok, 2 * count);
+            quoted = Arrays.copyOf(quoted, 2 * count);
+            slots = Arrays.copyOf(slots, 2 * count);
+        }
+        tok[count] = s;
+        slots[count] = n;
+        quoted[count] = q;
+        count += 1;
+    }
+
+    private void arguments(int min, int max) {
+        if (count - 1 < min || count - 1 > max)
+            throw error("wrong number of arguments for " + tok[0]);
+    }
+
+    private void statement() {
+        String keyword = tok[0];
+        switch (keyword) {
+        case "prompt":
+            arguments(1, 1);
+            builder.setPrompt(tok[1]);
+            break;
+        case "special":
+            arguments(2, 2);
+            builder.setSpecialMessage(tok[1], message(2));
+            break;
+        case "noise":
+            arguments(1, Integer.MAX_VALUE);
+            addWords(noise(), 1);
+            break;
+        case "word":
+            wordStatement();
+            break;
+        case "term":
+            arguments(1, Integer.MAX_VALUE);
+            addWords(term(1, true), 2);
+            break;
+        case "message":
+            arguments(2, 2);
+            define(1, message(2));
+            break;
+        case "join":
+            arguments(2, Integer.MAX_VALUE);
+            define(1, builder.makeMessage(messages(2)));
+            break;
+        case "select":
+            arguments(2, Integer.MAX_VALUE);
+            define(1, builder.makeSelectMessage(messages(2)));
+            break;
+        case "cycle":
+            arguments(2, Integer.MAX_VALUE);
+            define(1, builder.makeCycleMessage(messages(2)));
+            break;
+        case "room": {
+            arguments(3, 3);
+            Name n = name(1);
+            if (n.room != null)
+                throw error("room " + n.text + " already declared");
+            n.room = builder.makeRoom(n.text, message(2), message(3));
+            break;
+        }
+        case "path":
+            pathStatement();
+            break;
+        case "object":
+            objectStatement();
+            break;
+        case "state":
+            arguments(2, 2);
+            thing(1).setState(number(2));
+            break;
+        case "player":
+            arguments(2, 3);
+            if (player != null)
+                throw error("there is already a player");
+            start = room(2);
+            intro = (count > 3) ? message(3) : null;
+            player = builder.makePlayer(tok[1]);
+            break;
+        case "action":
+            if (script != null)
+                script.add(new Statement(lineNo, Arrays.copyOf(tok, count), Arrays.copyOf(quoted, count)));
+            actionStatement();
+            break;
+        default:
+            throw error("unknown statement " + keyword);
+        }
+    }
+
+    private void wordStatement() {
+        arguments(2, Integer.MAX_VALUE);
+        MatchType match;
+        if (tok[1].equals("exact"))
+            match = MatchType.EXACT;
+        else if (tok[1].equals("prefix"))
+            match = MatchType.PREFIX;
+        else
+            throw error("word match must be exact or prefix");
+        Name n = lowerCase(slot(2));
+        Word word = n.word;
+        if (word == null) {
+            word = builder.makeWord(n.text, match);
+            n.word = word;
+        } else if (word.getMatch() != match) {
+            throw error("word " + n.text + " already declared as " + word.getMatch());
+        }
+        for (int i = 3; i < count; ++i) {
+            word.addAbbreviation(tok[i].toLowerCase());
+        }
+    }
+
+    private void pathStatement() {
+        arguments(3, 3);
+        Term t = term(1, false);
+        Room from = room(2);
+        Name to = name(3);
+        if (to.room != null)
+            builder.makePath(t, from, to.room);
+        else
+            pendingPaths.add(new PendingPath(t, from, to, lineNo));
+    }
+
+    private void objectStatement() {
+        arguments(5, 6);
+        Name n = name(1);
+        if (n.object != null)
+            throw error("object " + n.text + " already declared");
+        GameObject obj = builder.makeGameObject(n.text, term(2, false),
+                message(3), message(4), message(5));
+        n.object = obj;
+        if (count > 6)
+            container(6).addObject(obj);
+    }
+
+    /* action TERM TERM|- PRIORITY [if CONDITION...] do EFFECT [; EFFECT]... */
+    private void actionStatement() {
+        arguments(5, Integer.MAX_VALUE);
+        Term t1 = term(1, false);
+        Term t2 = tok[2].equals("-") ? null : term(2, false);
+        int priority = number(3);
+        int i = 4;
+        final List<Condition> conditions = new ArrayList<Condition>();
+        if (tok[i].equals("if")) {
+            i += 1;
+            while (i < count && !tok[i].equals("do")) {
+                i = condition(i, conditions);
+            }
+        }
+        if (i >= count || !tok[i].equals("do"))
+            throw error("action needs do");
+        i += 1;
+        final List<Effect> effects = new ArrayList<Effect>();
+        while (i < count) {
+            if (tok[i].equals(";"))
+                i += 1;
+            else
+                i = effect(i, effects);
+        }
+        if (effects.isEmpty())
+            throw error("action has no effects");
+
+        final Condition[] cs = conditions.toArray(new Condition[conditions.size()]);
+        final Effect[] es = effects.toArray(new Effect[effects.size()]);
+        ValidMethod valid = null;
+        if (cs.length > 0) {
+            valid = new ValidMethod() {
+                @Override public boolean isValid(Game game, Word w1, Word w2) {
+                    for (Condition c : cs) {
+                        if (!c.test(game, w1, w2))
+                            return false;
+                    }
+                    return true;
+                }
+            };
+        }
+        builder.makeAction(t1, t2, priority, valid, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                for (Effect e : es) {
+                    e.apply(game, w1, w2);
+                }
+            }
+        });
+    }
+
+    private interface Condition {
+        boolean test(Game game, Word w1, Word w2);
+    }
+
+    private interface Effect {
+        void apply(Game game, Word w1, Word w2);
+    }
+
+    /* Parse the condition at tok[i], returning the index after it. */
+    private int condition(int i, List<Condition> conditions) {
+        final boolean negate = tok[i].equals("not");
+        if (negate)
+            i += 1;
+        String what = need(i);
+        final Condition c;
+        switch (what) {
+        case "in": {
+            final Room room = room(i + 1);
+            c = new Condition() {
+                @Override public boolean test(Game game, Word w1, Word w2) {
+                    return game.thePlayer.getLocation() == room;
+                }
+            };
+            i += 2;
+            break;
+        }
+        case "carrying": {
+            final GameObject fixed = objectRef(i + 1);
+            c = new Condition() {
+                @Override public boolean test(Game game, Word w1, Word w2) {
+                    GameObject obj = object(game, fixed, w2);
+                    return obj != null && game.thePlayer.contains(obj);
+                }
+            };
+            i += 2;
+            break;
+        }
+        case "here": {
+            final GameObject fixed = objectRef(i + 1);
+            c = new Condition() {
+                @Override public boolean test(Game game, Word w1, Word w2) {
+                    GameObject obj = object(game, fixed, w2);
+                    return obj != null && game.thePlayer.getLocation().contains(obj);
+                }
+            };
+            i += 2;
+            break;
+        }
+        case "state": {
+            final Container fixed = thingRef(i + 1);
+            need(i + 2);
+            final int state = number(i + 2);
+            c = new Condition() {
+                @Override public boolean test(Game game, Word w1, Word w2) {
+                    Container thing = (fixed != null) ? fixed : object(game, null, w2);
+                    return thing != null && thing.getState() == state;
+                }
+            };
+            i += 3;
+            break;
+        }
+        case "flag": {
+            final PropertyKey<Boolean> key = flag(need(i + 1));
+            c = new Condition() {
+                @Override public boolean test(Game game, Word w1, Word w2) {
+                    return Boolean.TRUE.equals(game.getProperty(key));
+                }
+            };
+            i += 2;
+            break;
+        }
+        default:
+            throw error("unknown condition " + what);
+        }
+        conditions.add(negate ? new Condition() {
+            @Override public boolean test(Game game, Word w1, Word w2) {
+                return !c.test(game, w1, w2);
+            }
+        } : c);
+        return i;
+    }
+
+    /* Parse the effect at tok[i], returning the index after it. */
+    private int effect(int i, List<Effect> effects) {
+        String what = tok[i];
+        switch (what) {
+        case "say": {
+            need(i + 1);
+            final Message msg = message(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    say(game, msg, w1, w2);
+                }
+            });
+            return i + 2;
+        }
+        case "look":
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    game.thePlayer.lookAround();
+                }
+            });
+            return i + 1;
+        case "examine": {
+            final GameObject fixed = objectRef(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    GameObject obj = object(game, fixed, w2);
+                    if (obj != null)
+                        obj.getLongDesc().println(game.messageOut);
+                }
+            });
+            return i + 2;
+        }
+        case "move": {
+            need(i + 1);
+            final Message msg = message(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    if (game.thePlayer.moveOnPath((w2 != null) ? w2 : w1))
+                        game.thePlayer.lookAround();
+                    else
+                        say(game, msg, w1, w2);
+                }
+            });
+            return i + 2;
+        }
+        case "goto": {
+            final Room room = room(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    game.thePlayer.apportTo(room);
+                    game.thePlayer.lookAround();
+                }
+            });
+            return i + 2;
+        }
+        case "take":
+        case "drop": {
+            final boolean take = what.equals("take");
+            final GameObject fixed = objectRef(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    GameObject obj = object(game, fixed, w2);
+                    if (obj != null)
+                        moveObject(obj, take ? game.thePlayer : game.thePlayer.getLocation());
+                }
+            });
+            return i + 2;
+        }
+        case "put": {
+            final GameObject fixed = objectRef(i + 1);
+            final Container where = need(i + 2).equals(NOWHERE) ? null : container(i + 2);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    GameObject obj = object(game, fixed, w2);
+                    if (obj != null)
+                        moveObject(obj, where);
+                }
+            });
+            return i + 3;
+        }
+        case "setstate": {
+            final Container fixed = thingRef(i + 1);
+            need(i + 2);
+            final int state = number(i + 2);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    Container thing = (fixed != null) ? fixed : object(game, null, w2);
+                    if (thing != null)
+                        thing.setState(state);
+                }
+            });
+            return i + 3;
+        }
+        case "set":
+        case "clear": {
+            final PropertyKey<Boolean> key = flag(need(i + 1));
+            final Boolean value = what.equals("set");
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    game.setProperty(key, value);
+                }
+            });
+            return i + 2;
+        }
+        case "inventory": {
+            need(i + 1);
+            final Message empty = message(i + 1);
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    if (game.thePlayer.getContents().isEmpty()) {
+                        say(game, empty, w1, w2);
+                        return;
+                    }
+                    for (GameObject obj : game.thePlayer.getContents()) {
+                        obj.getInventoryDesc().println(game.messageOut);
+                    }
+                }
+            });
+            return i + 2;
+        }
+        case "quit":
+            effects.add(new Effect() {
+                @Override public void apply(Game game, Word w1, Word w2) {
+                    game.parser.setExit(true);
+                }
+            });
+            return i + 1;
+        default:
+            throw error("unknown effect " + what);
+        }
+    }
+
+    /* Print a message with the words of the command and the object. */
+    private static void say(Game game, Message msg, Word w1, Word w2) {
+        GameObject obj = object(game, null, w2);
+        Object third = (obj != null) ? obj.getInventoryDesc().getString() : w2;
+        msg.println(game.messageOut, w1, w2, third);
+    }
+
+    /* The fixed object or, if there is none, the object the word names. */
+    private static GameObject object(Game game, GameObject fixed, Word w2) {
+        if (fixed != null)
+            return fixed;
+        return (w2 == null) ? null : game.objects.resolve(w2, game.thePlayer);
+    }
+
+    private static void moveObject(GameObject obj, Container to) {
+        Container from = obj.getContainer();
+        if (from != null)
+            from.removeObject(obj);
+        if (to != null)
+            to.addObject(obj);
+    }
+
+    private String need(int i) {
+        if (i >= count || tok[i].equals(";"))
+            throw error(tok[0] + " is missing an argument");
+        return tok[i];
+    }
+
+    private int number(int i) {
+        try {
+            return Integer.parseInt(tok[i]);
+        } catch (NumberFormatException exc) {
+            throw error("expected a number, found " + tok[i]);
+        }
+    }
+
+    /* The Name of the token at i, which may be in quotes. */
+    private Name slot(int i) {
+        Name n = slots[i];
+        if (n == null) {
+            n = names.get(tok[i]);
+            slots[i] = n;
+        }
+        return n;
+    }
+
+    /* The Name of the argument at i. */
+    private Name name(int i) {
+        need(i);
+        return slot(i);
+    }
+
+    /* The Name of the same word in lower case. */
+    private Name lowerCase(Name n) {
+        if (n.lowerCase == null) {
+            String s = n.text.toLowerCase();
+            n.lowerCase = s.equals(n.text) ? n : names.get(s);
+        }
+        return n.lowerCase;
+    }
+
+    private Word word(int i) {
+        Name n = lowerCase(slot(i));
+        if (n.word == null)
+            n.word = builder.makeWord(n.text, MatchType.PREFIX);
+        return n.word;
+    }
+
+    private void addWords(Term t, int from) {
+        for (int i = from; i < count; ++i) {
+            t.addWord(word(i));
+        }
+    }
+
+    private Term term(int i, boolean make) {
+        Name n = slot(i);
+        if (n.term == null) {
+            if (!make)
+                throw error("unknown term " + n.text);
+            n.term = builder.makeTerm(n.text);
+        }
+        return n.term;
+    }
+
+    /* The noise Term, made with the name GameBuilder looks for. */
+    private Term noise() {
+        Name n = names.get(NOISE);
+        if (n.term == null)
+            n.term = builder.makeTerm(NOISE);
+        return n.term;
+    }
+
+    private void define(int i, Message msg) {
+        Name n = slot(i);
+        if (n.message != null)
+            throw error("message " + n.text + " already declared");
+        n.message = msg;
+    }
+
+    private Message message(int i) {
+        String s = tok[i];
+        if (quoted[i]) {
+            return (s.indexOf('%') >= 0) ? builder.makeTemplateMessage(s) : builder.makeMessage(s);
+        }
+        Message msg = slot(i).message;
+        if (msg == null)
+            throw error("unknown message " + s);
+        return msg;
+    }
+
+    private Message[] messages(int from) {
+        Message[] msgs = new Message[count - from];
+        for (int i = from; i < count; ++i) {
+            msgs[i - from] = message(i);
+        }
+        return msgs;
+    }
+
+    private Room room(int i) {
+        Name n = name(i);
+        if (n.room == null)
+            throw error("unknown room " + n.text);
+        return n.room;
+    }
+
+    /* The object named, or null for $2. */
+    private GameObject objectRef(int i) {
+        if (need(i).equals(ARG2))
+            return null;
+        Name n = slot(i);
+        if (n.object == null)
+            throw error("unknown object " + n.text);
+        return n.object;
+    }
+
+    /* The room or object named, or null for $2. */
+    private Container thingRef(int i) {
+        return need(i).equals(ARG2) ? null : thing(i);
+    }
+
+    private Container thing(int i) {
+        Name n = name(i);
+        Container c = n.room;
+        if (c == null)
+            c = n.object;
+        if (c == null)
+            throw error("unknown room or object " + n.text);
+        return c;
+    }
+
+    private Container container(int i) {
+        if (need(i).equals(PLAYER)) {
+            if (player == null)
+                throw error("the player must be declared first");
+            return player;
+        }
+        return thing(i);
+    }
+
+    private static PropertyKey<Boolean> flag(String name) {
+        return PropertyKey.of("flag." + name, Boolean.class);
+    }
+}
@@ -0,0 +1,484 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.reader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import cs345.game.*;
+import cs345.interpret.*;
+import cs345.message.Message;
+import cs345.message.MessageFormatter;
+
+/**
+ * This class builds a large pseudo-random game for testing the engine at
+ * scale.
+ *
+ * The world is a grid of rooms joined by north, south, east and west paths,
+ * with an extra one way "in" passage from some of the rooms to a random
+ * room. Each room contains the same number of objects and each object has a
+ * word of its own that can be used with get, drop and examine. The
+ * vocabulary is padded out with words that have no actions, and there are
+ * extra verbs with actions and extra event handlers. All the names come from
+ * a Random with a fixed seed, so the same parameters always build the same
+ * game.
+ *
+ * When the game is built through GameMain the size parameters are taken from
+ * the system properties generated.rooms, generated.objects (per room),
+ * generated.words, generated.actions, generated.handlers and generated.seed.
+ * For example
+ *
+ *   java -Dgenerated.rooms=100000 -cp CLASSPATH cs345.GameMain GeneratedGame
+ *
+ * The player starts in room 0, the north west corner of the grid.
+ *
+ * The rooms and their objects are built in regions of REGION_ROOMS rooms,
+ * in parallel, using Builder.region. The random choices are all made
+ * before the regions are built, so the game is the same however the
+ * regions are scheduled.
+ */
+public class GeneratedGame implements GameDescription {
+
+    public static final int DEF_ROOMS = 1000;
+    public static final int DEF_OBJECTS = 2;
+    public static final int DEF_WORDS = 5000;
+    public static final int DEF_ACTIONS = 100;
+    public static final int DEF_HANDLERS = 10;
+    public static final long DEF_SEED = 345L;
+
+    private static final PropertyKey<Room> FROM_ROOM = PropertyKey.of("fromroom", Room.class);
+    private static final PropertyKey<Room> TO_ROOM = PropertyKey.of("toroom", Room.class);
+
+    private static final String CONSONANTS = "bcdfghjklmnprstvz";
+    private static final String VOWELS = "aeiou";
+
+    /* Rooms per region built in parallel. */
+    private static final int REGION_ROOMS = 4096;
+
+    /* Words per padding Term. */
+    private static final int PADDING_TERM_SIZE = 16;
+
+    private final Builder builder;
+    private final int nRooms;
+    private final int nObjects;
+    private final int nWords;
+    private final int nActions;
+    private final int nHandlers;
+    private final long seed;
+
+    private Random rnd;
+    /* wordMap tracks the words made so far. It keeps build() from making
+     * the same word twice and randomWord() from reusing a word.
+     */
+    private Map<String, Word> wordMap;
+
+    /**
+     * Create a description with the sizes given by the system properties.
+     *
+     * @param builder the Builder used to build the game
+     */
+    public GeneratedGame(Builder builder) {
+        this(builder,
+                Integer.getInteger("generated.rooms", DEF_ROOMS),
+                Integer.getInteger("generated.objects", DEF_OBJECTS),
+                Integer.getInteger("generated.words", DEF_WORDS),
+                Integer.getInteger("generated.actions", DEF_ACTIONS),
+                Integer.getInteger("generated.handlers", DEF_HANDLERS),
+                Long.getLong("generated.seed", DEF_SEED));
+    }
+
+    /**
+     * Create a description of a game with the given sizes.
+     *
+     * @param builder the Builder used to build the game
+     * @param rooms the number of rooms, at least 1
+     * @param objectsPerRoom the number of objects in each room
+     * @param words the number of words in the vocabulary. If the rooms,
+     *        objects and actions need more words than this, the vocabulary
+     *        is larger.
+     * @param actions the number of extra verbs, each with an Action
+     * @param handlers the number of extra event handlers
+     * @param seed the seed for the random names and layout
+     */
+    public GeneratedGame(Builder builder, int rooms, int objectsPerRoom,
+            int words, int actions, int handlers, long seed) {
+        if (rooms < 1)
+            throw new IllegalArgumentException("A game needs at least one room");
+        this.builder = builder;
+        this.nRooms = rooms;
+        this.nObjects = Math.max(0, objectsPerRoom);
+        this.nWords = Math.max(0, words);
+        this.nActions = Math.max(0, actions);
+        this.nHandlers = Math.max(0, handlers);
+        this.seed = seed;
+    }
+
+    /*
+     * Make a new random word that is not already in the vocabulary.
+     */
+    private String randomWord() {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            sb.setLength(0);
+            int syllables = 2 + rnd.nextInt(3);
+            for (int i = 0; i < syllables; ++i) {
+                sb.append(CONSONANTS.charAt(rnd.nextInt(CONSONANTS.length())));
+                sb.append(VOWELS.charAt(rnd.nextInt(VOWELS.length())));
+            }
+            String s = sb.toString();
+            if (!wordMap.containsKey(s))
+                return s;
+        }
+    }
+
+    private Word makeWord(String w) {
+        Word word = wordMap.get(w);
+        if (word == null) {
+            word = builder.makeWord(w, MatchType.PREFIX);
+            wordMap.put(w, word);
+        }
+        return word;
+    }
+
+    private Term makeTerm(String name, String... words) {
+        Term t = builder.makeTerm(name);
+        for (String w : words) {
+            t.addWord(makeWord(w));
+        }
+        return t;
+    }
+
+    private Message _am(String smsg) {
+        return builder.makeTemplateMessage(smsg);
+    }
+
+    /**
+     * This method locates the object a word designates, preferring one the
+     * player can reach.
+     * @param game the game object for the game
+     * @param w a word designating the object
+     * @return the found object or null if no object was found.
+     */
+    private static GameObject findObject(Game game, Word w) {
+        return game.objects.resolve(w, game.thePlayer);
+    }
+
+    private static void queuePlayerMovedEvent(Game game, EventType type, Room from, Room to) {
+        Event evt = new Event(type);
+        evt.setProperty(FROM_ROOM, from);
+        evt.setProperty(TO_ROOM, to);
+        game.parser.queueEvent(evt);
+    }
+
+    /*
+     * Make the rooms, and the objects in them, in regions of REGION_ROOMS
+     * rooms built in parallel on the common ForkJoinPool. The objects in
+     * room i are named by nouns[i * nObjects] onwards; their Words are
+     * returned in nounWords.
+     */
+    private void buildRegions(final Room[] rooms, final String[] nouns, final Word[] nounWords) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int lo = 0; lo < nRooms; lo += REGION_ROOMS) {
+            final int first = lo;
+            final int last = Math.min(nRooms, lo + REGION_ROOMS);
+            final Builder region = builder.region();
+            tasks.add(new Callable<Void>() {
+                @Override public Void call() {
+                    buildRegion(region, first, last, rooms, nouns, nounWords);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the world", exc);
+        } catch (ExecutionException exc) {
+            if (exc.getCause() instanceof RuntimeException)
+                throw (RuntimeException) exc.getCause();
+            throw new IllegalStateException(exc.getCause());
+        }
+    }
+
+    private void buildRegion(Builder region, int first, int last,
+            Room[] rooms, String[] nouns, Word[] nounWords) {
+        for (int i = first; i < last; ++i) {
+            String name = "room" + i;
+            rooms[i] = region.makeRoom(name,
+                    region.makeMessage("You are in room " + i + " of a very large maze of "
+                            + nRooms + " rooms, all different. "),
+                    region.makeMessage("You are in room " + i + "."));
+        }
+        for (int i = first; i < last; ++i) {
+            for (int j = 0; j < nObjects; ++j) {
+                int k = i * nObjects + j;
+                String noun = nouns[k];
+                Word w = region.makeWord(noun, MatchType.PREFIX);
+                Term t = region.makeTerm(noun);
+                t.addWord(w);
+                GameObject obj = region.makeGameObject(noun, t,
+                        region.makeMessage("a " + noun),
+                        region.makeMessage("There is a " + noun + " here. "),
+                        region.makeMessage("It's an ordinary " + noun + " from room " + i + "."));
+                rooms[i].addObject(obj);
+                nounWords[k] = w;
+            }
+        }
+    }
+
+    @Override public Game build(InputStream in, MessageFormatter out) {
+        rnd = new Random(seed);
+        wordMap = new HashMap<String, Word>();
+        List<EventHandler> eventHandlers = new ArrayList<EventHandler>();
+
+        builder.startBuild(in, out);
+
+        makeTerm("noisewords", "a", "an", "the", "to", "at", "with");
+
+        /* Special messages */
+        builder.setSpecialMessage("word.unknown", _am("I don't understand %1."));
+        builder.setSpecialMessage("word.ambiguous",
+                _am("I have more than one way to interpret %1."));
+        builder.setSpecialMessage("command.allnoise", builder.makeMessage("That was noise to me."));
+        builder.setSpecialMessage("command.toolong",
+                builder.makeMessage("I only understand one and two word commands."));
+        builder.setSpecialMessage("command.unknown.one", _am("I don't know how to \"%1\"."));
+        builder.setSpecialMessage("command.unknown.two", _am("I don't know how to \"%1 %2\"."));
+        builder.setPrompt("? ");
+
+        /* Basic commands */
+        final Term vQuit = makeTerm("quit", "quit");
+        final Message mFinal = builder.makeMessage("Hope you enjoyed your game.");
+        builder.makeAction(vQuit, null, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                mFinal.println(game.messageOut);
+                game.parser.setExit(true);
+            }
+        });
+
+        final Term vLook = makeTerm("look", "look");
+        builder.makeAction(vLook, null, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                game.thePlayer.lookAround();
+            }
+        });
+
+        /* Rooms and paths */
+        final Term vMove = makeTerm("move", "go", "move", "walk");
+        final Term vNorth = makeTerm("north", "north");
+        final Term vSouth = makeTerm("south", "south");
+        final Term vEast = makeTerm("east", "east");
+        final Term vWest = makeTerm("west", "west");
+        final Term vIn = makeTerm("in", "in");
+        final Term vDirect = makeTerm("direction", "north", "south", "east", "west", "in");
+
+        /* The random choices for the rooms and objects are made here, in
+         * order, so the regions built in parallel below use none.
+         */
+        int[] inTo = new int[nRooms];
+        for (int i = 0; i < nRooms; ++i) {
+            inTo[i] = (rnd.nextInt(8) == 0) ? rnd.nextInt(nRooms) : -1;
+        }
+        String[] nouns = new String[nRooms * nObjects];
+        for (int k = 0; k < nouns.length; ++k) {
+            nouns[k] = randomWord();
+            wordMap.put(nouns[k], null);
+        }
+        final Room[] rooms = new Room[nRooms];
+        Word[] nounWords = new Word[nouns.length];
+        buildRegions(rooms, nouns, nounWords);
+
+        int width = (int) Math.ceil(Math.sqrt(nRooms));
+        for (int i = 0; i < nRooms; ++i) {
+            if (i % width != width - 1 && i + 1 < nRooms) {
+                builder.makePath(vEast, rooms[i], rooms[i + 1]);
+                builder.makePath(vWest, rooms[i + 1], rooms[i]);
+            }
+            if (i + width < nRooms) {
+                builder.makePath(vSouth, rooms[i], rooms[i + width]);
+                builder.makePath(vNorth, rooms[i + width], rooms[i]);
+            }
+            if (inTo[i] >= 0)
+                builder.makePath(vIn, rooms[i], rooms[inTo[i]]);
+        }
+
+        final EventType playerMoved = EventType.makeNewEventType("player.moved");
+        final Message mCantMove = _am("I don't know how to %1 %2 from here.");
+        builder.makeAction(vMove, vDirect, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                Room from = game.thePlayer.getLocation();
+                if (game.thePlayer.moveOnPath(w2))
+                    queuePlayerMovedEvent(game, playerMoved, from, game.thePlayer.getLocation());
+                else
+                    mCantMove.println(game.messageOut, w1, w2);
+            }
+        });
+        eventHandlers.add(new AbstractEventHandler(playerMoved) {
+            @Override public void handle(Game game, Event evt) {
+                game.thePlayer.lookAround();
+            }
+        });
+
+        /* Objects, each with its own word, and the commands that use them. */
+        final Term vObjects = builder.makeTerm("objects");
+        for (int k = 0; k < nouns.length; ++k) {
+            wordMap.put(nouns[k], nounWords[k]);
+            vObjects.addWord(nounWords[k]);
+        }
+
+        final Term vGet = makeTerm("get", "get", "take");
+        final Term vDrop = makeTerm("drop", "drop");
+        final Term vExamine = makeTerm("examine", "examine");
+        final Term vInventory = makeTerm("inventory", "inventory");
+        final Message mNowCarrying = _am("You are now carrying %1.");
+        final Message mCantFind = _am("I can't find %1 here.");
+        final Message mDropped = _am("You have dropped %1.");
+        final Message mNotCarrying = _am("You are not carrying %1.");
+        final Message mNothing = builder.makeMessage("You are not carrying anything.");
+        final Message mCarrying = builder.makeMessage("You are carrying:");
+
+        builder.makeAction(vGet, vObjects, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                GameObject obj = findObject(game, w2);
+                if (game.thePlayer.getLocation().contains(obj)) {
+                    game.thePlayer.getLocation().removeObject(obj);
+                    game.thePlayer.addObject(obj);
+                    mNowCarrying.println(game.messageOut, obj.getInventoryDesc().getString());
+                } else {
+                    mCantFind.println(game.messageOut, w2);
+                }
+            }
+        });
+        builder.makeAction(vDrop, vObjects, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                GameObject obj = findObject(game, w2);
+                if (game.thePlayer.contains(obj)) {
+                    game.thePlayer.removeObject(obj);
+                    game.thePlayer.getLocation().addObject(obj);
+                    mDropped.println(game.messageOut, obj.getInventoryDesc().getString());
+                } else {
+                    mNotCarrying.println(game.messageOut, w2);
+                }
+            }
+        });
+        builder.makeAction(vExamine, vObjects, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                GameObject obj = findObject(game, w2);
+                if (game.thePlayer.contains(obj) || game.thePlayer.getLocation().contains(obj))
+                    obj.getLongDesc().println(game.messageOut);
+                else
+                    mCantFind.println(game.messageOut, w2);
+            }
+        });
+        builder.makeAction(vInventory, null, 0, null, new ActionMethod() {
+            @Override public void doAction(Game game, Word w1, Word w2) {
+                if (game.thePlayer.getContents().isEmpty()) {
+                    mNothing.println(game.messageOut);
+                    return;
+                }
+                mCarrying.println(game.messageOut);
+                for (GameObject obj : game.thePlayer.getContents()) {
+                    obj.getInventoryDesc().println(game.messageOut);
+                }
+            }
+        });
+
+        /* Extra verbs. Every other verb takes an object and every third
+         * verb has a second, higher priority, action that is only valid
+         * when the player is carrying something.
+         */
+        final ValidMethod carrying = new ValidMethod() {
+            @Override public boolean isValid(Game game, Word w1, Word w2) {
+                return !game.thePlayer.getContents().isEmpty();
+            }
+        };
+        final Message mVerb1 = _am("You %1 enthusiastically.");
+        final Message mVerb2 = _am("You %1 the %2, but nothing happens.");
+        final Message mVerbCarrying = _am("You can't %1 while you are carrying things.");
+        for (int i = 0; i < nActions; ++i) {
+            String verb = randomWord();
+            Term t = makeTerm(verb, verb);
+            Term t2 = (i % 2 == 0) ? null : vObjects;
+            builder.makeAction(t, t2, 0, null, new ActionMethod() {
+                @Override public void doAction(Game game, Word w1, Word w2) {
+                    if (w2 == null)
+                        mVerb1.println(game.messageOut, w1);
+                    else
+                        mVerb2.println(game.messageOut, w1, w2);
+                }
+            });
+            if (i % 3 == 0) {
+                builder.makeAction(t, t2, 10, carrying, new ActionMethod() {
+                    @Override public void doAction(Game game, Word w1, Word w2) {
+                        mVerbCarrying.println(game.messageOut, w1);
+                    }
+                });
+            }
+        }
+
+        /* Pad the vocabulary with words that have no actions. */
+        Term padding = null;
+        for (int i = 0; wordMap.size() < nWords; ++i) {
+            if (i % PADDING_TERM_SIZE == 0)
+                padding = builder.makeTerm("padding" + i / PADDING_TERM_SIZE);
+            padding.addWord(makeWord(randomWord()));
+        }
+
+        /* Extra event handlers. Each one watches a room, half of them on
+         * every command and half of them when the player moves.
+         */
+        EventType commandExec = EventType.getInstance(CommandParser.COMMAND_EXEC_EVENT);
+        final Message mWatched = builder.makeCycleMessage(
+                builder.makeMessage("You feel that you are being watched."),
+                builder.makeMessage("Something rustles in the corner."));
+        for (int i = 0; i < nHandlers; ++i) {
+            final Room watched = rooms[rnd.nextInt(nRooms)];
+            eventHandlers.add(new AbstractEventHandler((i % 2 == 0) ? commandExec : playerMoved) {
+                @Override public void handle(Game game, Event evt) {
+                    if (game.thePlayer.getLocation() == watched)
+                        mWatched.println(game.messageOut);
+                }
+            });
+        }
+
+        /* Create and position player. */
+        builder.makePlayer("You");
+        final Room start = rooms[0];
+        final Message mIntro = builder.makeMessage("Welcome to a generated world of "
+                + nRooms + " rooms.");
+        eventHandlers.add(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_INIT_EVENT)) {
+            @Override public void handle(Game game, Event evt) {
+                mIntro.println(game.messageOut);
+                game.thePlayer.apportTo(start);
+                game.thePlayer.lookAround();
+            }
+        });
+
+        Game game = builder.buildComplete();
+
+        for (EventHandler eh : eventHandlers) {
+            game.parser.addHandler(eh);
+        }
+
+        rnd = null;
+        wordMap = null;
+        return game;
+    }
+}
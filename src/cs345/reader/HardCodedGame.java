@@ -12,6 +12,7 @@ import java.io.*;
 import java.util.*;
 
 import cs345.game.*;
+import cs345.interpret.*;
 import cs345.message.Message;
 import cs345.message.MessageFormatter;
 
@@ -90,49 +91,21 @@ public class HardCodedGame implements GameDescription {
         Message msg = messageMap.get(smsg);
         if (msg != null)
             return msg;
-        /* At this point scan the message looking for % markers.
-         * A %n (n in 1 .. 9) indicates that an argument is to be
-         * substituted at this point.
-         * A %% substitutes a percent sign.
-         * 
-         * XXX This does not allow for more than 9 arguments other niceties.
-         */
-        List<Message> msgParts = new ArrayList<Message>();
-        int b = 0;
-        for (int i = 0; i < smsg.length(); ++i) {
-            if (smsg.charAt(i) != '%')
-                continue;
-            /* Found a % sign. Insert substitution.
-             * XXX No check for exceeding string length, etc. is made.
-             */
-            msgParts.add(_m(smsg.substring(b, i)));
-            i += 1;
-            b = i + 1;
-            char indicator = smsg.charAt(i);
-            if (indicator == '%')
-                msgParts.add(_m("%"));
-            else
-                msgParts.add(builder.makeArgMessage(indicator - '1'));
-        }
-        if (b < smsg.length())
-            msgParts.add(_m(smsg.substring(b, smsg.length())));
-        msg = builder.makeMessage(msgParts.toArray(new Message[msgParts.size()]));
+        /* The builder compiles the %n markers in the message. */
+        msg = builder.makeTemplateMessage(smsg);
+        messageMap.put(smsg, msg);
         return msg;
     }
     
     /**
-     * This method locates an object by name in allObjects.
+     * This method locates the object a word designates, preferring one the
+     * player can reach.
      * @param game the game object for the game
      * @param w a word designating the object
      * @return the found object or null if no object was found.
      */
     private static GameObject findObject(Game game, Word w) {
-        for (GameObject it : game.allObjects) {
-            if (it.match(w)) {
-                return it;
-            }
-        }
-        return null;
+        return game.objects.resolve(w, game.thePlayer);
     }
     
     @Override public Game build(InputStream in, MessageFormatter out) {
@@ -638,12 +611,16 @@ public class HardCodedGame implements GameDescription {
         /* Call the builder to finish the build. */
         Game result = builder.buildComplete();
 
-        /* Send the player to the starting location. */
-        result.thePlayer.startAt(rBalcony);
-        mWelcome.println(result.messageOut);
-        result.messageOut.println();
-        result.thePlayer.lookAround();
-        result.messageOut.startLine();
+        /* When the game starts, send the player to the starting location. */
+        result.parser.addHandler(new AbstractEventHandler(EventType.getInstance(CommandParser.GAME_INIT_EVENT)) {
+            @Override public void handle(Game game, Event evt) {
+                game.thePlayer.startAt(rBalcony);
+                mWelcome.println(game.messageOut);
+                game.messageOut.println();
+                game.thePlayer.lookAround();
+                game.messageOut.startLine();
+            }
+        });
         
         return result;
     }
@@ -0,0 +1,876 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cs345.game.*;
+import cs345.message.AbstractMsg;
+import cs345.message.Message;
+import cs345.message.MessageFormatter;
+import cs345.message.NullMessageFormatter;
+
+/**
+ * This class compiles a game file into a world image, a binary form of the
+ * game that is loaded without reading the game file again, and builds
+ * games from world images.
+ *
+ * Compiling reads the game file with FileGame and writes out what was
+ * built: the words, the Terms as the numbers of their words, the messages,
+ * the rooms, objects and player, the paths between the rooms and the
+ * state each room and object starts in. Actions are code made from action
+ * statements, so the image holds the action statements, already split into
+ * tokens, and FileGame makes the actions again when the image is loaded.
+ *
+ * An image is loaded by mapping the file into memory. The words, messages
+ * and containers are made by the same calls to the Builder, in the same
+ * order, as when the game file is read, so GameSnapshots of either can be
+ * restored in the other. Nothing is looked up by name except what the
+ * actions use. When the Builder is a GameBuilder the Terms and the paths
+ * are given to it as they are stored, by GameBuilder.makeTerm and
+ * makePaths: the numbers of the words of each Term are those buildComplete
+ * gives them, so the Terms are compiled without looking up their words,
+ * and the paths out of each room are taken as arrays instead of being
+ * added one at a time. Any other Builder is given the same calls to
+ * makeTerm, addWord and makePath as when the game file is read.
+ *
+ * Only the text of plain messages is lazy. That text is most of a large
+ * world, and it is not read when the image is loaded: each message keeps
+ * its place in the mapped file and reads its text the first time it is
+ * shown, so text that is never shown stays in the pages of the file,
+ * which processes that load the same image share. Everything else is made
+ * on the heap of each process when the image is loaded: the words, Terms,
+ * rooms, objects and paths, and the indexes GameBuilder builds from them,
+ * the Vocabulary, ActionTable, ObjectIndex and RoomGraph. Those are not
+ * in the image. Loading an image saves parsing the text, looking up names
+ * and adding words to Terms and paths to rooms one at a time; it does not
+ * save building the game or making the actions from their statements.
+ *
+ * An image is made by
+ *
+ *   java -cp CLASSPATH cs345.reader.WorldImage worlds/tour.game worlds/tour.img
+ *
+ * and played, through GameMain, with the image as the second argument or
+ * the system property game.image:
+ *
+ *   java -cp CLASSPATH cs345.GameMain WorldImage worlds/tour.img
+ *
+ * An image starts with the bytes 'G', 'I' and the version. Then come the
+ * strings, all stored once: the number of strings, the offset of each
+ * string and the end of the last, as big endian ints, and the UTF-8 bytes.
+ * Then, with everything referred to by its position in the order it was
+ * made, come the prompt, the words, the terms, the messages, the special
+ * messages, the containers, the state and contents of each container, the
+ * paths, the player and the action statements. A Term is the number of
+ * its words and their positions, in the order they were added. The paths
+ * are stored as a compressed sparse row: for each container the position
+ * of its first path, and then the end of the last, followed by the Term
+ * and room of every path. After the strings, numbers are written in as
+ * few bytes as they need, see writeNumber, which keeps the image smaller
+ * than the game file.
+ */
+public class WorldImage implements GameDescription {
+
+    /** The system property naming the world image. */
+    public static final String IMAGE_PROPERTY = "game.image";
+
+    private static final byte MAGIC1 = 'G';
+    private static final byte MAGIC2 = 'I';
+    private static final byte VERSION = 2;
+
+    /* The kinds of message. */
+    private static final byte STRING = 0;
+    private static final byte TEMPLATE = 1;
+    private static final byte JOIN = 2;
+    private static final byte SELECT = 3;
+    private static final byte CYCLE = 4;
+    private static final byte ARG = 5;
+
+    /* The kinds of container. */
+    private static final byte ROOM = 0;
+    private static final byte OBJECT = 1;
+    private static final byte PLAYER = 2;
+
+    /* The name GameBuilder gives the noise Term, compared by identity. */
+    private static final String NOISE = "noisewords";
+
+    private final Builder builder;
+    private final String fileName;
+
+    /* The state of a load. */
+    private ByteBuffer image;
+    private int stringCount;
+    private int stringIndex;
+    private int stringData;
+
+    /**
+     * Create a description that loads the image named by the system
+     * property game.image.
+     *
+     * @param builder the Builder used to build the game
+     */
+    public WorldImage(Builder builder) {
+        this(builder, System.getProperty(IMAGE_PROPERTY));
+    }
+
+    /**
+     * Create a description that loads a world image.
+     *
+     * @param builder the Builder used to build the game
+     * @param fileName the name of the image file
+     */
+    public WorldImage(Builder builder, String fileName) {
+        this.builder = builder;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Compile a game file into a world image.
+     *
+     * @param args the name of the game file and of the image to write
+     * @throws IOException if a file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java ... cs345.reader.WorldImage GameFile ImageFile");
+            System.exit(1);
+        }
+        compile(args[0], args[1]);
+    }
+
+    /**
+     * Compile a game file into a world image.
+     *
+     * @param gameFile the name of the game file
+     * @param imageFile the name of the image to write
+     * @throws IOException if a file can't be read or written
+     * @throws IllegalArgumentException if the game file has an error
+     */
+    public static void compile(String gameFile, String imageFile) throws IOException {
+        Reader r = new InputStreamReader(new FileInputStream(gameFile), StandardCharsets.UTF_8);
+        try {
+            OutputStream out = new FileOutputStream(imageFile);
+            try {
+                compile(r, gameFile, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Compile a game description read from a Reader into a world image.
+     *
+     * @param reader the Reader for the description
+     * @param name the name of the description, for error messages
+     * @param out where the image is written
+     * @throws IOException if the description can't be read or the image
+     *         can't be written
+     * @throws IllegalArgumentException if the description has an error
+     */
+    public static void compile(Reader reader, String name, OutputStream out) throws IOException {
+        Recorder rec = new Recorder(new GameBuilder());
+        FileGame file = new FileGame(rec, null);
+        rec.reading = file;
+        file.script = new ArrayList<FileGame.Statement>();
+        file.begin(name, new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+        file.parse(reader);
+
+        // Keep the names the actions use; FileGame forgets them when done.
+        Set<String> used = new HashSet<String>();
+        for (FileGame.Statement st : file.script) {
+            used.addAll(Arrays.asList(st.tok));
+        }
+        Map<Object, String> names = new IdentityHashMap<Object, String>();
+        file.usedNames(used, names);
+        Container start = file.start;
+        Message intro = file.intro;
+        file.finish();
+
+        new ImageWriter(rec, names).write(start, intro, file.script, out);
+    }
+
+    /**
+     * Build the game in the image.
+     *
+     * @throws IllegalArgumentException if the image is damaged or has an
+     *         error
+     * @throws UncheckedIOException if the image can't be read
+     */
+    @Override public Game build(InputStream in, MessageFormatter out) {
+        if (fileName == null)
+            throw new IllegalStateException("No world image, set " + IMAGE_PROPERTY);
+        try {
+            RandomAccessFile f = new RandomAccessFile(fileName, "r");
+            try {
+                FileChannel ch = f.getChannel();
+                return build(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), fileName, in, out);
+            } finally {
+                f.close();
+            }
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    /**
+     * Build a game from a world image held in a buffer. The buffer must
+     * not be changed while the game is used, since messages read their
+     * text from it.
+     *
+     * @param buffer the image, from its position to its limit
+     * @param name the name of the image, for error messages
+     * @param in an InputStream that will be the input for the game
+     * @param out a MessageFormatter that will be the output for the game
+     * @return the constructed Game
+     * @throws IllegalArgumentException if the image is damaged or has an
+     *         error
+     */
+    public Game build(ByteBuffer buffer, String name, InputStream in, MessageFormatter out) {
+        image = buffer.slice();
+        try {
+            return load(name, in, out);
+        } catch (BufferUnderflowException exc) {
+            throw new IllegalArgumentException(name + ": world image is truncated", exc);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException exc) {
+            throw new IllegalArgumentException(name + ": world image is damaged", exc);
+        } finally {
+            image = null;
+        }
+    }
+
+    private Game load(String name, InputStream in, MessageFormatter out) {
+        if (image.get() != MAGIC1 || image.get() != MAGIC2)
+            throw new IllegalArgumentException(name + ": not a world image");
+        int version = image.get();
+        if (version != VERSION)
+            throw new IllegalArgumentException(name + ": unknown world image version " + version);
+        stringCount = image.getInt();
+        stringIndex = image.position();
+        stringData = stringIndex + 4 * (stringCount + 1);
+        if (stringCount < 0 || stringData > image.limit()
+                || stringData + image.getInt(stringData - 4) > image.limit())
+            throw new BufferUnderflowException();
+        image.position(stringData + image.getInt(stringData - 4));
+
+        FileGame file = new FileGame(builder, null);
+        file.begin(name, in, out);
+        // A GameBuilder takes the Terms and exits as they are stored.
+        GameBuilder gb = (builder instanceof GameBuilder) ? (GameBuilder) builder : null;
+        String prompt = string(number());
+        if (prompt != null)
+            builder.setPrompt(prompt);
+
+        MatchType[] matches = MatchType.values();
+        Word[] words = new Word[number()];
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = builder.makeWord(string(number()), matches[image.get()]);
+            for (int n = number(); n > 0; --n) {
+                words[i].addAbbreviation(string(number()));
+            }
+        }
+
+        Term[] terms = new Term[number()];
+        for (int i = 0; i < terms.length; ++i) {
+            String tname = string(number());
+            boolean used = image.get() != 0;
+            if (tname.equals(NOISE))
+                tname = NOISE;
+            int[] ids = new int[number()];
+            for (int j = 0; j < ids.length; ++j) {
+                ids[j] = number();
+            }
+            Term t;
+            if (gb != null) {
+                t = gb.makeTerm(tname, words, ids);
+            } else {
+                t = builder.makeTerm(tname);
+                for (int id : ids) {
+                    t.addWord(words[id]);
+                }
+            }
+            if (used)
+                file.named(tname).term = t;
+            terms[i] = t;
+        }
+
+        Message[] messages = new Message[number()];
+        for (int i = 0; i < messages.length; ++i) {
+            byte kind = image.get();
+            String mname = string(number());
+            switch (kind) {
+            case STRING: {
+                int s = number();
+                int start = image.getInt(stringIndex + 4 * s);
+                int end = image.getInt(stringIndex + 4 * s + 4);
+                messages[i] = new ImageMsg(image, stringData + start, end - start);
+                break;
+            }
+            case TEMPLATE:
+                messages[i] = builder.makeTemplateMessage(string(number()));
+                break;
+            case ARG:
+                messages[i] = builder.makeArgMessage(number());
+                break;
+            case JOIN:
+                messages[i] = builder.makeMessage(messages(messages));
+                break;
+            case SELECT:
+                messages[i] = builder.makeSelectMessage(messages(messages));
+                break;
+            case CYCLE:
+                messages[i] = builder.makeCycleMessage(messages(messages));
+                break;
+            default:
+                throw new IllegalArgumentException(name + ": bad message kind " + kind);
+            }
+            if (mname != null)
+                file.named(mname).message = messages[i];
+        }
+
+        for (int n = number(); n > 0; --n) {
+            builder.setSpecialMessage(string(number()), messages[number()]);
+        }
+
+        Container[] containers = new Container[number()];
+        for (int i = 0; i < containers.length; ++i) {
+            byte kind = image.get();
+            boolean used = image.get() != 0;
+            String cname = string(number());
+            switch (kind) {
+            case ROOM: {
+                Room r = builder.makeRoom(cname, messages[number()], messages[number()]);
+                if (used)
+                    file.named(cname).room = r;
+                containers[i] = r;
+                break;
+            }
+            case OBJECT: {
+                GameObject obj = builder.makeGameObject(cname, terms[number()],
+                        messages[number()], messages[number()], messages[number()]);
+                if (used)
+                    file.named(cname).object = obj;
+                containers[i] = obj;
+                break;
+            }
+            case PLAYER:
+                file.player = builder.makePlayer(cname);
+                containers[i] = file.player;
+                break;
+            default:
+                throw new IllegalArgumentException(name + ": bad container kind " + kind);
+            }
+        }
+
+        for (Container c : containers) {
+            int state = number();
+            if (state != 0)
+                c.setState(state);
+            for (int n = number(); n > 0; --n) {
+                c.addObject((GameObject) containers[number()]);
+            }
+        }
+
+        int[] first = new int[containers.length + 1];
+        for (int i = 0; i < first.length; ++i) {
+            first[i] = number();
+            if ((i == 0) ? first[i] != 0 : first[i] < first[i - 1])
+                throw new IllegalArgumentException(name + ": bad paths in world image");
+        }
+        for (int i = 0; i < containers.length; ++i) {
+            int n = first[i + 1] - first[i];
+            if (n == 0)
+                continue;
+            if (!(containers[i] instanceof Room))
+                throw new IllegalArgumentException(name + ": bad paths in world image");
+            Term[] ts = new Term[n];
+            Room[] to = new Room[n];
+            for (int j = 0; j < n; ++j) {
+                ts[j] = terms[number()];
+                to[j] = (Room) containers[number()];
+            }
+            if (gb != null) {
+                gb.makePaths((Room) containers[i], ts, to);
+            } else {
+                for (int j = 0; j < n; ++j) {
+                    builder.makePath(ts[j], (Room) containers[i], to[j]);
+                }
+            }
+        }
+
+        file.start = (Room) containers[number()];
+        int intro = number();
+        file.intro = (intro < 0) ? null : messages[intro];
+
+        for (int n = number(); n > 0; --n) {
+            int lineNo = number();
+            String[] tok = new String[number()];
+            boolean[] quoted = new boolean[tok.length];
+            for (int i = 0; i < tok.length; ++i) {
+                tok[i] = string(number());
+                quoted[i] = image.get() != 0;
+            }
+            file.replay(new FileGame.Statement(lineNo, tok, quoted));
+        }
+        if (image.hasRemaining())
+            throw new IllegalArgumentException(name + ": extra data in world image");
+        return file.finish();
+    }
+
+    /* Read a number written by writeNumber. */
+    private int number() {
+        int n = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = image.get();
+            n |= (b & 0x7f) << shift;
+            if (b >= 0)
+                return (n >>> 1) ^ -(n & 1);
+        }
+        throw new IndexOutOfBoundsException("number too long");
+    }
+
+    /*
+     * Write a number in as few bytes as it needs, 7 bits to a byte, the
+     * low bits first, with the top bit set in all but the last byte. The
+     * sign is moved to the lowest bit first, so -1 takes one byte.
+     */
+    private static void writeNumber(DataOutputStream out, int n) throws IOException {
+        int z = (n << 1) ^ (n >> 31);
+        while ((z & ~0x7f) != 0) {
+            out.writeByte((z & 0x7f) | 0x80);
+            z >>>= 7;
+        }
+        out.writeByte(z);
+    }
+
+    private Message[] messages(Message[] messages) {
+        Message[] parts = new Message[number()];
+        for (int i = 0; i < parts.length; ++i) {
+            parts[i] = messages[number()];
+        }
+        return parts;
+    }
+
+    private String string(int id) {
+        if (id < 0)
+            return null;
+        if (id >= stringCount)
+            throw new IndexOutOfBoundsException("string " + id);
+        int start = image.getInt(stringIndex + 4 * id);
+        int end = image.getInt(stringIndex + 4 * id + 4);
+        return decode(image, stringData + start, end - start);
+    }
+
+    private static String decode(ByteBuffer image, int start, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer b = image.duplicate();
+        b.position(start);
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * A message whose text stays in the image until it is first used.
+     * Messages are shared by the sessions of a game, so the text may be
+     * read by more than one thread; they all read the same text.
+     */
+    private static class ImageMsg extends AbstractMsg {
+        private final ByteBuffer image;
+        private final int start;
+        private final int length;
+        private volatile String text;
+
+        ImageMsg(ByteBuffer image, int start, int length) {
+            this.image = image;
+            this.start = start;
+            this.length = length;
+        }
+
+        private String text() {
+            String t = text;
+            if (t == null) {
+                t = decode(image, start, length);
+                text = t;
+            }
+            return t;
+        }
+
+        @Override
+        public String getAltString(int alt, Object... args) {
+            return text();
+        }
+
+        @Override
+        public void renderTo(StringBuilder sink, int alt, Object... args) {
+            sink.append(text());
+        }
+    }
+
+    /* A message as it was made, kept by the Recorder. */
+    private static class Made {
+        final byte kind;
+        final String text;
+        final int index;
+        final Message[] parts;
+
+        Made(byte kind, String text, int index, Message[] parts) {
+            this.kind = kind;
+            this.text = text;
+            this.index = index;
+            this.parts = parts;
+        }
+    }
+
+    /* A container as it was made, kept by the Recorder. */
+    private static class Thing {
+        final byte kind;
+        final Container container;
+        final String name;
+        final Term term;
+        final Message[] msgs;
+
+        Thing(byte kind, Container container, String name, Term term, Message... msgs) {
+            this.kind = kind;
+            this.container = container;
+            this.name = name;
+            this.term = term;
+            this.msgs = msgs;
+        }
+    }
+
+    /*
+     * A Builder that passes everything on to another Builder and keeps what
+     * was made, in order, for the image. Messages made for the actions
+     * aren't kept, since the actions are made again when the image is
+     * loaded.
+     */
+    private static class Recorder implements Builder {
+        final Builder builder;
+        FileGame reading;
+        final List<Word> words = new ArrayList<Word>();
+        final List<Term> terms = new ArrayList<Term>();
+        final List<String> termNames = new ArrayList<String>();
+        final List<Message> messages = new ArrayList<Message>();
+        final List<Made> made = new ArrayList<Made>();
+        final List<Thing> things = new ArrayList<Thing>();
+        final Map<Room, List<Object[]>> paths = new IdentityHashMap<Room, List<Object[]>>();
+        final List<String> specialNames = new ArrayList<String>();
+        final List<Message> specials = new ArrayList<Message>();
+        String prompt;
+
+        Recorder(Builder builder) {
+            this.builder = builder;
+        }
+
+        private Message keep(Message msg, byte kind, String text, int index, Message[] parts) {
+            if (!reading.inAction()) {
+                messages.add(msg);
+                made.add(new Made(kind, text, index, parts));
+            }
+            return msg;
+        }
+
+        @Override public void startBuild(InputStream in, MessageFormatter out) {
+            builder.startBuild(in, out);
+        }
+
+        @Override public Game buildComplete() {
+            return builder.buildComplete();
+        }
+
+        @Override public Builder region() {
+            throw new UnsupportedOperationException("A world image can't be built in regions");
+        }
+
+        @Override public Word makeWord(String word, MatchType match) {
+            Word w = builder.makeWord(word, match);
+            words.add(w);
+            return w;
+        }
+
+        @Override public Term makeTerm(String name) {
+            Term t = builder.makeTerm(name);
+            terms.add(t);
+            termNames.add(name);
+            return t;
+        }
+
+        @Override public Room makeRoom(String name, Message desc, Message brief) {
+            Room r = builder.makeRoom(name, desc, brief);
+            things.add(new Thing(ROOM, r, name, null, desc, brief));
+            return r;
+        }
+
+        @Override public void makePath(Term vocab, Room from, Room to) {
+            builder.makePath(vocab, from, to);
+            List<Object[]> out = paths.get(from);
+            if (out == null) {
+                out = new ArrayList<Object[]>(4);
+                paths.put(from, out);
+            }
+            // As in the room, a second path for a Term replaces the first.
+            for (Object[] p : out) {
+                if (p[0].equals(vocab)) {
+                    p[1] = to;
+                    return;
+                }
+            }
+            out.add(new Object[] { vocab, to });
+        }
+
+        @Override public void makeAction(Term term1, Term term2, int priority,
+                ValidMethod valid, ActionMethod action) {
+            builder.makeAction(term1, term2, priority, valid, action);
+        }
+
+        @Override public Player makePlayer(String name) {
+            Player p = builder.makePlayer(name);
+            things.add(new Thing(PLAYER, p, name, null));
+            return p;
+        }
+
+        @Override public GameObject makeGameObject(String name, Term vocab,
+                Message inventoryDesc, Message hereIsDesc, Message longDesc) {
+            GameObject obj = builder.makeGameObject(name, vocab, inventoryDesc, hereIsDesc, longDesc);
+            things.add(new Thing(OBJECT, obj, name, vocab, inventoryDesc, hereIsDesc, longDesc));
+            return obj;
+        }
+
+        @Override public Message makeMessage(String msg) {
+            return keep(builder.makeMessage(msg), STRING, msg, 0, null);
+        }
+
+        @Override public Message makeMessage(Message... msgs) {
+            return keep(builder.makeMessage(msgs), JOIN, null, 0, msgs);
+        }
+
+        @Override public Message makeArgMessage(int index) {
+            return keep(builder.makeArgMessage(index), ARG, null, index, null);
+        }
+
+        @Override public Message makeTemplateMessage(String template) {
+            return keep(builder.makeTemplateMessage(template), TEMPLATE, template, 0, null);
+        }
+
+        @Override public Message makeSelectMessage(Message... msgs) {
+            return keep(builder.makeSelectMessage(msgs), SELECT, null, 0, msgs);
+        }
+
+        @Override public Message makeCycleMessage(Message... msgs) {
+            return keep(builder.makeCycleMessage(msgs), CYCLE, null, 0, msgs);
+        }
+
+        @Override public void setSpecialMessage(String name, Message msg) {
+            builder.setSpecialMessage(name, msg);
+            specialNames.add(name);
+            specials.add(msg);
+        }
+
+        @Override public void setPrompt(String prompt) {
+            builder.setPrompt(prompt);
+            this.prompt = prompt;
+        }
+    }
+
+    /* Writes what a Recorder kept. */
+    private static class ImageWriter {
+        private final Recorder rec;
+        private final Map<Object, String> names;
+        private final Map<Object, Integer> ids = new IdentityHashMap<Object, Integer>();
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        private final List<Integer> offsets = new ArrayList<Integer>();
+
+        ImageWriter(Recorder rec, Map<Object, String> names) {
+            this.rec = rec;
+            this.names = names;
+            number(rec.words);
+            number(rec.terms);
+            number(rec.messages);
+            for (int i = 0; i < rec.things.size(); ++i) {
+                ids.put(rec.things.get(i).container, i);
+            }
+        }
+
+        private void number(List<?> list) {
+            for (int i = 0; i < list.size(); ++i) {
+                ids.put(list.get(i), i);
+            }
+        }
+
+        private int id(Object o) {
+            if (o == null)
+                return -1;
+            Integer id = ids.get(o);
+            if (id == null)
+                throw new IllegalStateException("Not made by the Builder: " + o);
+            return id;
+        }
+
+        private int string(String s) {
+            if (s == null)
+                return -1;
+            Integer id = strings.get(s);
+            if (id == null) {
+                id = offsets.size();
+                strings.put(s, id);
+                offsets.add(text.size());
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                text.write(b, 0, b.length);
+            }
+            return id;
+        }
+
+        void write(Container start, Message intro, List<FileGame.Statement> script,
+                OutputStream out) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bytes);
+
+            writeNumber(body, string(rec.prompt));
+
+            writeNumber(body, rec.words.size());
+            for (Word w : rec.words) {
+                writeNumber(body, string(w.getWord()));
+                body.writeByte(w.getMatch().ordinal());
+                List<String> abbrevs = ((Words) w).getwordAbbs();
+                writeNumber(body, abbrevs.size());
+                for (String a : abbrevs) {
+                    writeNumber(body, string(a));
+                }
+            }
+
+            writeNumber(body, rec.terms.size());
+            for (int i = 0; i < rec.terms.size(); ++i) {
+                Term t = rec.terms.get(i);
+                writeNumber(body, string(rec.termNames.get(i)));
+                body.writeByte(names.containsKey(t) ? 1 : 0);
+                List<Word> words = t.getWords();
+                writeNumber(body, words.size());
+                for (Word w : words) {
+                    writeNumber(body, id(w));
+                }
+            }
+
+            writeNumber(body, rec.messages.size());
+            for (int i = 0; i < rec.messages.size(); ++i) {
+                Made m = rec.made.get(i);
+                body.writeByte(m.kind);
+                writeNumber(body, string(names.get(rec.messages.get(i))));
+                switch (m.kind) {
+                case STRING:
+                case TEMPLATE:
+                    writeNumber(body, string(m.text));
+                    break;
+                case ARG:
+                    writeNumber(body, m.index);
+                    break;
+                default:
+                    writeNumber(body, m.parts.length);
+                    for (Message part : m.parts) {
+                        writeNumber(body, id(part));
+                    }
+                }
+            }
+
+            writeNumber(body, rec.specials.size());
+            for (int i = 0; i < rec.specials.size(); ++i) {
+                writeNumber(body, string(rec.specialNames.get(i)));
+                writeNumber(body, id(rec.specials.get(i)));
+            }
+
+            writeNumber(body, rec.things.size());
+            for (Thing t : rec.things) {
+                body.writeByte(t.kind);
+                body.writeByte(names.containsKey(t.container) ? 1 : 0);
+                writeNumber(body, string(t.name));
+                if (t.term != null)
+                    writeNumber(body, id(t.term));
+                for (Message m : t.msgs) {
+                    writeNumber(body, id(m));
+                }
+            }
+            for (Thing t : rec.things) {
+                writeNumber(body, t.container.getState());
+                writeNumber(body, t.container.getContents().size());
+                for (GameObject obj : t.container.getContents()) {
+                    writeNumber(body, id(obj));
+                }
+            }
+            int paths = 0;
+            writeNumber(body, 0);
+            for (Thing t : rec.things) {
+                List<Object[]> exits = rec.paths.get(t.container);
+                paths += (exits == null) ? 0 : exits.size();
+                writeNumber(body, paths);
+            }
+            for (Thing t : rec.things) {
+                List<Object[]> exits = rec.paths.get(t.container);
+                if (exits == null)
+                    continue;
+                for (Object[] p : exits) {
+                    writeNumber(body, id(p[0]));
+                    writeNumber(body, id(p[1]));
+                }
+            }
+
+            writeNumber(body, id(start));
+            writeNumber(body, id(intro));
+
+            writeNumber(body, script.size());
+            for (FileGame.Statement st : script) {
+                writeNumber(body, st.lineNo);
+                writeNumber(body, st.tok.length);
+                for (int i = 0; i < st.tok.length; ++i) {
+                    writeNumber(body, string(st.tok[i]));
+                    body.writeByte(st.quoted[i] ? 1 : 0);
+                }
+            }
+            body.flush();
+
+            DataOutputStream head = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            head.writeByte(MAGIC1);
+            head.writeByte(MAGIC2);
+            head.writeByte(VERSION);
+            head.writeInt(offsets.size());
+            for (int off : offsets) {
+                head.writeInt(off);
+            }
+            head.writeInt(text.size());
+            text.writeTo(head);
+            bytes.writeTo(head);
+            head.flush();
+        }
+    }
+}
@@ -0,0 +1,686 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cs345.game.Game;
+import cs345.interpret.ParserMetrics;
+import cs345.interpret.ParserStats;
+import cs345.interpret.ScriptProfiler;
+
+/**
+ * This class is a server that hosts many game sessions in one process.
+ *
+ * The game is built once, as a template, when the server is created. Each
+ * connection to the server gets its own GameSession of that template,
+ * which is cheap to create. Connections are accepted by an acceptor thread
+ * and handed, round robin, to a small pool of worker threads. Each worker owns a Selector and does all the work for
+ * its connections: reading input, splitting it into lines, running the
+ * commands and writing the output. There is no thread per player, so a
+ * handful of threads can host thousands of sessions.
+ *
+ * With a journal, every session records its commands in a Journal. A worker
+ * runs the commands for all its connections that have input, syncs the
+ * journal once, then sends the output, so a player never sees the result
+ * of a command that could be lost. When the server starts, the sessions in
+ * the journal that weren't over are rebuilt. Each new connection is told
+ * its session id, and a player can take over a rebuilt session by entering
+ * "/resume ID" as the first line.
+ *
+ * A session that ends because its player disconnects, rather than by
+ * finishing the game, stays in the journal so that it can be resumed. To
+ * stop such sessions piling up across restarts, at most maxRecovered
+ * sessions are rebuilt, the newest ones, and a rebuilt session that isn't
+ * resumed within the recovered timeout of the server starting is dropped.
+ * Dropping a session writes its end record, so it is never rebuilt again.
+ *
+ * Usage:
+ *
+ *   java -cp CLASSPATH cs345.server.GameServer [-port N] [-workers N] [-journal DIR]
+ *           [-keep N] [-expire MINUTES] [-metrics] [-profile] GAMEDESCRIPTIONCLASS
+ *
+ *     -port N      the port to listen on, default 4345
+ *     -workers N   the number of worker threads, default the number of cores
+ *     -journal DIR record the sessions in a journal in DIR, default none
+ *     -keep N      the most sessions rebuilt from the journal, default 10000
+ *     -expire MINUTES
+ *                  drop rebuilt sessions not resumed in this time, default
+ *                  one day
+ *     -metrics     measure the parts of each command and publish the
+ *                  numbers with JMX as cs345:type=ParserStats,name=server
+ *     -profile     time every action, validator and event handler of the
+ *                  game, publish the report with JMX as
+ *                  cs345:type=ScriptProfiler,name=server and print it on exit
+ */
+public class GameServer {
+
+    public static final int DEF_PORT = 4345;
+
+    /** Default for the most sessions rebuilt from the journal. */
+    public static final int DEF_MAX_RECOVERED = 10000;
+
+    /** Default time, in milliseconds, to wait for a rebuilt session to be resumed. */
+    public static final long DEF_RECOVERED_TIMEOUT = 24L * 60 * 60 * 1000;
+
+    /** Longest input line accepted from a player, longer lines are discarded. */
+    public static final int MAX_LINE = 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String RESUME = "/resume ";
+
+    private final Game template;
+    private final ServerSocketChannel serverChannel;
+    private final Selector acceptSelector;
+    private final Worker[] workers;
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final Journal journal;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, GameSession> recovered = new ConcurrentHashMap<Long, GameSession>();
+    private volatile boolean running;
+    private Thread acceptor;
+    private long recoveredTimeout = DEF_RECOVERED_TIMEOUT;
+    private Timer expiry;
+
+    /**
+     * Create a server. The server is bound to the address but does not
+     * accept connections until start is called.
+     *
+     * @param gameDescName the name of the GameDescription class for the sessions
+     * @param address the address to listen on, port 0 picks a free port
+     * @param nWorkers the number of worker threads
+     * @throws IOException if the server socket can't be opened
+     * @throws IllegalArgumentException if the game description can't be loaded
+     */
+    public GameServer(String gameDescName, InetSocketAddress address, int nWorkers)
+            throws IOException {
+        this(gameDescName, address, nWorkers, null);
+    }
+
+    /**
+     * Create a server that records its sessions in a journal. The sessions
+     * already in the journal are rebuilt, written to a new segment as
+     * snapshots, and the old segments are deleted.
+     *
+     * @param gameDescName the name of the GameDescription class for the sessions
+     * @param address the address to listen on, port 0 picks a free port
+     * @param nWorkers the number of worker threads
+     * @param journalDir the directory for the journal or null for none
+     * @throws IOException if the server socket or the journal can't be opened
+     * @throws IllegalArgumentException if the game description can't be loaded
+     */
+    public GameServer(String gameDescName, InetSocketAddress address, int nWorkers,
+            File journalDir) throws IOException {
+        this(gameDescName, address, nWorkers, journalDir, DEF_MAX_RECOVERED);
+    }
+
+    /**
+     * Create a server that records its sessions in a journal and rebuilds
+     * at most maxRecovered of the sessions already in it, the newest. The
+     * older ones are dropped: their end records are written and they are
+     * never rebuilt again.
+     *
+     * @param gameDescName the name of the GameDescription class for the sessions
+     * @param address the address to listen on, port 0 picks a free port
+     * @param nWorkers the number of worker threads
+     * @param journalDir the directory for the journal or null for none
+     * @param maxRecovered the most sessions to rebuild
+     * @throws IOException if the server socket or the journal can't be opened
+     * @throws IllegalArgumentException if the game description can't be loaded
+     */
+    public GameServer(String gameDescName, InetSocketAddress address, int nWorkers,
+            File journalDir, int maxRecovered) throws IOException {
+        this.template = GameSession.buildTemplate(gameDescName);
+        if (journalDir == null) {
+            journal = null;
+        } else {
+            Map<Long, Journal.SessionLog> logs = Journal.recover(journalDir);
+            journal = new Journal(journalDir, Journal.DEF_SEGMENT_SIZE);
+            // The sessions are in the order they started, oldest first.
+            int drop = Math.max(0, logs.size() - Math.max(0, maxRecovered));
+            for (Map.Entry<Long, Journal.SessionLog> e : logs.entrySet()) {
+                long id = e.getKey();
+                nextId.set(Math.max(nextId.get(), id + 1));
+                if (drop > 0) {
+                    drop -= 1;
+                    journal.append(id, Journal.END, new byte[0]);
+                    continue;
+                }
+                GameSession session = GameSession.recover(template, e.getValue());
+                if (session.isOpen()) {
+                    session.attach(journal, id);
+                    session.writeSnapshot();
+                    recovered.put(id, session);
+                }
+            }
+            journal.sync();
+            journal.deleteOldSegments();
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(address, 4096);
+        serverChannel.configureBlocking(false);
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+        workers = new Worker[Math.max(1, nWorkers)];
+        for (int i = 0; i < workers.length; ++i) {
+            workers[i] = new Worker(Selector.open());
+        }
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of sessions currently connected
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * Set the metrics for the commands of every session: the sessions
+     * rebuilt from the journal and those made from now on.
+     *
+     * @param metrics the metrics or null for none
+     */
+    public void setMetrics(ParserMetrics metrics) {
+        template.parser.setMetrics(metrics);
+        for (GameSession session : recovered.values()) {
+            session.getGame().parser.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Profile the scripts of the game, see ScriptProfiler. The sessions
+     * share the Actions of the template, so only the handlers of the
+     * sessions rebuilt from the journal need setting.
+     *
+     * @param profiler the profiler
+     */
+    public void setProfiler(ScriptProfiler profiler) {
+        profiler.install(template);
+        for (GameSession session : recovered.values()) {
+            session.getGame().parser.setProfiler(profiler);
+        }
+    }
+
+    /**
+     * @return the number of sessions rebuilt from the journal that haven't
+     *         been resumed
+     */
+    public int getRecoveredCount() {
+        return recovered.size();
+    }
+
+    /**
+     * Set how long a session rebuilt from the journal waits to be resumed,
+     * counted from start. The sessions not resumed by then are dropped, see
+     * expireRecovered.
+     *
+     * @param millis the time in milliseconds, 0 or less to keep them until
+     *        the server stops
+     */
+    public void setRecoveredTimeout(long millis) {
+        recoveredTimeout = millis;
+    }
+
+    /**
+     * Drop the sessions rebuilt from the journal that haven't been resumed.
+     * Their end records are written, so they are never rebuilt again.
+     *
+     * @return the number of sessions dropped
+     * @throws IOException if the journal can't be written
+     */
+    public int expireRecovered() throws IOException {
+        int n = 0;
+        for (Long id : recovered.keySet()) {
+            // A player resuming the session at the same moment wins.
+            GameSession session = recovered.remove(id);
+            if (session != null) {
+                session.end();
+                n += 1;
+            }
+        }
+        if (n > 0)
+            journal.sync();
+        return n;
+    }
+
+    /**
+     * Start the acceptor and worker threads.
+     */
+    public void start() {
+        running = true;
+        if (!recovered.isEmpty() && recoveredTimeout > 0) {
+            expiry = new Timer("game-expiry", true);
+            expiry.schedule(new TimerTask() {
+                @Override public void run() {
+                    try {
+                        expireRecovered();
+                    } catch (IOException exc) {
+                        exc.printStackTrace();
+                    }
+                }
+            }, recoveredTimeout);
+        }
+        for (int i = 0; i < workers.length; ++i) {
+            Thread t = new Thread(workers[i], "game-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        acceptor = new Thread(new Runnable() {
+            @Override public void run() {
+                acceptLoop();
+            }
+        }, "game-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stop the server. All connections are closed.
+     */
+    public void stop() {
+        running = false;
+        if (expiry != null)
+            expiry.cancel();
+        try {
+            acceptSelector.close();
+            serverChannel.close();
+        } catch (IOException exc) {
+            // Nothing more can be done.
+        }
+        for (Worker w : workers) {
+            w.selector.wakeup();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException exc) {
+                exc.printStackTrace();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        try {
+            while (running) {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+                SocketChannel ch;
+                while ((ch = serverChannel.accept()) != null) {
+                    ch.configureBlocking(false);
+                    ch.socket().setTcpNoDelay(true);
+                    workers[next].add(ch);
+                    next = (next + 1) % workers.length;
+                }
+            }
+        } catch (ClosedSelectorException exc) {
+            // The server was stopped.
+        } catch (IOException exc) {
+            if (running)
+                exc.printStackTrace();
+        }
+    }
+
+    /*
+     * A worker thread and the connections it serves.
+     */
+    private class Worker implements Runnable {
+        final Selector selector;
+        final Queue<SocketChannel> added = new ConcurrentLinkedQueue<SocketChannel>();
+        final ByteBuffer readBuf = ByteBuffer.allocateDirect(8192);
+        /* Connections whose output waits for the journal to be synced. */
+        final List<Connection> waiting = new ArrayList<Connection>();
+
+        Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        void add(SocketChannel ch) {
+            added.add(ch);
+            selector.wakeup();
+        }
+
+        @Override public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel ch;
+                    while ((ch = added.poll()) != null) {
+                        open(ch);
+                    }
+                    Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                    while (iter.hasNext()) {
+                        SelectionKey key = iter.next();
+                        iter.remove();
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable())
+                                conn.read();
+                            if (key.isValid() && key.isWritable())
+                                conn.write();
+                        } catch (IOException exc) {
+                            conn.close();
+                        } catch (RuntimeException exc) {
+                            // A failure in one game must not take down the others.
+                            exc.printStackTrace();
+                            conn.close();
+                        }
+                    }
+                    if (!waiting.isEmpty())
+                        commit();
+                }
+            } catch (IOException exc) {
+                exc.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException exc) {
+                    // Nothing more can be done.
+                }
+            }
+        }
+
+        /*
+         * Sync the journal once for all the commands that were run, then
+         * send their output.
+         */
+        private void commit() {
+            try {
+                journal.sync();
+            } catch (IOException exc) {
+                // The commands may be lost, so their results can't be shown.
+                exc.printStackTrace();
+                for (Connection conn : waiting) {
+                    conn.close();
+                }
+                waiting.clear();
+                return;
+            }
+            for (Connection conn : waiting) {
+                conn.waiting = false;
+                if (conn.closed)
+                    continue;
+                try {
+                    conn.queueOutput();
+                } catch (IOException exc) {
+                    conn.close();
+                }
+            }
+            waiting.clear();
+        }
+
+        /*
+         * Start a session for a new connection. A client that goes away at
+         * once, or a game that fails to start, loses only its own
+         * connection.
+         */
+        private void open(SocketChannel ch) {
+            Connection conn = null;
+            try {
+                GameSession session = new GameSession(template);
+                SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                conn = new Connection(this, key, session);
+                key.attach(conn);
+                sessions.incrementAndGet();
+                if (journal != null) {
+                    long id = nextId.getAndIncrement();
+                    session.attach(journal, id);
+                    conn.pending.add(ByteBuffer.wrap(("Session " + id + ".\n").getBytes(UTF8)));
+                }
+                session.start();
+                conn.queueOutput();
+            } catch (IOException exc) {
+                close(conn, ch);
+            } catch (RuntimeException exc) {
+                exc.printStackTrace();
+                close(conn, ch);
+            }
+        }
+
+        private void close(Connection conn, SocketChannel ch) {
+            if (conn != null) {
+                conn.close();
+                return;
+            }
+            try {
+                ch.close();
+            } catch (IOException exc) {
+                // Nothing more can be done.
+            }
+        }
+    }
+
+    /*
+     * The state of one connection.
+     */
+    private class Connection {
+        final Worker worker;
+        final SelectionKey key;
+        final SocketChannel ch;
+        GameSession session;
+        int lines = 0;
+        final ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        final Queue<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+        boolean discarding = false;
+        boolean waiting = false;
+        boolean closed = false;
+
+        Connection(Worker worker, SelectionKey key, GameSession session) {
+            this.worker = worker;
+            this.key = key;
+            this.ch = (SocketChannel) key.channel();
+            this.session = session;
+        }
+
+        void read() throws IOException {
+            ByteBuffer buf = worker.readBuf;
+            buf.clear();
+            int n = ch.read(buf);
+            if (n < 0) {
+                close();
+                return;
+            }
+            buf.flip();
+            while (buf.hasRemaining() && session.isOpen()) {
+                byte b = buf.get();
+                if (b == '\n') {
+                    if (!discarding)
+                        runLine();
+                    line.reset();
+                    discarding = false;
+                } else if (line.size() < MAX_LINE) {
+                    line.write(b);
+                } else {
+                    discarding = true;
+                }
+            }
+            if (journal == null)
+                queueOutput();
+            else if (!waiting) {
+                waiting = true;
+                worker.waiting.add(this);
+            }
+        }
+
+        private void runLine() {
+            String s = new String(line.toByteArray(), UTF8);
+            if (s.endsWith("\r"))
+                s = s.substring(0, s.length() - 1);
+            if (lines++ == 0 && journal != null && s.startsWith(RESUME)) {
+                resume(s.substring(RESUME.length()).trim());
+                return;
+            }
+            session.handleLine(s);
+        }
+
+        /* Replace this connection's new session by a rebuilt one. */
+        private void resume(String id) {
+            GameSession r = null;
+            try {
+                r = recovered.remove(Long.valueOf(id));
+            } catch (NumberFormatException exc) {
+                // No such session.
+            }
+            if (r == null) {
+                session.getGame().messageOut.println("There is no session " + id + " to resume.");
+                session.getGame().parser.prompt();
+                return;
+            }
+            // Output from the new session that hasn't been sent is dropped.
+            session.takeOutput();
+            session = r;
+            session.takeOutput();
+            session.getGame().messageOut.println("Session " + id + " resumed.");
+            session.getGame().parser.prompt();
+        }
+
+        void queueOutput() throws IOException {
+            byte[] out = session.takeOutput();
+            if (out.length > 0)
+                pending.add(ByteBuffer.wrap(out));
+            write();
+        }
+
+        void write() throws IOException {
+            while (!pending.isEmpty()) {
+                ByteBuffer buf = pending.peek();
+                ch.write(buf);
+                if (buf.hasRemaining())
+                    break;
+                pending.remove();
+            }
+            if (pending.isEmpty()) {
+                if (!session.isOpen()) {
+                    close();
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close() {
+            if (closed)
+                return;
+            closed = true;
+            sessions.decrementAndGet();
+            key.cancel();
+            try {
+                ch.close();
+            } catch (IOException exc) {
+                // Nothing more can be done.
+            }
+        }
+    }
+
+    /**
+     * Main program for the server.
+     *
+     * @param args command line arguments, see the class description
+     * @throws IOException if the server can't be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEF_PORT;
+        int nWorkers = Runtime.getRuntime().availableProcessors();
+        String gameDesc = null;
+        File journalDir = null;
+        int keep = DEF_MAX_RECOVERED;
+        long expire = DEF_RECOVERED_TIMEOUT;
+        boolean metrics = false;
+        boolean profile = false;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i].equals("-port"))
+                    port = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-workers"))
+                    nWorkers = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-journal"))
+                    journalDir = new File(args[++i]);
+                else if (args[i].equals("-keep"))
+                    keep = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-expire"))
+                    expire = Long.parseLong(args[++i]) * 60 * 1000;
+                else if (args[i].equals("-metrics"))
+                    metrics = true;
+                else if (args[i].equals("-profile"))
+                    profile = true;
+                else if (gameDesc == null && !args[i].startsWith("-"))
+                    gameDesc = args[i];
+                else
+                    gameDesc = null;
+            }
+        } catch (RuntimeException exc) {
+            gameDesc = null;
+        }
+        if (gameDesc == null) {
+            System.err.printf("Usage: java ... cs345.server.GameServer [-port N] [-workers N] [-journal DIR] [-keep N] [-expire MINUTES] [-metrics] [-profile] GameDescription%n"
+                    + "  Serve the game with given description to many players.%n");
+            return;
+        }
+
+        GameServer server = new GameServer(gameDesc, new InetSocketAddress(port), nWorkers, journalDir, keep);
+        server.setRecoveredTimeout(expire);
+        if (metrics) {
+            ParserStats stats = new ParserStats();
+            server.setMetrics(stats);
+            stats.register("server");
+        }
+        if (profile) {
+            ScriptProfiler profiler = new ScriptProfiler();
+            server.setProfiler(profiler);
+            profiler.register("server");
+            profiler.reportOnExit(System.err);
+        }
+        server.start();
+        System.err.printf("Serving %s on port %d with %d workers.%n",
+                gameDesc, server.getPort(), nWorkers);
+        if (journalDir != null)
+            System.err.printf("Journal in %s, %d sessions recovered.%n",
+                    journalDir, server.getRecoveredCount());
+        try {
+            server.acceptor.join();
+        } catch (InterruptedException exc) {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+import cs345.GameMain;
+import cs345.game.Game;
+import cs345.game.GameBuilder;
+import cs345.game.GameSnapshot;
+import cs345.interpret.CommandJournal;
+import cs345.message.BaseMessageFormatter;
+import cs345.message.MessageFormatter;
+import cs345.message.NullMessageFormatter;
+import cs345.reader.GameDescription;
+
+/**
+ * This class is one player's session with the game server.
+ *
+ * A session owns its own Game, with its own CommandParser and
+ * MessageFormatter. The Game is a new session of a template Game, see
+ * Game.newSession, so sessions share everything that was built and only
+ * hold the state they change. Commands are not read from an input stream. Instead
+ * the server passes each line the player enters to handleLine and collects
+ * the resulting output with takeOutput.
+ *
+ * A session is not thread safe. The server guarantees that a session is
+ * only used by one thread at a time.
+ */
+public class GameSession {
+
+    /** Width of the output produced for the player. */
+    public static final int LINE_WIDTH = 72;
+
+    /** Commands between the snapshots written to a journal. */
+    public static final int SNAPSHOT_INTERVAL = 64;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] NO_OUTPUT = new byte[0];
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+    private final PrintStream out;
+    private final Game game;
+    private boolean open = true;
+    private Journal journal;
+    private long id;
+    private int sinceSnapshot;
+
+    /**
+     * Create a session of a game.
+     *
+     * @param template the game the session plays
+     */
+    public GameSession(Game template) {
+        try {
+            out = new PrintStream(output, false, "UTF-8");
+        } catch (UnsupportedEncodingException exc) {
+            throw new AssertionError(exc);
+        }
+        game = template.newSession(new ByteArrayInputStream(new byte[0]),
+                new BaseMessageFormatter(out, LINE_WIDTH));
+    }
+
+    /**
+     * Build the template for the sessions of a game.
+     *
+     * @param gameDescName the name of the GameDescription class in the
+     *                     reader package
+     * @return the built Game
+     * @throws IllegalArgumentException if the game description can't be loaded
+     */
+    public static Game buildTemplate(String gameDescName) {
+        GameDescription desc = GameMain.getGameDescription(gameDescName, new GameBuilder());
+        if (desc == null)
+            throw new IllegalArgumentException("No game description " + gameDescName);
+        return desc.build(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+
+    /**
+     * Start the game and prompt for the first command.
+     */
+    public void start() {
+        game.parser.start();
+        game.parser.prompt();
+    }
+
+    /**
+     * Run one command entered by the player.
+     *
+     * @param line the command
+     * @return true if the session continues, false if the game is over
+     */
+    public boolean handleLine(String line) {
+        if (!open)
+            return false;
+        if (!game.parser.step(line)) {
+            open = false;
+            game.messageOut.println();
+            if (journal != null)
+                journal.append(id, Journal.END, NO_OUTPUT);
+            return false;
+        }
+        if (journal != null && ++sinceSnapshot >= SNAPSHOT_INTERVAL)
+            writeSnapshot();
+        game.parser.prompt();
+        return true;
+    }
+
+    /**
+     * End the session without finishing the game, for a session that is
+     * given up on. An end record is appended to its journal, if it has
+     * one, so it isn't rebuilt again. The caller is responsible for
+     * syncing the journal.
+     */
+    public void end() {
+        if (!open)
+            return;
+        open = false;
+        if (journal != null)
+            journal.append(id, Journal.END, NO_OUTPUT);
+    }
+
+    /**
+     * Record this session in a journal from now on. Every command the
+     * parser accepts is appended before it is run, and a snapshot is
+     * appended every SNAPSHOT_INTERVAL commands. The caller is responsible
+     * for syncing the journal.
+     *
+     * @param journal the journal
+     * @param id the id of this session in the journal
+     */
+    public void attach(final Journal journal, final long id) {
+        this.journal = journal;
+        this.id = id;
+        game.parser.setJournal(new CommandJournal() {
+            @Override public void record(String line) {
+                journal.append(id, Journal.LINE, line.getBytes(UTF8));
+            }
+        });
+    }
+
+    /**
+     * Append a snapshot of this session to its journal, so recovery
+     * doesn't need to run the commands before it.
+     */
+    public void writeSnapshot() {
+        journal.append(id, Journal.SNAPSHOT, save());
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * @return the id of this session in its journal
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Rebuild a session from what a journal holds for it. The snapshot is
+     * restored, if there is one, and the commands after it are run with
+     * their output discarded. The session is not attached to a journal.
+     *
+     * @param template the game the session plays
+     * @param log the session's snapshot and commands
+     * @return the rebuilt session, started
+     */
+    public static GameSession recover(Game template, Journal.SessionLog log) {
+        GameSession session = new GameSession(template);
+        Game game = session.game;
+        MessageFormatter out = game.messageOut;
+        game.messageOut = new NullMessageFormatter();
+        try {
+            if (log.snapshot != null)
+                session.restore(log.snapshot);
+            game.parser.start();
+            for (String line : log.lines) {
+                if (!game.parser.step(line)) {
+                    session.open = false;
+                    break;
+                }
+            }
+        } finally {
+            game.messageOut = out;
+        }
+        return session;
+    }
+
+    /**
+     * Save the state of this session.
+     *
+     * @return the snapshot
+     * @see GameSnapshot
+     */
+    public byte[] save() {
+        return GameSnapshot.save(game);
+    }
+
+    /**
+     * Restore a snapshot saved by another session of the same game. This
+     * is meant for a new session, before start is called; start then only
+     * prompts for the next command.
+     *
+     * @param snapshot the snapshot
+     * @throws IllegalArgumentException if the snapshot is from another game
+     */
+    public void restore(byte[] snapshot) {
+        GameSnapshot.restore(game, snapshot);
+        open = !game.exit;
+    }
+
+    /**
+     * @return true until the game is over
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Return the output produced since the last call, encoded as UTF-8.
+     *
+     * @return the output, an empty array if there is none
+     */
+    public byte[] takeOutput() {
+        game.messageOut.flush();
+        if (output.size() == 0)
+            return NO_OUTPUT;
+        byte[] result = output.toByteArray();
+        output.reset();
+        return result;
+    }
+
+    /**
+     * @return the game for this session
+     */
+    public Game getGame() {
+        return game;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This class is an append only journal shared by the sessions of a game
+ * server.
+ *
+ * Each session writes a record for every command it accepts, before the
+ * command is run, and now and then a GameSnapshot. When the game is over
+ * the session writes an end record. After a crash the sessions are rebuilt
+ * by restoring the latest snapshot of each session and running the
+ * commands recorded after it, see recover.
+ *
+ * The journal is a directory of segment files, journal-NNNNNN.log, written
+ * in order. Appending a record only copies it into a buffer in memory.
+ * Records become durable when sync is called: the buffer is written to the
+ * current segment with one FileChannel write and forced to disk. This is a
+ * group commit. Threads that call sync while another thread is forcing the
+ * journal wait for it, and usually find that their records were part of
+ * its batch, so many sessions share one write and one force. When a
+ * segment grows beyond the segment size the next batch starts a new one.
+ *
+ * A record is:
+ *
+ *   length    int, the length of the body
+ *   crc       int, the CRC32 of the body
+ *   body      session id (long), type (byte), data
+ *
+ * A record that was torn by a crash fails its length or CRC check, and
+ * reading stops at it.
+ *
+ * If a batch can't be written or forced, part of it may be on disk and
+ * part not, and writing later records after it would leave a hole that
+ * replay can't see. So the journal fails: the sync and every later
+ * append and sync throw, and nothing more is accepted.
+ */
+public class Journal implements Closeable {
+
+    /** A command, the data is the line in UTF-8. */
+    public static final byte LINE = 1;
+    /** A GameSnapshot. */
+    public static final byte SNAPSHOT = 2;
+    /** The session is over, the data is empty. */
+    public static final byte END = 3;
+
+    /** Default size at which a new segment is started. */
+    public static final long DEF_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final int HEADER = 8;
+    private static final int BODY_HEADER = 9;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final File dir;
+    private final long segmentSize;
+    private final Object commitLock = new Object();
+
+    /* Guarded by this. */
+    private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appended = 0;
+    private final CRC32 crc = new CRC32();
+    private boolean closed = false;
+
+    /* Guarded by commitLock. */
+    private FileChannel channel;
+    private int segment;
+    private volatile long durable = 0;
+    /* The error that made the journal fail, or null. */
+    private volatile IOException failure;
+
+    /**
+     * Open a journal. A new segment is started after any segments already
+     * in the directory.
+     *
+     * @param dir the directory for the segment files, created if needed
+     * @param segmentSize the size at which a new segment is started
+     * @throws IOException if the first segment can't be created
+     */
+    public Journal(File dir, long segmentSize) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can't create journal directory " + dir);
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        int[] existing = segments(dir);
+        segment = (existing.length == 0) ? 0 : existing[existing.length - 1];
+        nextSegment();
+    }
+
+    /**
+     * Append a record. The record isn't durable until sync is called.
+     *
+     * @param session the id of the session
+     * @param type the type of record, LINE, SNAPSHOT or END
+     * @param data the data for the record
+     * @return the sequence number of the record, to be passed to sync
+     */
+    public synchronized long append(long session, byte type, byte[] data) {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        if (failure != null)
+            throw new IllegalStateException("Journal failed", failure);
+        int length = BODY_HEADER + data.length;
+        if (buf.remaining() < HEADER + length) {
+            ByteBuffer b = ByteBuffer.allocate(Math.max(2 * buf.capacity(), buf.position() + HEADER + length));
+            buf.flip();
+            b.put(buf);
+            buf = b;
+        }
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (session >>> shift));
+        }
+        crc.update(type);
+        crc.update(data, 0, data.length);
+        buf.putInt(length);
+        buf.putInt((int) crc.getValue());
+        buf.putLong(session);
+        buf.put(type);
+        buf.put(data);
+        return ++appended;
+    }
+
+    /**
+     * @return the sequence number of the last record appended
+     */
+    public synchronized long appended() {
+        return appended;
+    }
+
+    /**
+     * Make all records up to and including a sequence number durable.
+     *
+     * @param seq the sequence number returned by append
+     * @throws IOException if the journal can't be written, now or in an
+     *         earlier sync
+     */
+    public void sync(long seq) throws IOException {
+        if (durable >= seq)
+            return;
+        synchronized (commitLock) {
+            // Another thread's batch may have included this record.
+            if (durable >= seq)
+                return;
+            if (failure != null)
+                throw new IOException("Journal failed", failure);
+            ByteBuffer batch;
+            long upTo;
+            synchronized (this) {
+                batch = buf;
+                buf = spare;
+                spare = null;
+                upTo = appended;
+            }
+            batch.flip();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                if (channel.size() >= segmentSize)
+                    nextSegment();
+            } catch (IOException exc) {
+                failure = exc;
+                throw exc;
+            } finally {
+                batch.clear();
+                synchronized (this) {
+                    spare = batch;
+                }
+            }
+            durable = upTo;
+        }
+    }
+
+    /**
+     * Make everything appended so far durable.
+     *
+     * @throws IOException if the journal can't be written
+     */
+    public void sync() throws IOException {
+        sync(appended());
+    }
+
+    /**
+     * Sync and close the journal.
+     *
+     * @throws IOException if the journal can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+            synchronized (commitLock) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Delete the segments before the current one. This is done once
+     * everything in them has been superseded, for example after recovery
+     * has written a new snapshot of every session.
+     *
+     * @throws IOException if a segment can't be deleted
+     */
+    public void deleteOldSegments() throws IOException {
+        synchronized (commitLock) {
+            for (int n : segments(dir)) {
+                if (n < segment) {
+                    File f = segmentFile(dir, n);
+                    if (!f.delete())
+                        throw new IOException("Can't delete " + f);
+                }
+            }
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        if (channel != null)
+            channel.close();
+        segment += 1;
+        channel = openSegment(segmentFile(dir, segment));
+    }
+
+    /**
+     * Create a segment file and open it for writing. This is called by the
+     * constructor, before a subclass is initialized.
+     *
+     * @param file the segment file
+     * @return the channel to write the segment with
+     * @throws IOException if the file can't be created
+     */
+    FileChannel openSegment(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static File segmentFile(File dir, int n) {
+        return new File(dir, String.format("%s%06d%s", PREFIX, n, SUFFIX));
+    }
+
+    /* The numbers of the segments in a directory, in order. */
+    private static int[] segments(File dir) {
+        String[] names = dir.list();
+        if (names == null)
+            return new int[0];
+        int[] n = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                try {
+                    n[count] = Integer.parseInt(name.substring(PREFIX.length(),
+                            name.length() - SUFFIX.length()));
+                    count += 1;
+                } catch (NumberFormatException exc) {
+                    // Not a segment.
+                }
+            }
+        }
+        n = Arrays.copyOf(n, count);
+        Arrays.sort(n);
+        return n;
+    }
+
+    /**
+     * What the journal holds for a session that wasn't over.
+     */
+    public static class SessionLog {
+        /** The latest snapshot or null if there is none. */
+        public byte[] snapshot;
+        /** The commands accepted after the snapshot, in order. */
+        public final List<String> lines = new ArrayList<String>();
+    }
+
+    /**
+     * Read the journal in a directory. The segments are mapped into
+     * memory and read in order.
+     *
+     * @param dir the directory for the segment files
+     * @return the sessions that weren't over, by id, in the order they
+     *         first appear
+     * @throws IOException if a segment can't be read
+     */
+    public static Map<Long, SessionLog> recover(File dir) throws IOException {
+        Map<Long, SessionLog> sessions = new LinkedHashMap<Long, SessionLog>();
+        CRC32 crc = new CRC32();
+        for (int n : segments(dir)) {
+            FileChannel ch = FileChannel.open(segmentFile(dir, n).toPath(), StandardOpenOption.READ);
+            try {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                while (map.remaining() >= HEADER + BODY_HEADER) {
+                    int length = map.getInt();
+                    int check = map.getInt();
+                    if (length < BODY_HEADER || length > map.remaining())
+                        break;
+                    byte[] body = new byte[length];
+                    map.get(body);
+                    crc.reset();
+                    crc.update(body, 0, length);
+                    if ((int) crc.getValue() != check)
+                        break;
+                    ByteBuffer b = ByteBuffer.wrap(body);
+                    Long session = b.getLong();
+                    byte type = b.get();
+                    byte[] data = Arrays.copyOfRange(body, BODY_HEADER, length);
+                    apply(sessions, session, type, data);
+                }
+            } finally {
+                ch.close();
+            }
+        }
+        return sessions;
+    }
+
+    private static void apply(Map<Long, SessionLog> sessions, Long session, byte type, byte[] data) {
+        if (type == END) {
+            sessions.remove(session);
+            return;
+        }
+        SessionLog log = sessions.get(session);
+        if (log == null) {
+            log = new SessionLog();
+            sessions.put(session, log);
+        }
+        if (type == SNAPSHOT) {
+            log.snapshot = data;
+            log.lines.clear();
+        } else if (type == LINE) {
+            log.lines.add(new String(data, GameSession.UTF8));
+        }
+    }
+}
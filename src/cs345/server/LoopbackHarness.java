@@ -0,0 +1,216 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * This class drives a GameServer with simulated players over loopback.
+ *
+ * The harness starts a server in this process, opens the requested number
+ * of connections to it and plays the same script of commands on every
+ * connection. A command is sent when the previous output ends with the
+ * prompt. The script ends with "quit", after which the server is expected
+ * to close the connection. All simulated players are driven by a single
+ * thread using a Selector.
+ *
+ * Usage:
+ *
+ *   java -cp CLASSPATH cs345.server.LoopbackHarness [-sessions N] [-workers N]
+ *           [-rounds N] [-journal DIR] GAMEDESCRIPTIONCLASS
+ *
+ *     -sessions N  the number of simulated players, default 1000
+ *     -workers N   the number of server worker threads, default the number of cores
+ *     -rounds N    the number of times each player repeats the script, default 10
+ *     -journal DIR have the server journal the sessions in DIR, default none
+ */
+public class LoopbackHarness {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The commands played by each simulated player, repeated for each round. */
+    static final String[] SCRIPT = {
+        "look", "inventory", "go north", "go south", "go east", "go west",
+        "look around", "get coin", "drop coin", "xyzzy", "frobnicate"
+    };
+
+    private static final String PROMPT = "? ";
+
+    private final int rounds;
+    private int finished = 0;
+    private int failed = 0;
+    private long commands = 0;
+
+    private LoopbackHarness(int rounds) {
+        this.rounds = rounds;
+    }
+
+    /*
+     * One simulated player.
+     */
+    private class Client {
+        final SocketChannel ch;
+        final StringBuilder received = new StringBuilder();
+        ByteBuffer sending;
+        int sent = 0;
+        boolean quitSent = false;
+
+        Client(SocketChannel ch) {
+            this.ch = ch;
+        }
+
+        void read(SelectionKey key, ByteBuffer buf) throws IOException {
+            buf.clear();
+            int n = ch.read(buf);
+            if (n < 0) {
+                // The server closed the connection.
+                if (quitSent)
+                    finished += 1;
+                else
+                    failed += 1;
+                key.cancel();
+                ch.close();
+                return;
+            }
+            buf.flip();
+            received.append(UTF8.decode(buf));
+            int len = received.length();
+            if (len >= PROMPT.length()
+                    && received.lastIndexOf(PROMPT) == len - PROMPT.length()) {
+                received.setLength(0);
+                sendNext(key);
+            } else if (len > 65536) {
+                received.delete(0, len - PROMPT.length());
+            }
+        }
+
+        void sendNext(SelectionKey key) throws IOException {
+            if (quitSent)
+                return;
+            String cmd;
+            if (sent < rounds * SCRIPT.length) {
+                cmd = SCRIPT[sent % SCRIPT.length];
+            } else {
+                cmd = "quit";
+                quitSent = true;
+            }
+            sent += 1;
+            commands += 1;
+            sending = UTF8.encode(cmd + "\n");
+            write(key);
+        }
+
+        void write(SelectionKey key) throws IOException {
+            ch.write(sending);
+            key.interestOps(sending.hasRemaining()
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ);
+        }
+    }
+
+    private void drive(InetSocketAddress address, int nSessions) throws IOException {
+        Selector selector = Selector.open();
+        for (int i = 0; i < nSessions; ++i) {
+            SocketChannel ch = SocketChannel.open();
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            ch.connect(address);
+            ch.register(selector, SelectionKey.OP_CONNECT, new Client(ch));
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(8192);
+        while (finished + failed < nSessions) {
+            selector.select(1000);
+            Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+            while (iter.hasNext()) {
+                SelectionKey key = iter.next();
+                iter.remove();
+                Client c = (Client) key.attachment();
+                try {
+                    if (key.isValid() && key.isConnectable()) {
+                        c.ch.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                    if (key.isValid() && key.isReadable())
+                        c.read(key, buf);
+                    if (key.isValid() && key.isWritable())
+                        c.write(key);
+                } catch (IOException exc) {
+                    failed += 1;
+                    key.cancel();
+                    c.ch.close();
+                }
+            }
+        }
+        selector.close();
+    }
+
+    /**
+     * Main program for the harness.
+     *
+     * @param args command line arguments, see the class description
+     * @throws IOException if the server or the connections can't be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int nSessions = 1000;
+        int nWorkers = Runtime.getRuntime().availableProcessors();
+        int rounds = 10;
+        String gameDesc = null;
+        File journalDir = null;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i].equals("-sessions"))
+                    nSessions = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-workers"))
+                    nWorkers = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-rounds"))
+                    rounds = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-journal"))
+                    journalDir = new File(args[++i]);
+                else if (gameDesc == null && !args[i].startsWith("-"))
+                    gameDesc = args[i];
+                else
+                    gameDesc = null;
+            }
+        } catch (RuntimeException exc) {
+            gameDesc = null;
+        }
+        if (gameDesc == null) {
+            System.err.printf("Usage: java ... cs345.server.LoopbackHarness [-sessions N] [-workers N] [-rounds N] [-journal DIR] GameDescription%n"
+                    + "  Play the game with N simulated players over loopback.%n");
+            return;
+        }
+
+        GameServer server = new GameServer(gameDesc,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), nWorkers, journalDir);
+        server.start();
+        LoopbackHarness harness = new LoopbackHarness(rounds);
+        long start = System.nanoTime();
+        try {
+            harness.drive(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    server.getPort()), nSessions);
+        } finally {
+            server.stop();
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d sessions finished, %d failed%n", harness.finished, harness.failed);
+        System.out.printf("%d commands in %.3f s, %.0f commands/s%n",
+                harness.commands, secs, harness.commands / secs);
+        if (harness.failed > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ActionTable must offer the Actions for a command in descending priority,
+ * the order they were made for equal priorities, and only those whose
+ * second Term fits the second word.
+ */
+public class ActionTableTest {
+
+    private static final ValidMethod NEVER = new ValidMethod() {
+        @Override public boolean isValid(Game game, Word w1, Word w2) {
+            return false;
+        }
+    };
+
+    private Word look;
+    private Word take;
+    private Word lamp;
+    private Word key;
+    private Term lookTerm;
+    private Term takeTerm;
+    private Term lampTerm;
+
+    private static Term term(Word... words) {
+        Term t = new Terms();
+        for (Word w : words) {
+            t.addWord(w);
+        }
+        return t;
+    }
+
+    private static Action action(Term t1, Term t2, int priority, ValidMethod valid) {
+        Action act = new Action();
+        act.setTerm1(t1);
+        act.setTerm2(t2);
+        act.setPriority(priority);
+        act.setValid(valid);
+        return act;
+    }
+
+    @Before
+    public void setUp() {
+        look = new Words("look", MatchType.PREFIX);
+        take = new Words("take", MatchType.PREFIX);
+        lamp = new Words("lamp", MatchType.PREFIX);
+        key = new Words("key", MatchType.PREFIX);
+        lookTerm = term(look);
+        takeTerm = term(take);
+        lampTerm = term(lamp);
+    }
+
+    @Test
+    public void highestPriorityFirst() {
+        Action low = action(lookTerm, null, 1, null);
+        Action high = action(lookTerm, null, 5, null);
+        Action middle = action(lookTerm, null, 3, null);
+        ActionTable table = new ActionTable(Arrays.asList(low, high, middle));
+        assertArrayEquals(new Action[] { high, middle, low }, table.candidates(look, null));
+        assertSame(high, table.find(null, look, null));
+    }
+
+    @Test
+    public void equalPrioritiesKeepTheirOrder() {
+        Action first = action(lookTerm, null, 2, null);
+        Action second = action(lookTerm, null, 2, null);
+        Action third = action(lookTerm, null, 2, null);
+        ActionTable table = new ActionTable(Arrays.asList(first, second, third));
+        assertArrayEquals(new Action[] { first, second, third }, table.candidates(look, null));
+    }
+
+    @Test
+    public void secondTermFiltersCandidates() {
+        Action alone = action(takeTerm, null, 1, null);
+        Action withLamp = action(takeTerm, lampTerm, 1, null);
+        ActionTable table = new ActionTable(Arrays.asList(alone, withLamp));
+        assertArrayEquals(new Action[] { alone }, table.candidates(take, null));
+        assertArrayEquals(new Action[] { withLamp }, table.candidates(take, lamp));
+        assertEquals(0, table.candidates(take, key).length);
+        assertNull(table.find(null, take, key));
+    }
+
+    @Test
+    public void invalidActionsAreSkipped() {
+        Action high = action(takeTerm, lampTerm, 9, NEVER);
+        Action low = action(takeTerm, lampTerm, 1, null);
+        ActionTable table = new ActionTable(Arrays.asList(high, low));
+        assertSame(low, table.find(null, take, lamp));
+    }
+
+    @Test
+    public void unknownFirstWordHasNoCandidates() {
+        ActionTable table = new ActionTable(Arrays.asList(action(lookTerm, null, 1, null)));
+        assertEquals(0, table.candidates(take, null).length);
+        assertNull(table.find(null, take, null));
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cs345.message.NullMessageFormatter;
+
+/**
+ * A GameSnapshot must restore, onto a new session of the same game, the
+ * changes the saved session made, and nothing else. A snapshot of another
+ * version or another game must be rejected without changing the session.
+ */
+public class GameSnapshotTest {
+
+    private static final PropertyKey<Boolean> LIT = PropertyKey.of("snapshotTestLit", Boolean.class);
+
+    private Game template;
+    private Room hall;
+    private Room closet;
+    private GameObject lamp;
+
+    private static Game build(int rooms) {
+        GameBuilder gb = new GameBuilder();
+        gb.startBuild(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+        for (int i = 0; i < rooms; ++i) {
+            gb.makeRoom("room" + i, gb.makeMessage("A room."), gb.makeMessage("Room."));
+        }
+        return gb.buildComplete();
+    }
+
+    @Before
+    public void setUp() {
+        GameBuilder gb = new GameBuilder();
+        gb.startBuild(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+        hall = gb.makeRoom("hall", gb.makeMessage("A hall."), gb.makeMessage("Hall."));
+        closet = gb.makeRoom("closet", gb.makeMessage("A closet."), gb.makeMessage("Closet."));
+        Term t = gb.makeTerm("lamp");
+        t.addWord(gb.makeWord("lamp", MatchType.PREFIX));
+        lamp = gb.makeGameObject("lamp", t, gb.makeMessage("a lamp"),
+                gb.makeMessage("There is a lamp here."), gb.makeMessage("A brass lamp."));
+        hall.addObject(lamp);
+        template = gb.buildComplete();
+    }
+
+    private Game newSession() {
+        return template.newSession(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+    }
+
+    @Test
+    public void roundTrip() {
+        Game saved = newSession();
+        GameState previous = saved.state.bind();
+        try {
+            hall.removeObject(lamp);
+            closet.addObject(lamp);
+            lamp.setState(2);
+            closet.setState(-1);
+            saved.setProperty(LIT, Boolean.TRUE);
+        } finally {
+            GameState.unbind(previous);
+        }
+        byte[] snapshot = GameSnapshot.save(saved);
+
+        Game restored = newSession();
+        GameSnapshot.restore(restored, snapshot);
+        previous = restored.state.bind();
+        try {
+            assertEquals(2, lamp.getState());
+            assertEquals(-1, closet.getState());
+            assertSame(closet, lamp.getContainer());
+            assertTrue(closet.contains(lamp));
+            assertFalse(hall.contains(lamp));
+            assertEquals(Boolean.TRUE, restored.getProperty(LIT));
+        } finally {
+            GameState.unbind(previous);
+        }
+
+        // The template, and so every other session, is unchanged.
+        assertEquals(0, lamp.getState());
+        assertSame(hall, lamp.getContainer());
+        assertFalse(template.hasProperty(LIT));
+    }
+
+    @Test
+    public void unchangedSessionIsSmall() {
+        byte[] snapshot = GameSnapshot.save(newSession());
+        assertTrue(snapshot.length < 16);
+        Game restored = newSession();
+        GameSnapshot.restore(restored, snapshot);
+        assertSame(hall, lamp.getContainer());
+    }
+
+    @Test
+    public void otherVersionIsRejected() {
+        Game saved = newSession();
+        GameState previous = saved.state.bind();
+        try {
+            lamp.setState(1);
+        } finally {
+            GameState.unbind(previous);
+        }
+        byte[] snapshot = GameSnapshot.save(saved);
+        for (byte version : new byte[] { 0, 1, 3 }) {
+            snapshot[2] = version;
+            Game restored = newSession();
+            try {
+                GameSnapshot.restore(restored, snapshot);
+                fail("accepted version " + version);
+            } catch (IllegalArgumentException exc) {
+                // Expected.
+            }
+            previous = restored.state.bind();
+            try {
+                assertEquals(0, lamp.getState());
+            } finally {
+                GameState.unbind(previous);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherGameIsRejected() {
+        byte[] snapshot = GameSnapshot.save(newSession());
+        Game other = build(5);
+        GameSnapshot.restore(other.newSession(new ByteArrayInputStream(new byte[0]),
+                new NullMessageFormatter()), snapshot);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void damagedSnapshotIsRejected() {
+        GameSnapshot.restore(newSession(), new byte[] { 'G', 'S' });
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A compiled Term must contain exactly the Words added to it, whether it
+ * keeps their numbers as a bit set or as a sorted array, and must still
+ * return them in the order they were added.
+ */
+public class TermsTest {
+
+    private Word[] byId;
+
+    /* Number the Words the way the Builder does. */
+    private static Word[] words(String prefix, int count) {
+        Word[] w = new Word[count];
+        for (int i = 0; i < count; ++i) {
+            Words word = new Words(prefix + i, MatchType.PREFIX);
+            word.id = i;
+            w[i] = word;
+        }
+        return w;
+    }
+
+    private static Terms term(Word... words) {
+        Terms t = new Terms();
+        for (Word w : words) {
+            t.addWord(w);
+        }
+        return t;
+    }
+
+    private void assertMembers(Terms t, int... members) {
+        boolean[] in = new boolean[byId.length];
+        for (int id : members) {
+            in[id] = true;
+        }
+        for (int id = 0; id < byId.length; ++id) {
+            assertEquals("word " + id, in[id], t.contains(byId[id]));
+        }
+    }
+
+    @Before
+    public void setUp() {
+        byId = words("w", 600);
+    }
+
+    @Test
+    public void closeWordsAreABitSet() {
+        Terms t = term(byId[70], byId[64], byId[127], byId[66], byId[128], byId[100]);
+        t.compile(byId);
+        assertMembers(t, 64, 66, 70, 100, 127, 128);
+        assertArrayEquals(new int[] { 64, 66, 70, 100, 127, 128 }, t.ids(byId));
+    }
+
+    @Test
+    public void fewWordsAreASortedArray() {
+        Terms t = term(byId[3], byId[1], byId[2]);
+        t.compile(byId);
+        assertMembers(t, 1, 2, 3);
+        assertArrayEquals(new int[] { 1, 2, 3 }, t.ids(byId));
+    }
+
+    @Test
+    public void distantWordsAreASortedArray() {
+        Terms t = term(byId[500], byId[0], byId[100], byId[300], byId[200], byId[400]);
+        t.compile(byId);
+        assertMembers(t, 0, 100, 200, 300, 400, 500);
+        assertArrayEquals(new int[] { 0, 100, 200, 300, 400, 500 }, t.ids(byId));
+    }
+
+    @Test
+    public void repeatedWordsAreOneMember() {
+        Terms t = term(byId[5], byId[5], byId[6], byId[7], byId[8], byId[9], byId[9]);
+        t.compile(byId);
+        assertMembers(t, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    public void anotherGamesWordIsNotAMember() {
+        Word[] other = words("w", 600);
+        Terms bits = term(byId[1], byId[2], byId[3], byId[4], byId[5]);
+        Terms array = term(byId[1], byId[2]);
+        bits.compile(byId);
+        array.compile(byId);
+        for (int id = 0; id < 8; ++id) {
+            assertFalse(bits.contains(other[id]));
+            assertFalse(array.contains(other[id]));
+        }
+        assertNull(bits.ids(other));
+        assertFalse(bits.contains(new Words("w1", MatchType.PREFIX)));
+    }
+
+    @Test
+    public void wordsKeepTheOrderTheyWereAdded() {
+        Word[] added = { byId[9], byId[2], byId[40], byId[7], byId[3], byId[8] };
+        Terms t = term(added);
+        t.compile(byId);
+        assertEquals(Arrays.asList(added), t.getWords());
+
+        Terms sorted = term(byId[1], byId[2], byId[4]);
+        sorted.compile(byId);
+        assertEquals(Arrays.asList(byId[1], byId[2], byId[4]), sorted.getWords());
+    }
+
+    @Test
+    public void addingAfterCompileKeepsTheWords() {
+        Terms t = term(byId[4], byId[1]);
+        t.compile(byId);
+        t.addWord(byId[300]);
+        assertEquals(Arrays.asList(byId[4], byId[1], byId[300]), t.getWords());
+        assertTrue(t.contains(byId[300]));
+        assertNull(t.ids(byId));
+        t.compile(byId);
+        assertMembers(t, 1, 4, 300);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Vocabulary must find the same Word the command parser found by
+ * searching all the Words: an exact match, then an abbreviation, then the
+ * only PREFIX word that starts with the input.
+ */
+public class VocabularyTest {
+
+    private Word north;
+    private Word quit;
+    private Word examine;
+    private Word east;
+    private Word go;
+    private Word gold;
+    private Word inventory;
+    private Word inspect;
+    private Vocabulary vocabulary;
+
+    private static Word word(String s, MatchType match, String... abbrevs) {
+        Word w = new Words(s, match);
+        for (String a : abbrevs) {
+            w.addAbbreviation(a);
+        }
+        return w;
+    }
+
+    @Before
+    public void setUp() {
+        north = word("north", MatchType.PREFIX);
+        quit = word("quit", MatchType.EXACT);
+        examine = word("examine", MatchType.PREFIX, "X");
+        east = word("east", MatchType.PREFIX);
+        go = word("go", MatchType.PREFIX);
+        gold = word("gold", MatchType.PREFIX);
+        inventory = word("inventory", MatchType.PREFIX, "i");
+        inspect = word("inspect", MatchType.PREFIX);
+        vocabulary = new Vocabulary(Arrays.asList(
+                north, quit, examine, east, go, gold, inventory, inspect));
+    }
+
+    @Test
+    public void exactMatchIgnoresCase() {
+        assertSame(north, vocabulary.lookup("NoRtH"));
+        assertSame(quit, vocabulary.lookup("quit"));
+    }
+
+    @Test
+    public void exactWordIsNotMatchedByPrefix() {
+        assertNull(vocabulary.lookup("qui"));
+        assertEquals(0, vocabulary.prefixCount("qui", 0, 3));
+    }
+
+    @Test
+    public void uniquePrefixMatches() {
+        assertSame(north, vocabulary.lookup("n"));
+        assertSame(examine, vocabulary.lookup("exa"));
+    }
+
+    @Test
+    public void ambiguousPrefixMatchesNothing() {
+        assertNull(vocabulary.lookup("e"));
+        assertEquals(2, vocabulary.prefixCount("e", 0, 1));
+        assertNull(vocabulary.lookup("in"));
+        assertSame(inspect, vocabulary.lookup("ins"));
+        assertNull(vocabulary.lookup("zzz"));
+        assertEquals(0, vocabulary.prefixCount("zzz", 0, 3));
+    }
+
+    @Test
+    public void exactMatchBeatsLongerPrefixWords() {
+        assertSame(go, vocabulary.lookup("go"));
+        assertSame(gold, vocabulary.lookup("gol"));
+    }
+
+    @Test
+    public void abbreviationBeatsAmbiguousPrefix() {
+        assertEquals(2, vocabulary.prefixCount("i", 0, 1));
+        assertSame(inventory, vocabulary.lookup("i"));
+    }
+
+    @Test
+    public void abbreviationMatchesCase() {
+        assertSame(examine, vocabulary.lookup("X"));
+        assertNull(vocabulary.lookup("x"));
+    }
+
+    @Test
+    public void looksUpPartOfALine() {
+        String line = "go north";
+        assertSame(go, vocabulary.lookup(line, 0, 2));
+        assertSame(north, vocabulary.lookup(line, 3, 8));
+        assertNull(vocabulary.lookup(line, 2, 2));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cs345.game.Game;
+import cs345.game.GameBuilder;
+import cs345.game.GameObject;
+import cs345.game.GameState;
+import cs345.game.MatchType;
+import cs345.game.Term;
+
+/**
+ * The descriptions of a GameObject are BoundSelects of its state. They
+ * must follow the state as it is when they are shown, in the session that
+ * shows them.
+ */
+public class BoundSelectTest {
+
+    private Game template;
+    private GameObject door;
+
+    @Before
+    public void setUp() {
+        GameBuilder gb = new GameBuilder();
+        gb.startBuild(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+        Term t = gb.makeTerm("door");
+        t.addWord(gb.makeWord("door", MatchType.PREFIX));
+        Message select = gb.makeSelectMessage(
+                gb.makeMessage("The door is closed."),
+                gb.makeMessage("The door is open."));
+        door = gb.makeGameObject("door", t, gb.makeMessage("a door"), select, select);
+        template = gb.buildComplete();
+    }
+
+    @Test
+    public void followsStateChanges() {
+        assertEquals("The door is closed.", door.getLongDesc().getString());
+        door.setState(1);
+        assertEquals("The door is open.", door.getLongDesc().getString());
+        door.setState(0);
+        assertEquals("The door is closed.", door.getLongDesc().getString());
+    }
+
+    @Test
+    public void stringIsNotWrapped() {
+        Message plain = door.getInventoryDesc();
+        assertTrue(plain instanceof StringMsg);
+        door.setState(1);
+        assertEquals("a door", plain.getString());
+    }
+
+    @Test
+    public void readsStateOfBoundSession() {
+        Game session = template.newSession(new ByteArrayInputStream(new byte[0]), new NullMessageFormatter());
+        GameState previous = session.state.bind();
+        try {
+            door.setState(1);
+            assertEquals("The door is open.", door.getHereIsDesc().getString());
+        } finally {
+            GameState.unbind(previous);
+        }
+        assertEquals("The door is closed.", door.getHereIsDesc().getString());
+    }
+}
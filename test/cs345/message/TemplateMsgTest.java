@@ -0,0 +1,78 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * TemplateMsg must compile %n, %{n} and %% and reject any other use of %
+ * when the template is made, not when it is shown.
+ */
+public class TemplateMsgTest {
+
+    private static void assertRejected(String template) {
+        try {
+            new TemplateMsg(template);
+            fail("accepted " + template);
+        } catch (IllegalArgumentException exc) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void digitMarkers() {
+        TemplateMsg msg = new TemplateMsg("%1 the %2.");
+        assertEquals(2, msg.getArgCount());
+        assertEquals("take the lamp.", msg.getString("take", "lamp"));
+    }
+
+    @Test
+    public void bracedMarkers() {
+        TemplateMsg msg = new TemplateMsg("%{1}-%{12}");
+        assertEquals(12, msg.getArgCount());
+        Object[] args = new Object[12];
+        for (int i = 0; i < args.length; ++i) {
+            args[i] = i + 1;
+        }
+        assertEquals("1-12", msg.getString(args));
+    }
+
+    @Test
+    public void percentSign() {
+        TemplateMsg msg = new TemplateMsg("100%% sure, %1%%");
+        assertEquals(1, msg.getArgCount());
+        assertEquals("100% sure, 50%", msg.getString(50));
+    }
+
+    @Test
+    public void plainText() {
+        TemplateMsg msg = new TemplateMsg("Nothing to fill in.");
+        assertEquals(0, msg.getArgCount());
+        assertEquals("Nothing to fill in.", msg.getString());
+    }
+
+    @Test
+    public void badMarkersAreRejected() {
+        assertRejected("trailing %");
+        assertRejected("%0");
+        assertRejected("%x");
+        assertRejected("%{}");
+        assertRejected("%{two}");
+        assertRejected("%{0}");
+        assertRejected("%{1");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void missingArgument() {
+        new TemplateMsg("%1 and %2").getString("one");
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Sessions left in the journal by players who disconnected must not be
+ * rebuilt forever.
+ */
+public class GameServerTest {
+
+    private static final String GAME = "CloakHardCoded";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /* A journal holding sessions 1 to n, none of them over. */
+    private File journal(int n) throws IOException {
+        File dir = tmp.newFolder();
+        Journal j = new Journal(dir, Journal.DEF_SEGMENT_SIZE);
+        for (long id = 1; id <= n; ++id) {
+            j.append(id, Journal.LINE, "look".getBytes(GameSession.UTF8));
+        }
+        j.close();
+        return dir;
+    }
+
+    private static GameServer server(File dir, int maxRecovered) throws IOException {
+        return new GameServer(GAME, new InetSocketAddress("localhost", 0), 1, dir, maxRecovered);
+    }
+
+    @Test
+    public void expiredSessionsAreNotRebuiltAgain() throws IOException {
+        File dir = journal(3);
+        GameServer s = server(dir, GameServer.DEF_MAX_RECOVERED);
+        assertEquals(3, s.getRecoveredCount());
+        assertEquals(3, s.expireRecovered());
+        assertEquals(0, s.getRecoveredCount());
+        s.stop();
+
+        s = server(dir, GameServer.DEF_MAX_RECOVERED);
+        assertEquals(0, s.getRecoveredCount());
+        s.stop();
+    }
+
+    @Test
+    public void onlyTheNewestSessionsAreKept() throws IOException {
+        File dir = journal(5);
+        GameServer s = server(dir, 2);
+        assertEquals(2, s.getRecoveredCount());
+        s.stop();
+
+        // The dropped sessions are gone for good.
+        s = server(dir, GameServer.DEF_MAX_RECOVERED);
+        assertEquals(2, s.getRecoveredCount());
+        s.stop();
+    }
+}
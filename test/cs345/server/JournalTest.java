@@ -0,0 +1,203 @@
+/**
+ * This work is licensed under the Creative Commons Attribution 3.0
+ * Unported License. To view a copy of this license, visit
+ * http://creativecommons.org/licenses/by/3.0/ or send a letter to
+ * Creative Commons, 444 Castro Street, Suite 900,
+ * Mountain View, California, 94041, USA.
+ */
+
+package cs345.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Journal must never make a record durable after one that was lost.
+ */
+public class JournalTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /* Set to make the channels of FailingJournal throw on write. */
+    private static volatile boolean failWrites;
+
+    private static byte[] line(String s) {
+        return s.getBytes(GameSession.UTF8);
+    }
+
+    @Test
+    public void recoversSyncedRecords() throws IOException {
+        File dir = tmp.newFolder();
+        Journal j = new Journal(dir, Journal.DEF_SEGMENT_SIZE);
+        j.append(1, Journal.LINE, line("look"));
+        j.append(2, Journal.LINE, line("go w"));
+        j.append(1, Journal.LINE, line("inventory"));
+        j.append(2, Journal.END, new byte[0]);
+        j.sync();
+        j.close();
+
+        Map<Long, Journal.SessionLog> logs = Journal.recover(dir);
+        assertEquals(1, logs.size());
+        assertEquals(Arrays.asList("look", "inventory"), logs.get(1L).lines);
+    }
+
+    @Test
+    public void failedSyncFailsTheJournal() throws IOException {
+        File dir = tmp.newFolder();
+        failWrites = false;
+        Journal j = new FailingJournal(dir);
+        j.sync(j.append(1, Journal.LINE, line("look")));
+
+        failWrites = true;
+        long lost = j.append(1, Journal.LINE, line("go w"));
+        try {
+            j.sync(lost);
+            fail("sync should have thrown");
+        } catch (IOException exc) {
+            // Expected.
+        }
+
+        // Nothing may be made durable after the lost record.
+        failWrites = false;
+        try {
+            j.append(1, Journal.LINE, line("inventory"));
+            fail("append should have thrown");
+        } catch (IllegalStateException exc) {
+            // Expected.
+        }
+        try {
+            j.sync(lost);
+            fail("sync should have thrown");
+        } catch (IOException exc) {
+            // Expected.
+        }
+        try {
+            j.close();
+            fail("close should have thrown");
+        } catch (IOException exc) {
+            // Expected.
+        }
+
+        Map<Long, Journal.SessionLog> logs = Journal.recover(dir);
+        assertTrue(logs.containsKey(1L));
+        assertEquals(Arrays.asList("look"), logs.get(1L).lines);
+    }
+
+    /*
+     * A Journal whose segments throw on write while failWrites is set.
+     */
+    private static class FailingJournal extends Journal {
+        FailingJournal(File dir) throws IOException {
+            super(dir, DEF_SEGMENT_SIZE);
+        }
+
+        @Override FileChannel openSegment(File file) throws IOException {
+            return new FailingChannel(super.openSegment(file));
+        }
+    }
+
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel ch;
+
+        FailingChannel(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        private void check() throws IOException {
+            if (failWrites)
+                throw new IOException("No space left on device");
+        }
+
+        @Override public int read(ByteBuffer dst) throws IOException {
+            return ch.read(dst);
+        }
+
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return ch.read(dsts, offset, length);
+        }
+
+        @Override public int write(ByteBuffer src) throws IOException {
+            check();
+            return ch.write(src);
+        }
+
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            check();
+            return ch.write(srcs, offset, length);
+        }
+
+        @Override public long position() throws IOException {
+            return ch.position();
+        }
+
+        @Override public FileChannel position(long newPosition) throws IOException {
+            ch.position(newPosition);
+            return this;
+        }
+
+        @Override public long size() throws IOException {
+            return ch.size();
+        }
+
+        @Override public FileChannel truncate(long size) throws IOException {
+            ch.truncate(size);
+            return this;
+        }
+
+        @Override public void force(boolean metaData) throws IOException {
+            check();
+            ch.force(metaData);
+        }
+
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return ch.transferTo(position, count, target);
+        }
+
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            check();
+            return ch.transferFrom(src, position, count);
+        }
+
+        @Override public int read(ByteBuffer dst, long position) throws IOException {
+            return ch.read(dst, position);
+        }
+
+        @Override public int write(ByteBuffer src, long position) throws IOException {
+            check();
+            return ch.write(src, position);
+        }
+
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return ch.map(mode, position, size);
+        }
+
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return ch.lock(position, size, shared);
+        }
+
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return ch.tryLock(position, size, shared);
+        }
+
+        @Override protected void implCloseChannel() throws IOException {
+            ch.close();
+        }
+    }
+}